@@ -0,0 +1,68 @@
+package bench;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded random inputs shared by the benchmarks.
+ */
+final class Data {
+
+    enum TreeShape {
+        /** one MULTIPLY over all operands, nested by the optimizer */
+        MULTIPLY_CHAIN,
+        /** one ADD over all operands */
+        ADD_TREE,
+        /** sums of products of transposed and negated operands */
+        MIXED
+    }
+
+    private Data() {}
+
+    static double[] vector(Random random, int length) {
+        double[] vector = new double[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextDouble() * 2 - 1;
+        }
+        return vector;
+    }
+
+    static double[][] matrix(Random random, int rows, int cols, double scale) {
+        double[][] matrix = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            matrix[i] = vector(random, cols);
+            for (int j = 0; j < cols; j++) {
+                matrix[i][j] *= scale;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Builds a tree of the given shape over operands square size x size matrices.
+     */
+    static ComputationNode tree(Random random, TreeShape shape, int size, int operands) {
+        List<ComputationNode> leaves = new ArrayList<>();
+        for (int i = 0; i < operands; i++) {
+            leaves.add(new ComputationNode(matrix(random, size, size, 1.0 / size)));
+        }
+        switch (shape) {
+            case MULTIPLY_CHAIN:
+                return new ComputationNode(ComputationNodeType.MULTIPLY, leaves);
+            case ADD_TREE:
+                return new ComputationNode(ComputationNodeType.ADD, leaves);
+            default:
+                List<ComputationNode> products = new ArrayList<>();
+                for (int i = 0; i + 1 < operands; i += 2) {
+                    ComputationNode left = new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(leaves.get(i)));
+                    ComputationNode right = new ComputationNode(ComputationNodeType.NEGATE, List.of(leaves.get(i + 1)));
+                    products.add(new ComputationNode(ComputationNodeType.MULTIPLY, List.of(left, right)));
+                }
+                return new ComputationNode(ComputationNodeType.ADD, products);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package bench;
+
+import memory.StorageMode;
+import org.openjdk.jmh.annotations.*;
+import parser.ComputationNode;
+import scheduling.SchedulingMode;
+import spl.lae.LinearAlgebraEngine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end LinearAlgebraEngine.run on synthetic trees. run consumes its tree, so a fresh
+ * tree is built before every invocation, outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    @Param({"64", "256"})
+    int size;
+
+    @Param({"MULTIPLY_CHAIN", "ADD_TREE", "MIXED"})
+    Data.TreeShape shape;
+
+    @Param({"VECTORS", "CONTIGUOUS"})
+    StorageMode storageMode;
+
+    @Param({"HANDOFF", "WORK_STEALING"})
+    SchedulingMode schedulingMode;
+
+    private LinearAlgebraEngine engine;
+    private Random random;
+    private ComputationNode tree;
+
+    @Setup(Level.Trial)
+    public void setUpEngine() {
+        engine = new LinearAlgebraEngine(threads, storageMode, schedulingMode);
+        random = new Random(42);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpTree() {
+        tree = Data.tree(random, shape, size, 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public double[][] run() {
+        return engine.run(tree).getMatrix();
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import scheduling.SchedulingMode;
+import scheduling.TiredExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task throughput of TiredExecutor: a batch of small tasks is submitted and awaited per
+ * invocation, so the score is tasks per second including submit and hand-off cost.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private static final int TASKS = 1000;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    @Param({"HANDOFF", "WORK_STEALING"})
+    SchedulingMode mode;
+
+    // Blackhole.consumeCPU tokens burned by each task
+    @Param({"0", "1000"})
+    int work;
+
+    private TiredExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = new TiredExecutor(threads, mode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void submitBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            executor.submit(() -> {
+                Blackhole.consumeCPU(work);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
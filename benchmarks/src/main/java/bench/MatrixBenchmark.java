@@ -0,0 +1,62 @@
+package bench;
+
+import memory.SharedMatrix;
+import memory.StorageMode;
+import memory.VectorOrientation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a double[][] into a SharedMatrix and copying it back out, per storage mode and orientation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+
+    @Param({"64", "512", "2048"})
+    int size;
+
+    @Param({"ROW_MAJOR", "COLUMN_MAJOR"})
+    VectorOrientation orientation;
+
+    @Param({"VECTORS", "CONTIGUOUS"})
+    StorageMode storageMode;
+
+    private double[][] data;
+    private SharedMatrix target;
+    private SharedMatrix loaded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = Data.matrix(new Random(42), size, size, 1.0);
+        target = new SharedMatrix(storageMode);
+        loaded = new SharedMatrix(storageMode);
+        load(loaded);
+    }
+
+    private void load(SharedMatrix matrix) {
+        if (orientation == VectorOrientation.ROW_MAJOR) {
+            matrix.loadRowMajor(data);
+        }
+        else {
+            matrix.loadColumnMajor(data);
+        }
+    }
+
+    @Benchmark
+    public SharedMatrix loadMatrix() {
+        load(target);
+        return target;
+    }
+
+    @Benchmark
+    public double[][] readRowMajor() {
+        return loaded.readRowMajor();
+    }
+}
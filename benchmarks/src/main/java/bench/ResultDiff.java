@@ -0,0 +1,80 @@
+package bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files written with -rf json.
+ * Every benchmark and parameter combination found in both files gets one line with both
+ * scores and the relative change, signed so that a positive change is always an improvement.
+ * Changes that fall inside the combined error bars are marked as noise.
+ */
+public final class ResultDiff {
+
+    private ResultDiff() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ResultDiff <before.json> <after.json>");
+            System.exit(2);
+        }
+        Map<String, JsonNode> before = load(args[0]);
+        Map<String, JsonNode> after = load(args[1]);
+        System.out.printf("%-90s %14s %14s %9s%n", "benchmark", "before", "after", "change");
+        for (Map.Entry<String, JsonNode> entry : before.entrySet()) {
+            JsonNode next = after.get(entry.getKey());
+            if (next == null) {
+                System.out.printf("%-90s %14s%n", entry.getKey(), "(missing)");
+                continue;
+            }
+            System.out.println(compare(entry.getKey(), entry.getValue(), next));
+        }
+    }
+
+    private static String compare(String key, JsonNode before, JsonNode after) {
+        double oldScore = before.path("primaryMetric").path("score").asDouble();
+        double newScore = after.path("primaryMetric").path("score").asDouble();
+        double error = finite(before.path("primaryMetric").path("scoreError").asDouble())
+                + finite(after.path("primaryMetric").path("scoreError").asDouble());
+        // throughput modes improve upwards, time modes downwards
+        boolean higherIsBetter = "thrpt".equals(before.path("mode").asText());
+        double change = (newScore - oldScore) / oldScore * 100.0;
+        if (!higherIsBetter) {
+            change = -change;
+        }
+        String unit = before.path("primaryMetric").path("scoreUnit").asText();
+        return String.format("%-90s %14s %14s %+8.1f%%%s", key,
+                String.format("%.3f %s", oldScore, unit), String.format("%.3f", newScore), change,
+                Math.abs(newScore - oldScore) <= error ? " (noise)" : "");
+    }
+
+    private static double finite(double value) {
+        return Double.isFinite(value) ? value : 0.0;
+    }
+
+    /**
+     * Indexes results by benchmark name and parameters, e.g. "bench.VectorBenchmark.dot size=64".
+     */
+    private static Map<String, JsonNode> load(String path) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(new File(path))) {
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                params.put(field.getKey(), field.getValue().asText());
+            }
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,186 @@
+package bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import parser.ComputationNode;
+import parser.InputParser;
+import parser.OutputWriter;
+import spl.lae.LinearAlgebraEngine;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs input files across thread counts and reports where scaling stops.
+ * <pre>
+ *   java -cp target/benchmarks.jar bench.ScalingHarness --threads=1,2,4,8 --repeat=5 \
+ *        [--mode=engine|main] [--json=scaling.json] workloads/deep-chain-7.json ...
+ * </pre>
+ * In engine mode every phase is timed in-process: parse (InputParser), compute
+ * (LinearAlgebraEngine.run) and write (OutputWriter, including reading the result out).
+ * Engine start-up and shutdown are not counted. In main mode spl.lae.Main runs as a child
+ * JVM on the same classpath and only the total wall time is known.
+ * Every configuration runs --warmup times unmeasured, then --repeat times; the median is
+ * reported. Speedup and efficiency are relative to the first thread count listed.
+ */
+public final class ScalingHarness {
+
+    private static final String[] PHASES = {"parse", "compute", "write", "total"};
+
+    private ScalingHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        int[] threads = {1, 2, 4, 8};
+        int repeat = 3;
+        int warmup = 1;
+        boolean mainMode = false;
+        String jsonPath = null;
+        List<String> inputs = new ArrayList<>();
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            String value = (pair.length == 2) ? pair[1] : "";
+            switch (pair[0]) {
+                case "--threads":
+                    threads = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--repeat":
+                    repeat = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--mode":
+                    mainMode = value.equals("main");
+                    break;
+                case "--json":
+                    jsonPath = value;
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        System.err.println("Unknown option: " + arg);
+                        System.exit(2);
+                    }
+                    inputs.add(arg);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: ScalingHarness [--threads=1,2,4] [--repeat=n] [--warmup=n] [--mode=engine|main] [--json=file] input...");
+            System.exit(2);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode report = mapper.createArrayNode();
+        Path output = Files.createTempFile("lae-scaling-", ".json");
+        try {
+            for (String input : inputs) {
+                System.out.println(input + (mainMode ? " (main, total only)" : ""));
+                System.out.printf("%8s %10s %10s %10s %10s %9s %11s %15s%n",
+                        "threads", "parse ms", "compute ms", "write ms", "total ms", "speedup", "efficiency", "compute speedup");
+                double[] base = null;
+                int baseThreads = 0;
+                for (int n : threads) {
+                    double[][] samples = new double[repeat][];
+                    for (int r = -warmup; r < repeat; r++) {
+                        double[] sample = mainMode ? runMain(n, input, output) : runEngine(n, input, output);
+                        if (r >= 0) {
+                            samples[r] = sample;
+                        }
+                    }
+                    double[] median = median(samples);
+                    if (base == null) {
+                        base = median;
+                        baseThreads = n;
+                    }
+                    // scaled to the baseline thread count, so a sweep starting at 2 threads still reads naturally
+                    double speedup = base[3] / median[3];
+                    double efficiency = speedup * baseThreads / n;
+                    double computeSpeedup = mainMode ? Double.NaN : base[1] / median[1];
+                    System.out.printf("%8d %10s %10s %10s %10.1f %9.2f %10.0f%% %15s%n", n,
+                            format(median[0]), format(median[1]), format(median[2]), median[3],
+                            speedup, efficiency * 100, format(computeSpeedup));
+
+                    ObjectNode row = report.addObject();
+                    row.put("input", input);
+                    row.put("mode", mainMode ? "main" : "engine");
+                    row.put("threads", n);
+                    for (int p = 0; p < PHASES.length; p++) {
+                        if (!Double.isNaN(median[p])) {
+                            row.put(PHASES[p] + "Ms", median[p]);
+                        }
+                    }
+                    row.put("speedup", speedup);
+                    row.put("efficiency", efficiency);
+                }
+                System.out.println();
+            }
+        } finally {
+            Files.deleteIfExists(output);
+        }
+        if (jsonPath != null) {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(jsonPath), report);
+        }
+    }
+
+    /**
+     * Returns {parse, compute, write, total} in milliseconds for one in-process run.
+     */
+    private static double[] runEngine(int threads, String input, Path output) throws Exception {
+        LinearAlgebraEngine engine = new LinearAlgebraEngine(threads);
+        try {
+            long t0 = System.nanoTime();
+            ComputationNode root = new InputParser().parse(input);
+            long t1 = System.nanoTime();
+            ComputationNode result = engine.run(root);
+            long t2 = System.nanoTime();
+            OutputWriter.write(result.getMatrix(), output.toString());
+            long t3 = System.nanoTime();
+            return new double[]{millis(t1 - t0), millis(t2 - t1), millis(t3 - t2), millis(t3 - t0)};
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Runs spl.lae.Main in a child JVM and returns its wall time as the total.
+     */
+    private static double[] runMain(int threads, String input, Path output) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "spl.lae.Main", String.valueOf(threads), input, output.toString());
+        builder.inheritIO();
+        long t0 = System.nanoTime();
+        int exit = builder.start().waitFor();
+        long t1 = System.nanoTime();
+        if (exit != 0) {
+            throw new IllegalStateException("Main exited with status " + exit + " on " + input);
+        }
+        return new double[]{Double.NaN, Double.NaN, Double.NaN, millis(t1 - t0)};
+    }
+
+    private static double[] median(double[][] samples) {
+        double[] median = new double[samples[0].length];
+        for (int p = 0; p < median.length; p++) {
+            double[] values = new double[samples.length];
+            for (int r = 0; r < samples.length; r++) {
+                values[r] = samples[r][p];
+            }
+            Arrays.sort(values);
+            int mid = values.length / 2;
+            median[p] = (values.length % 2 == 1) ? values[mid] : (values[mid - 1] + values[mid]) / 2;
+        }
+        return median;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : String.format("%.1f", value);
+    }
+}
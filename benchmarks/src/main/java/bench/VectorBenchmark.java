@@ -0,0 +1,70 @@
+package bench;
+
+import memory.SharedMatrix;
+import memory.SharedVector;
+import memory.StorageMode;
+import memory.VectorOrientation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SharedVector hot paths: elementwise add, dot product and vector-matrix product.
+ * vecMatMul runs against a size x size matrix in every orientation and storage mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+
+    @Param({"64", "512", "2048"})
+    int size;
+
+    @Param({"ROW_MAJOR", "COLUMN_MAJOR"})
+    VectorOrientation matrixOrientation;
+
+    @Param({"VECTORS", "CONTIGUOUS"})
+    StorageMode storageMode;
+
+    private SharedVector row;
+    private SharedVector otherRow;
+    private SharedVector column;
+    private SharedMatrix matrix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        row = new SharedVector(Data.vector(random, size), VectorOrientation.ROW_MAJOR);
+        otherRow = new SharedVector(Data.vector(random, size), VectorOrientation.ROW_MAJOR);
+        column = new SharedVector(Data.vector(random, size), VectorOrientation.COLUMN_MAJOR);
+        // entries of about 1/size keep repeated products from overflowing
+        double[][] data = Data.matrix(random, size, size, 1.0 / size);
+        matrix = new SharedMatrix(storageMode);
+        if (matrixOrientation == VectorOrientation.ROW_MAJOR) {
+            matrix.loadRowMajor(data);
+        }
+        else {
+            matrix.loadColumnMajor(data);
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        row.add(otherRow);
+    }
+
+    @Benchmark
+    public double dot() {
+        return row.dot(column);
+    }
+
+    @Benchmark
+    public SharedVector vecMatMul() {
+        row.vecMatMul(matrix);
+        return row;
+    }
+}
@@ -0,0 +1,243 @@
+package bench;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import parser.FormatConverter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates seeded synthetic input files in the InputParser schema.
+ * <pre>
+ *   java -cp target/benchmarks.jar bench.WorkloadGenerator --shape=deep-chain --size=32..256 \
+ *        --depth=500 --seed=7 --count=3 --out=workloads
+ * </pre>
+ * Shapes:
+ * <ul>
+ *   <li>deep-chain: one operator per level, depth levels, each combining the running result with
+ *       a new operand or applying a unary operator to it</li>
+ *   <li>wide: a balanced binary tree with depth levels of binary operators</li>
+ *   <li>tall-skinny: the sum of width products T(A) * B, where A and B are rows x size</li>
+ *   <li>many-tiny: one ADD over width small terms, each a literal or a negated, transposed
+ *       or squared literal</li>
+ * </ul>
+ * Square shapes draw one size per file from --size=min..max, uniformly or log-uniformly
+ * (--dist). --ops=add:3,multiply:1,negate:1,transpose:1 weights the operators that are drawn.
+ */
+public final class WorkloadGenerator {
+
+    public enum Shape { DEEP_CHAIN, WIDE, TALL_SKINNY, MANY_TINY }
+
+    public static final class Options {
+        public Shape shape = Shape.DEEP_CHAIN;
+        public int minSize = 32;
+        public int maxSize = 128;
+        public boolean logUniform = false;
+        public int depth = 64;
+        public int width = 64;
+        public int rows = 100_000;
+        public long seed = 1;
+        // relative weights of ADD, MULTIPLY, NEGATE, TRANSPOSE
+        public double[] opWeights = {1, 1, 1, 1};
+    }
+
+    private static final ComputationNodeType[] OPS = {
+            ComputationNodeType.ADD, ComputationNodeType.MULTIPLY,
+            ComputationNodeType.NEGATE, ComputationNodeType.TRANSPOSE};
+
+    private final Options options;
+    private final Random random;
+
+    public WorkloadGenerator(Options options) {
+        this.options = options;
+        this.random = new Random(options.seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options();
+        int count = 1;
+        Path out = Path.of("workloads");
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            String value = (pair.length == 2) ? pair[1] : "";
+            switch (pair[0]) {
+                case "--shape":
+                    options.shape = Shape.valueOf(value.toUpperCase().replace('-', '_'));
+                    break;
+                case "--size":
+                    String[] range = value.split("\\.\\.");
+                    options.minSize = Integer.parseInt(range[0]);
+                    options.maxSize = Integer.parseInt(range[range.length - 1]);
+                    break;
+                case "--dist":
+                    options.logUniform = value.equals("log");
+                    break;
+                case "--depth":
+                    options.depth = Integer.parseInt(value);
+                    break;
+                case "--width":
+                    options.width = Integer.parseInt(value);
+                    break;
+                case "--rows":
+                    options.rows = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    options.seed = Long.parseLong(value);
+                    break;
+                case "--ops":
+                    options.opWeights = parseWeights(value);
+                    break;
+                case "--count":
+                    count = Integer.parseInt(value);
+                    break;
+                case "--out":
+                    out = Path.of(value);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + arg);
+                    System.exit(2);
+            }
+        }
+        Files.createDirectories(out);
+        long firstSeed = options.seed;
+        for (int i = 0; i < count; i++) {
+            options.seed = firstSeed + i;
+            String name = options.shape.name().toLowerCase().replace('_', '-') + "-" + options.seed + ".json";
+            Path file = out.resolve(name);
+            FormatConverter.writeJsonTree(new WorkloadGenerator(options).generate(), file.toString());
+            System.out.println(file);
+        }
+    }
+
+    private static double[] parseWeights(String spec) {
+        double[] weights = new double[OPS.length];
+        for (String entry : spec.split(",")) {
+            String[] pair = entry.split(":");
+            ComputationNodeType type = ComputationNodeType.valueOf(pair[0].toUpperCase());
+            for (int i = 0; i < OPS.length; i++) {
+                if (OPS[i] == type) {
+                    weights[i] = Double.parseDouble(pair[1]);
+                }
+            }
+        }
+        return weights;
+    }
+
+    public ComputationNode generate() {
+        switch (options.shape) {
+            case DEEP_CHAIN:
+                return deepChain(drawSize());
+            case WIDE:
+                return wide(drawSize(), options.depth);
+            case TALL_SKINNY:
+                return tallSkinny(drawSize());
+            default:
+                return manyTiny(drawSize());
+        }
+    }
+
+    private int drawSize() {
+        if (options.minSize >= options.maxSize) {
+            return options.minSize;
+        }
+        if (options.logUniform) {
+            double log = Math.log(options.minSize) + random.nextDouble() * (Math.log(options.maxSize) - Math.log(options.minSize));
+            return (int) Math.round(Math.exp(log));
+        }
+        return options.minSize + random.nextInt(options.maxSize - options.minSize + 1);
+    }
+
+    private ComputationNodeType drawOp(boolean binaryOnly) {
+        int last = binaryOnly ? 2 : OPS.length;
+        double total = 0;
+        for (int i = 0; i < last; i++) {
+            total += options.opWeights[i];
+        }
+        if (total <= 0) {
+            return ComputationNodeType.ADD;
+        }
+        double pick = random.nextDouble() * total;
+        for (int i = 0; i < last; i++) {
+            pick -= options.opWeights[i];
+            if (pick < 0) {
+                return OPS[i];
+            }
+        }
+        return OPS[last - 1];
+    }
+
+    /**
+     * Entries are uniform in [-scale, scale], rounded to three significant decimals so the
+     * files stay small. Multiplied operands use scale 1/cols, which keeps long chains bounded.
+     */
+    private ComputationNode literal(int rows, int cols, double scale) {
+        double[][] matrix = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                matrix[i][j] = Math.round((random.nextDouble() * 2 - 1) * 1000) / 1000.0 * scale;
+            }
+        }
+        return new ComputationNode(matrix);
+    }
+
+    private ComputationNode deepChain(int size) {
+        ComputationNode current = literal(size, size, 1.0);
+        for (int level = 0; level < options.depth; level++) {
+            ComputationNodeType op = drawOp(false);
+            if (op == ComputationNodeType.ADD || op == ComputationNodeType.MULTIPLY) {
+                ComputationNode operand = literal(size, size, (op == ComputationNodeType.MULTIPLY) ? 1.0 / size : 1.0);
+                current = new ComputationNode(op, new ArrayList<>(List.of(current, operand)));
+            }
+            else {
+                current = new ComputationNode(op, new ArrayList<>(List.of(current)));
+            }
+        }
+        return current;
+    }
+
+    private ComputationNode wide(int size, int levels) {
+        if (levels == 0) {
+            return literal(size, size, 1.0 / size);
+        }
+        ComputationNode left = wide(size, levels - 1);
+        ComputationNode right = wide(size, levels - 1);
+        return new ComputationNode(drawOp(true), new ArrayList<>(List.of(left, right)));
+    }
+
+    private ComputationNode tallSkinny(int size) {
+        List<ComputationNode> products = new ArrayList<>();
+        for (int i = 0; i < options.width; i++) {
+            ComputationNode a = literal(options.rows, size, 1.0);
+            ComputationNode b = literal(options.rows, size, 1.0 / options.rows);
+            ComputationNode transposed = new ComputationNode(ComputationNodeType.TRANSPOSE, new ArrayList<>(List.of(a)));
+            products.add(new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(transposed, b))));
+        }
+        return (products.size() == 1) ? products.get(0) : new ComputationNode(ComputationNodeType.ADD, products);
+    }
+
+    private ComputationNode manyTiny(int size) {
+        List<ComputationNode> terms = new ArrayList<>();
+        for (int i = 0; i < options.width; i++) {
+            ComputationNodeType op = drawOp(false);
+            ComputationNode leaf = literal(size, size, 1.0);
+            switch (op) {
+                case NEGATE:
+                case TRANSPOSE:
+                    terms.add(new ComputationNode(op, new ArrayList<>(List.of(leaf))));
+                    break;
+                case MULTIPLY:
+                    terms.add(new ComputationNode(op, new ArrayList<>(List.of(leaf, literal(size, size, 1.0 / size)))));
+                    break;
+                default:
+                    terms.add(leaf);
+                    break;
+            }
+        }
+        return (terms.size() == 1) ? terms.get(0) : new ComputationNode(ComputationNodeType.ADD, terms);
+    }
+}
@@ -0,0 +1,20 @@
+package memory;
+
+/**
+ * The array kernels behind MatrixKernels. ScalarKernels is always available; SimdKernels is
+ * only compiled by the simd build profile and only loads when jdk.incubator.vector is present.
+ */
+interface ArrayKernels {
+
+    void gemmTile(double[][] left, double[][] right, int rowFrom, int rowTo, int colFrom, int colTo, double[][] acc);
+
+    void addInto(double[] dst, int dstOff, double[] src, int srcOff, int length);
+
+    void subtractInto(double[] dst, int dstOff, double[] src, int srcOff, int length);
+
+    void negateInPlace(double[] a, int off, int length);
+
+    double dot(double[] a, int aOff, double[] b, int bOff, int length);
+
+    void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int length);
+}
@@ -0,0 +1,247 @@
+package memory;
+
+import java.util.Arrays;
+
+/**
+ * Immutable square matrix that is zero off its diagonal, stored as the n diagonal values.
+ * Identity and scalar (c * I) matrices are diagonal matrices whose values are all 1 or all c.
+ * Products with a diagonal matrix are row or column scalings and sums only touch the diagonal,
+ * so the engine handles them in O(n^2), or O(n) when both operands are diagonal.
+ * Like SparseMatrix, the kernels work on row ranges and never modify this matrix, and on finite
+ * values they give the same bits as the dense operations: a dense product adds +0.0 to every
+ * scaled element, and a dense sum adds the zeros off the diagonal.
+ */
+public final class DiagonalMatrix {
+
+    // smaller literals are not worth checking; they stay dense
+    public static final int MIN_DIMENSION = 32;
+
+    private final double[] diagonal;
+
+    public DiagonalMatrix(double[] diagonal) {
+        this.diagonal = diagonal;
+    }
+
+    /**
+     * The diagonal of matrix if it is a square diagonal matrix of at least MIN_DIMENSION rows,
+     * otherwise null. Stops at the first non-zero off the diagonal.
+     */
+    public static double[] diagonalOf(double[][] matrix) {
+        int n = matrix.length;
+        if (n < MIN_DIMENSION || matrix[0].length != n) {
+            return null;
+        }
+        double[] diagonal = new double[n];
+        for (int i = 0; i < n; i++) {
+            double[] row = matrix[i];
+            for (int j = 0; j < n; j++) {
+                // -0.0 off the diagonal would not survive, so it counts as a non-zero here
+                if (j != i && Double.doubleToRawLongBits(row[j]) != 0) {
+                    return null;
+                }
+            }
+            diagonal[i] = row[i];
+        }
+        return diagonal;
+    }
+
+    /**
+     * The diagonal of a ROW_MAJOR sparse matrix, under the same conditions as diagonalOf(double[][]).
+     */
+    public static double[] diagonalOf(SparseMatrix matrix) {
+        int n = matrix.getRowCount();
+        if (n < MIN_DIMENSION || matrix.getColumnCount() != n || matrix.getNonZeroCount() > n
+                || matrix.getOrientation() != VectorOrientation.ROW_MAJOR) {
+            return null;
+        }
+        double[] diagonal = new double[n];
+        double[] row = new double[n];
+        for (int i = 0; i < n; i++) {
+            matrix.readRow(i, row);
+            diagonal[i] = row[i];
+            row[i] = 0.0;
+            for (int j = 0; j < n; j++) {
+                if (Double.doubleToRawLongBits(row[j]) != 0) {
+                    return null;
+                }
+            }
+        }
+        return diagonal;
+    }
+
+    /**
+     * Whether matrix is square, has at least MIN_DIMENSION rows and equals its transpose.
+     */
+    public static boolean isSymmetric(double[][] matrix) {
+        int n = matrix.length;
+        if (n < MIN_DIMENSION || matrix[0].length != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (Double.doubleToRawLongBits(matrix[i][j]) != Double.doubleToRawLongBits(matrix[j][i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return diagonal.length;
+    }
+
+    public double get(int i) {
+        return diagonal[i];
+    }
+
+    public boolean isIdentity() {
+        return isScalar() && (diagonal.length == 0 || diagonal[0] == 1.0);
+    }
+
+    /**
+     * Whether every diagonal value is the same, i.e. this is c * I.
+     */
+    public boolean isScalar() {
+        for (double value : diagonal) {
+            if (Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(diagonal[0])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether every diagonal value is finite; otherwise the zeros off the diagonal of a dense
+     * product would be 0 * Inf = NaN.
+     */
+    public boolean isFinite() {
+        for (double value : diagonal) {
+            if (!Double.isFinite(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether every value of a dense matrix is finite, which scaleRows and scaleColumns need.
+     */
+    public static boolean isFinite(double[][] matrix) {
+        for (double[] row : matrix) {
+            for (double value : row) {
+                if (!Double.isFinite(value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * out[i] = row i of -this for i in [rowFrom, rowTo); the zeros off the diagonal become -0.0,
+     * so a negation is dense.
+     */
+    public void negateRows(double[][] out, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            Arrays.fill(out[i], -0.0);
+            out[i][i] = -diagonal[i];
+        }
+    }
+
+    public DiagonalMatrix plus(DiagonalMatrix other, boolean subtract) {
+        double[] sum = new double[diagonal.length];
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = subtract ? diagonal[i] - other.diagonal[i] : diagonal[i] + other.diagonal[i];
+        }
+        return new DiagonalMatrix(sum);
+    }
+
+    public DiagonalMatrix times(DiagonalMatrix other) {
+        double[] product = new double[diagonal.length];
+        for (int i = 0; i < product.length; i++) {
+            product[i] = diagonal[i] * other.diagonal[i] + 0.0;
+        }
+        return new DiagonalMatrix(product);
+    }
+
+    public double[][] toDense() {
+        int n = diagonal.length;
+        double[][] dense = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            dense[i][i] = diagonal[i];
+        }
+        return dense;
+    }
+
+    /**
+     * The same matrix as a CSR SparseMatrix with one entry per row.
+     */
+    public SparseMatrix toSparse() {
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(diagonal.length);
+        double[] row = new double[diagonal.length];
+        for (int i = 0; i < diagonal.length; i++) {
+            row[i] = diagonal[i];
+            builder.appendRow(row);
+            row[i] = 0.0;
+        }
+        return builder.build();
+    }
+
+    /**
+     * m[i] *= this[i][i] for i in [rowFrom, rowTo), so m becomes this * m. m must be finite
+     * (see isFinite), since 0 * Inf off the diagonal would be NaN.
+     */
+    public void scaleRows(double[][] m, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] row = m[i];
+            double d = diagonal[i];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = d * row[j] + 0.0;
+            }
+        }
+    }
+
+    /**
+     * m[i][j] *= this[j][j] for rows [rowFrom, rowTo), so m becomes m * this. m must be finite.
+     */
+    public void scaleColumns(double[][] m, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] row = m[i];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = row[j] * diagonal[j] + 0.0;
+            }
+        }
+    }
+
+    /**
+     * m[i] += scale * row i of this for i in [rowFrom, rowTo), where scale is 1 or -1. Adding,
+     * the zeros off the diagonal are added too, since -0.0 + 0.0 is +0.0; subtracting them
+     * changes nothing.
+     */
+    public void addToDiagonal(double[][] m, int rowFrom, int rowTo, double scale) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] row = m[i];
+            if (scale > 0) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] += (j == i) ? diagonal[i] : 0.0;
+                }
+            }
+            else {
+                row[i] += scale * diagonal[i];
+            }
+        }
+    }
+
+    /**
+     * m[i] = row i of this - m[i] for i in [rowFrom, rowTo), for a diagonal minus a dense matrix.
+     */
+    public void subtractFromRows(double[][] m, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] row = m[i];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = ((j == i) ? diagonal[i] : 0.0) - row[j];
+            }
+        }
+    }
+}
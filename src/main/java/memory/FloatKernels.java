@@ -0,0 +1,87 @@
+package memory;
+
+/**
+ * float[] counterparts of the MatrixKernels used by FLOAT precision storage. They are plain
+ * loops, like ScalarKernels, and accumulate in float; callers hold the locks as for MatrixKernels.
+ */
+final class FloatKernels {
+
+    private FloatKernels() {}
+
+    /**
+     * Same as MatrixKernels.gemmTile, over float operands and accumulators.
+     */
+    static void gemmTile(float[][] left, float[][] right, int rowFrom, int rowTo, int colFrom, int colTo, float[][] acc) {
+        int depth = right.length;
+        int width = colTo - colFrom;
+        for (int k0 = 0; k0 < depth; k0 += MatrixKernels.TILE_DEPTH) {
+            int k1 = Math.min(k0 + MatrixKernels.TILE_DEPTH, depth);
+            for (int i = rowFrom; i < rowTo; i++) {
+                float[] a = left[i];
+                float[] c = acc[i - rowFrom];
+                for (int k = k0; k < k1; k++) {
+                    float aik = a[k];
+                    float[] b = right[k];
+                    for (int j = 0; j < width; j++) {
+                        c[j] += aik * b[colFrom + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as MatrixKernels.gemmTileTransposed, over float operands and accumulators.
+     */
+    static void gemmTileTransposed(float[][] left, float[][] rightColumns,
+                                   int rowFrom, int rowTo, int colFrom, int colTo, float[][] acc) {
+        int depth = left[rowFrom].length;
+        for (int k0 = 0; k0 < depth; k0 += MatrixKernels.TILE_DEPTH) {
+            int k1 = Math.min(k0 + MatrixKernels.TILE_DEPTH, depth);
+            for (int i = rowFrom; i < rowTo; i++) {
+                float[] a = left[i];
+                float[] c = acc[i - rowFrom];
+                for (int j = colFrom; j < colTo; j++) {
+                    float[] b = rightColumns[j];
+                    float sum = c[j - colFrom];
+                    for (int k = k0; k < k1; k++) {
+                        sum += a[k] * b[k];
+                    }
+                    c[j - colFrom] = sum;
+                }
+            }
+        }
+    }
+
+    static void addInto(float[] dst, int dstOff, float[] src, int srcOff, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOff + i] += src[srcOff + i];
+        }
+    }
+
+    static void subtractInto(float[] dst, int dstOff, float[] src, int srcOff, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOff + i] -= src[srcOff + i];
+        }
+    }
+
+    static void negateInPlace(float[] a, int off, int length) {
+        for (int i = 0; i < length; i++) {
+            a[off + i] = -a[off + i];
+        }
+    }
+
+    static float dot(float[] a, int aOff, float[] b, int bOff, int length) {
+        float result = 0.0f;
+        for (int i = 0; i < length; i++) {
+            result += a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    static void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+}
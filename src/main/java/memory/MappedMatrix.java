@@ -0,0 +1,246 @@
+package memory;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Row-major matrix of little-endian float64 values that lives in a file instead of on the heap.
+ * The file region is mapped in segments of at most segmentElements values, so a matrix may be
+ * larger than both the heap and the 2 GB limit of a single MappedByteBuffer.
+ * The store methods compute one chunk of a result at a time, through small on-heap buffers,
+ * so the engine can spread a whole operation over the executor as independent chunk tasks.
+ * Chunks of a result never overlap, so no locks are taken.
+ */
+public class MappedMatrix {
+
+    // values per mapped segment: 1 GB of float64
+    static final long DEFAULT_SEGMENT_ELEMENTS = 1L << 27;
+    // values one elementwise chunk task streams through: 4 MB per operand buffer
+    public static final int CHUNK_ELEMENTS = 1 << 19;
+    // side of the square tiles used by transpose and multiply
+    public static final int TILE = 256;
+
+    private final Path file;
+    private final int rows;
+    private final int cols;
+    private final long segmentElements;
+    private final DoubleBuffer[] segments;
+
+    private MappedMatrix(Path file, int rows, int cols, long segmentElements, DoubleBuffer[] segments) {
+        this.file = file;
+        this.rows = rows;
+        this.cols = cols;
+        this.segmentElements = segmentElements;
+        this.segments = segments;
+    }
+
+    /**
+     * Creates a zero-filled rows x cols matrix in a new file.
+     */
+    public static MappedMatrix create(Path file, int rows, int cols) throws IOException {
+        return map(file, 0, rows, cols, true, true, DEFAULT_SEGMENT_ELEMENTS);
+    }
+
+    /**
+     * Maps rows x cols values that start offset bytes into an existing file.
+     */
+    public static MappedMatrix map(Path file, long offset, int rows, int cols, boolean writable) throws IOException {
+        return map(file, offset, rows, cols, writable, false, DEFAULT_SEGMENT_ELEMENTS);
+    }
+
+    static MappedMatrix map(Path file, long offset, int rows, int cols, boolean writable, boolean create,
+                            long segmentElements) throws IOException {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Matrix cannot be empty");
+        }
+        long total = (long) rows * cols;
+        int count = (int) ((total + segmentElements - 1) / segmentElements);
+        DoubleBuffer[] segments = new DoubleBuffer[count];
+        FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(file, writable
+                        ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                        : new StandardOpenOption[]{StandardOpenOption.READ});
+        try {
+            if (!create && channel.size() < offset + total * Double.BYTES) {
+                throw new IOException("File is shorter than a " + rows + "x" + cols + " matrix: " + file);
+            }
+            FileChannel.MapMode mode = (writable || create) ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            for (int s = 0; s < count; s++) {
+                long first = s * segmentElements;
+                long length = Math.min(segmentElements, total - first);
+                // the mapping stays valid after the channel is closed
+                segments[s] = channel.map(mode, offset + first * Double.BYTES, length * Double.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        } finally {
+            channel.close();
+        }
+        return new MappedMatrix(file, rows, cols, segmentElements, segments);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return cols;
+    }
+
+    public double get(int row, int col) {
+        long element = (long) row * cols + col;
+        return segments[(int) (element / segmentElements)].get((int) (element % segmentElements));
+    }
+
+    public void set(int row, int col, double value) {
+        long element = (long) row * cols + col;
+        segments[(int) (element / segmentElements)].put((int) (element % segmentElements), value);
+    }
+
+    /**
+     * Copies length values of a row, starting at column colFrom, into dst.
+     */
+    public void readRow(int row, int colFrom, double[] dst, int dstOff, int length) {
+        long element = (long) row * cols + colFrom;
+        int done = 0;
+        while (done < length) {
+            int s = (int) ((element + done) / segmentElements);
+            int index = (int) ((element + done) % segmentElements);
+            int n = (int) Math.min(length - done, segmentElements - index);
+            // a duplicate has its own position, so concurrent readers do not interfere
+            DoubleBuffer view = segments[s].duplicate();
+            view.position(index);
+            view.get(dst, dstOff + done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Copies length values from src into a row, starting at column colFrom.
+     */
+    public void writeRow(int row, int colFrom, double[] src, int srcOff, int length) {
+        long element = (long) row * cols + colFrom;
+        int done = 0;
+        while (done < length) {
+            int s = (int) ((element + done) / segmentElements);
+            int index = (int) ((element + done) % segmentElements);
+            int n = (int) Math.min(length - done, segmentElements - index);
+            DoubleBuffer view = segments[s].duplicate();
+            view.position(index);
+            view.put(src, srcOff + done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Copies the whole matrix onto the heap. Only meant for results that are known to fit.
+     */
+    public double[][] toArray() {
+        double[][] matrix = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            readRow(i, 0, matrix[i], 0, cols);
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns how many rows an elementwise chunk task should cover.
+     */
+    public static int rowsPerChunk(int cols) {
+        return Math.max(1, CHUNK_ELEMENTS / cols);
+    }
+
+    /**
+     * Writes rows [rowFrom, rowTo) of left + right (or left - right) into this matrix.
+     */
+    public void storeSum(MappedMatrix left, MappedMatrix right, boolean subtract, int rowFrom, int rowTo) {
+        int piece = Math.min(cols, CHUNK_ELEMENTS);
+        double[] a = new double[piece];
+        double[] b = new double[piece];
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int c = 0; c < cols; c += piece) {
+                int n = Math.min(piece, cols - c);
+                left.readRow(i, c, a, 0, n);
+                right.readRow(i, c, b, 0, n);
+                if (subtract) {
+                    MatrixKernels.subtractInto(a, 0, b, 0, n);
+                }
+                else {
+                    MatrixKernels.addInto(a, 0, b, 0, n);
+                }
+                writeRow(i, c, a, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Writes rows [rowFrom, rowTo) of -source into this matrix.
+     */
+    public void storeNegation(MappedMatrix source, int rowFrom, int rowTo) {
+        int piece = Math.min(cols, CHUNK_ELEMENTS);
+        double[] a = new double[piece];
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int c = 0; c < cols; c += piece) {
+                int n = Math.min(piece, cols - c);
+                source.readRow(i, c, a, 0, n);
+                MatrixKernels.negateInPlace(a, 0, n);
+                writeRow(i, c, a, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Transposes the block of source at rows [rowFrom, rowTo) and columns [colFrom, colTo)
+     * into the matching block of this matrix.
+     */
+    public void storeTransposeTile(MappedMatrix source, int rowFrom, int rowTo, int colFrom, int colTo) {
+        int height = rowTo - rowFrom;
+        int width = colTo - colFrom;
+        double[][] tile = new double[height][width];
+        for (int i = 0; i < height; i++) {
+            source.readRow(rowFrom + i, colFrom, tile[i], 0, width);
+        }
+        double[] column = new double[height];
+        for (int j = 0; j < width; j++) {
+            for (int i = 0; i < height; i++) {
+                column[i] = tile[i][j];
+            }
+            writeRow(colFrom + j, rowFrom, column, 0, height);
+        }
+    }
+
+    /**
+     * Writes rows [rowFrom, rowTo) and columns [colFrom, colTo) of left * right into this matrix.
+     * The shared dimension is streamed in TILE-deep panels of both operands.
+     */
+    public void storeProductTile(MappedMatrix left, MappedMatrix right, int rowFrom, int rowTo, int colFrom, int colTo) {
+        int height = rowTo - rowFrom;
+        int width = colTo - colFrom;
+        int depth = left.cols;
+        double[][] acc = new double[height][width];
+        for (int k0 = 0; k0 < depth; k0 += TILE) {
+            int panel = Math.min(TILE, depth - k0);
+            double[][] a = new double[height][panel];
+            double[][] b = new double[panel][width];
+            for (int i = 0; i < height; i++) {
+                left.readRow(rowFrom + i, k0, a[i], 0, panel);
+            }
+            for (int k = 0; k < panel; k++) {
+                right.readRow(k0 + k, colFrom, b[k], 0, width);
+            }
+            MatrixKernels.gemmTile(a, b, 0, height, 0, width, acc);
+        }
+        for (int i = 0; i < height; i++) {
+            writeRow(rowFrom + i, colFrom, acc[i], 0, width);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package memory;
+
+/**
+ * Plain array kernels used by SharedVector and SharedMatrix.
+ * The kernels take no locks: callers must already hold the locks of the data they touch,
+ * or work on private copies.
+ * Calls go to the SIMD implementation (jdk.incubator.vector) when the simd profile built it and
+ * the JVM runs with --add-modules jdk.incubator.vector, and to plain loops otherwise;
+ * -Dlae.kernels=scalar forces the loops. Both give bit-identical results, except that dot
+ * sums in a different order (and with fused multiply-adds under SIMD), so the tiled product
+ * kernels do not use it.
+ */
+public final class MatrixKernels {
+
+    // Output tile: TILE_ROWS x TILE_COLS accumulators. One accumulator row (2 KB) stays in L1,
+    // a TILE_DEPTH x TILE_COLS panel of the right matrix (256 KB) stays in L2.
+    public static final int TILE_ROWS = 64;
+    public static final int TILE_COLS = 256;
+    public static final int TILE_DEPTH = 128;
+
+    private static final ArrayKernels KERNELS = select(System.getProperty("lae.kernels", "simd"));
+
+    private MatrixKernels() {}
+
+    private static ArrayKernels select(String name) {
+        if (!name.equals("scalar")) {
+            try {
+                return (ArrayKernels) Class.forName("memory.SimdKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // not compiled in, or the incubator module is missing at runtime
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * Returns "simd" or "scalar", whichever implementation this JVM selected.
+     */
+    public static String getImplementation() {
+        return (KERNELS instanceof ScalarKernels) ? "scalar" : "simd";
+    }
+
+    /**
+     * Accumulates rows [rowFrom, rowTo) and columns [colFrom, colTo) of left * right into acc,
+     * so that acc[i - rowFrom][j - colFrom] receives element (i, j) of the product.
+     * Both operands are row-major; the shared dimension is walked in TILE_DEPTH blocks.
+     */
+    public static void gemmTile(double[][] left, double[][] right,
+                                int rowFrom, int rowTo, int colFrom, int colTo, double[][] acc) {
+        KERNELS.gemmTile(left, right, rowFrom, rowTo, colFrom, colTo, acc);
+    }
+
+    /**
+     * Same as gemmTile, but the right operand is given by its columns: rightColumns[j] is
+     * column j of the right matrix. Each output element is accumulated in ascending k with
+     * separate multiplies and adds, the same order gemmTile uses, so A * T(B) gives the same
+     * bits as A * B' on either kernel implementation; it does not go through dot, which
+     * reorders the sum (and fuses under SIMD).
+     */
+    public static void gemmTileTransposed(double[][] left, double[][] rightColumns,
+                                          int rowFrom, int rowTo, int colFrom, int colTo, double[][] acc) {
+        int depth = left[rowFrom].length;
+        for (int k0 = 0; k0 < depth; k0 += TILE_DEPTH) {
+            int k1 = Math.min(k0 + TILE_DEPTH, depth);
+            for (int i = rowFrom; i < rowTo; i++) {
+                double[] a = left[i];
+                double[] c = acc[i - rowFrom];
+                int j = colFrom;
+                // four independent sums per pass keep the adders busy without reordering any of them
+                for (; j + 3 < colTo; j += 4) {
+                    double[] b0 = rightColumns[j];
+                    double[] b1 = rightColumns[j + 1];
+                    double[] b2 = rightColumns[j + 2];
+                    double[] b3 = rightColumns[j + 3];
+                    double s0 = c[j - colFrom];
+                    double s1 = c[j + 1 - colFrom];
+                    double s2 = c[j + 2 - colFrom];
+                    double s3 = c[j + 3 - colFrom];
+                    for (int k = k0; k < k1; k++) {
+                        double aik = a[k];
+                        s0 += aik * b0[k];
+                        s1 += aik * b1[k];
+                        s2 += aik * b2[k];
+                        s3 += aik * b3[k];
+                    }
+                    c[j - colFrom] = s0;
+                    c[j + 1 - colFrom] = s1;
+                    c[j + 2 - colFrom] = s2;
+                    c[j + 3 - colFrom] = s3;
+                }
+                for (; j < colTo; j++) {
+                    double[] b = rightColumns[j];
+                    double sum = c[j - colFrom];
+                    for (int k = k0; k < k1; k++) {
+                        sum += a[k] * b[k];
+                    }
+                    c[j - colFrom] = sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * dst[dstOff + i] += src[srcOff + i] for i in [0, length).
+     */
+    public static void addInto(double[] dst, int dstOff, double[] src, int srcOff, int length) {
+        KERNELS.addInto(dst, dstOff, src, srcOff, length);
+    }
+
+    /**
+     * dst[dstOff + i] -= src[srcOff + i] for i in [0, length).
+     */
+    public static void subtractInto(double[] dst, int dstOff, double[] src, int srcOff, int length) {
+        KERNELS.subtractInto(dst, dstOff, src, srcOff, length);
+    }
+
+    /**
+     * a[off + i] = -a[off + i] for i in [0, length).
+     */
+    public static void negateInPlace(double[] a, int off, int length) {
+        KERNELS.negateInPlace(a, off, length);
+    }
+
+    public static double dot(double[] a, int aOff, double[] b, int bOff, int length) {
+        return KERNELS.dot(a, aOff, b, bOff, length);
+    }
+
+    /**
+     * y[yOff + i] += alpha * x[xOff + i] for i in [0, length).
+     */
+    public static void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int length) {
+        KERNELS.axpy(alpha, x, xOff, y, yOff, length);
+    }
+}
@@ -0,0 +1,18 @@
+package memory;
+/**
+ * Determines the element type a SharedMatrix stores and computes in.
+ * DOUBLE keeps double[] vectors. FLOAT keeps float[] vectors, which halves the memory traffic
+ * of ADD and NEGATE and lets twice as many operand elements stay in cache during MULTIPLY.
+ * Values still enter and leave as double, so the JSON and binary formats do not change.
+ * <p>
+ * Error bound of FLOAT against DOUBLE, with u = 2^-24 the unit roundoff of float: every element
+ * is rounded once when it is loaded (relative error at most u), a sum or negation adds at most
+ * u * |result|, and each element of a product with inner dimension n is off by at most
+ * (n + 2) * u / (1 - (n + 2) * u) * sum_k |a_ik| * |b_kj|. Errors compound along a chain of
+ * operations, roughly one such term per node. Magnitudes above Float.MAX_VALUE (about 3.4e38)
+ * become infinite and below Float.MIN_VALUE (about 1.4e-45) become zero.
+ */
+public enum Precision {
+    DOUBLE,
+    FLOAT
+}
@@ -0,0 +1,64 @@
+package memory;
+
+/**
+ * Plain loops over double[], left to C2 to unroll and auto-vectorize where it can.
+ */
+final class ScalarKernels implements ArrayKernels {
+
+    @Override
+    public void gemmTile(double[][] left, double[][] right, int rowFrom, int rowTo, int colFrom, int colTo, double[][] acc) {
+        int depth = right.length;
+        int width = colTo - colFrom;
+        for (int k0 = 0; k0 < depth; k0 += MatrixKernels.TILE_DEPTH) {
+            int k1 = Math.min(k0 + MatrixKernels.TILE_DEPTH, depth);
+            for (int i = rowFrom; i < rowTo; i++) {
+                double[] a = left[i];
+                double[] c = acc[i - rowFrom];
+                for (int k = k0; k < k1; k++) {
+                    double aik = a[k];
+                    double[] b = right[k];
+                    for (int j = 0; j < width; j++) {
+                        c[j] += aik * b[colFrom + j];
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addInto(double[] dst, int dstOff, double[] src, int srcOff, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOff + i] += src[srcOff + i];
+        }
+    }
+
+    @Override
+    public void subtractInto(double[] dst, int dstOff, double[] src, int srcOff, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOff + i] -= src[srcOff + i];
+        }
+    }
+
+    @Override
+    public void negateInPlace(double[] a, int off, int length) {
+        for (int i = 0; i < length; i++) {
+            a[off + i] = -a[off + i];
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int length) {
+        double result = 0.0;
+        for (int i = 0; i < length; i++) {
+            result += a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+}
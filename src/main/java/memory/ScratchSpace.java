@@ -0,0 +1,97 @@
+package memory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A private directory that out-of-core results spill to.
+ * Every MappedMatrix allocated here gets its own file, which is deleted when the matrix is
+ * released or, at the latest, when the space is closed.
+ */
+public class ScratchSpace implements AutoCloseable {
+
+    private final Path directory;
+    private final Set<MappedMatrix> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final AtomicLong nextId = new AtomicLong(0);
+
+    public ScratchSpace(Path parent) throws IOException {
+        Files.createDirectories(parent);
+        directory = Files.createTempDirectory(parent, "lae-scratch-");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public MappedMatrix allocate(int rows, int cols) throws IOException {
+        Path file = directory.resolve("m" + nextId.getAndIncrement() + ".bin");
+        MappedMatrix matrix = MappedMatrix.create(file, rows, cols);
+        synchronized (owned) {
+            owned.add(matrix);
+        }
+        return matrix;
+    }
+
+    /**
+     * Copies an on-heap matrix into a new scratch file.
+     */
+    public MappedMatrix copyOf(double[][] matrix) throws IOException {
+        if (matrix == null || matrix.length == 0) {
+            throw new IllegalArgumentException("Matrix cannot be empty");
+        }
+        int cols = matrix[0].length;
+        MappedMatrix copy = allocate(matrix.length, cols);
+        for (int i = 0; i < matrix.length; i++) {
+            if (matrix[i].length != cols) {
+                throw new IllegalArgumentException("Inconsistent row sizes in matrix");
+            }
+            copy.writeRow(i, 0, matrix[i], 0, cols);
+        }
+        return copy;
+    }
+
+    /**
+     * Deletes the file of a matrix allocated here. Matrices this space does not own are left alone.
+     * The mapping itself is reclaimed by the garbage collector; until then the pages stay valid.
+     */
+    public void release(MappedMatrix matrix) {
+        boolean removed;
+        synchronized (owned) {
+            removed = owned.remove(matrix);
+        }
+        if (removed) {
+            delete(matrix.getFile());
+        }
+    }
+
+    public boolean owns(MappedMatrix matrix) {
+        synchronized (owned) {
+            return owned.contains(matrix);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (owned) {
+            for (MappedMatrix matrix : owned) {
+                delete(matrix.getFile());
+            }
+            owned.clear();
+        }
+        delete(directory);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // some platforms refuse to delete a mapped file; leave it for the JVM exit
+            path.toFile().deleteOnExit();
+        }
+    }
+}
@@ -1,11 +1,38 @@
 package memory;
 
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 public class SharedMatrix {
 
+    // upper bound on the locks shared by the views of a CONTIGUOUS matrix
+    static final int MAX_LOCK_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4) * 2;
+
     private volatile SharedVector[] vectors = {}; // underlying vectors
+    private final StorageMode storageMode;
+    private final Precision precision;
 
     public SharedMatrix() {
         // TODO: initialize empty matrix
+        this(StorageMode.VECTORS);
+    }
+
+    public SharedMatrix(StorageMode storageMode) {
+        this(storageMode, Precision.DOUBLE);
+    }
+
+    /**
+     * An empty matrix whose loads store elements in the given precision.
+     */
+    public SharedMatrix(StorageMode storageMode, Precision precision) {
+        if (storageMode == null) {
+            throw new IllegalArgumentException("Storage mode cannot be null");
+        }
+        if (precision == null) {
+            throw new IllegalArgumentException("Precision cannot be null");
+        }
+        this.storageMode = storageMode;
+        this.precision = precision;
     }
 
     public SharedMatrix(double[][] matrix) {
@@ -16,6 +43,8 @@ public class SharedMatrix {
         if (matrix.length == 0) {
             throw new IllegalArgumentException("Matrix cannot be empty");
         }
+        storageMode = StorageMode.VECTORS;
+        precision = Precision.DOUBLE;
         vectors = new SharedVector[matrix.length];
         for (int i = 0; i < matrix.length; i++) {
             SharedVector vec = new SharedVector(matrix[i], VectorOrientation.ROW_MAJOR);
@@ -31,6 +60,22 @@ public class SharedMatrix {
         if (matrix.length == 0) {
             throw new IllegalArgumentException("Matrix cannot be empty");
         }
+        if (precision == Precision.FLOAT) {
+            loadFloats(matrix, false);
+            return;
+        }
+        if (storageMode == StorageMode.CONTIGUOUS) {
+            int numCols = matrix[0].length;
+            double[] flat = new double[matrix.length * numCols];
+            for (int i = 0; i < matrix.length; i++) {
+                if (matrix[i].length != numCols) {
+                    throw new IllegalArgumentException("Inconsistent row sizes in matrix");
+                }
+                System.arraycopy(matrix[i], 0, flat, i * numCols, numCols);
+            }
+            loadContiguous(flat, matrix.length, numCols, VectorOrientation.ROW_MAJOR);
+            return;
+        }
         vectors = new SharedVector[matrix.length];
         for (int i = 0; i < matrix.length; i++) {
             SharedVector vec = new SharedVector(matrix[i], VectorOrientation.ROW_MAJOR);
@@ -38,6 +83,74 @@ public class SharedMatrix {
         }
     }
 
+    /**
+     * Replaces the internal data with a zero-filled rows x cols row-major matrix,
+     * in this matrix's storage mode and precision.
+     */
+    public void allocateRowMajor(int rows, int cols) {
+        if (rows == 0) {
+            throw new IllegalArgumentException("Matrix cannot be empty");
+        }
+        if (storageMode == StorageMode.CONTIGUOUS && precision == Precision.FLOAT) {
+            loadContiguous(new float[rows * cols], rows, cols, VectorOrientation.ROW_MAJOR);
+        }
+        else if (storageMode == StorageMode.CONTIGUOUS) {
+            loadContiguous(new double[rows * cols], rows, cols, VectorOrientation.ROW_MAJOR);
+        }
+        else {
+            SharedVector[] views = new SharedVector[rows];
+            for (int i = 0; i < rows; i++) {
+                views[i] = (precision == Precision.FLOAT)
+                        ? new SharedVector(new float[cols], VectorOrientation.ROW_MAJOR)
+                        : new SharedVector(new double[cols], VectorOrientation.ROW_MAJOR);
+            }
+            vectors = views;
+        }
+    }
+
+    /**
+     * FLOAT precision load: rounds every element to float, laying the matrix out by rows,
+     * or by columns if columnMajor is set.
+     */
+    private void loadFloats(double[][] matrix, boolean columnMajor) {
+        int numRows = matrix.length;
+        int numCols = matrix[0].length;
+        for (double[] row : matrix) {
+            if (row.length != numCols) {
+                throw new IllegalArgumentException("Inconsistent row sizes in matrix");
+            }
+        }
+        int numVectors = columnMajor ? numCols : numRows;
+        int vectorLength = columnMajor ? numRows : numCols;
+        VectorOrientation orientation = columnMajor ? VectorOrientation.COLUMN_MAJOR : VectorOrientation.ROW_MAJOR;
+        if (storageMode == StorageMode.CONTIGUOUS) {
+            float[] flat = new float[numRows * numCols];
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < numCols; j++) {
+                    flat[columnMajor ? j * numRows + i : i * numCols + j] = (float) matrix[i][j];
+                }
+            }
+            loadContiguous(flat, numVectors, vectorLength, orientation);
+            return;
+        }
+        float[][] stored = new float[numVectors][vectorLength];
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numCols; j++) {
+                if (columnMajor) {
+                    stored[j][i] = (float) matrix[i][j];
+                }
+                else {
+                    stored[i][j] = (float) matrix[i][j];
+                }
+            }
+        }
+        SharedVector[] views = new SharedVector[numVectors];
+        for (int v = 0; v < numVectors; v++) {
+            views[v] = new SharedVector(stored[v], orientation);
+        }
+        vectors = views;
+    }
+
     public void loadColumnMajor(double[][] matrix) {
         // TODO: replace internal data with new column-major matrix
         if (matrix == null) {
@@ -46,6 +159,25 @@ public class SharedMatrix {
         if (matrix.length == 0) {
             throw new IllegalArgumentException("Matrix cannot be empty");
         }
+        if (precision == Precision.FLOAT) {
+            loadFloats(matrix, true);
+            return;
+        }
+        if (storageMode == StorageMode.CONTIGUOUS) {
+            int numRows = matrix.length;
+            int numCols = matrix[0].length;
+            double[] flat = new double[numRows * numCols];
+            for (int i = 0; i < numRows; i++) {
+                if (matrix[i].length != numCols) {
+                    throw new IllegalArgumentException("Inconsistent row sizes in matrix");
+                }
+                for (int j = 0; j < numCols; j++) {
+                    flat[j * numRows + i] = matrix[i][j];
+                }
+            }
+            loadContiguous(flat, numCols, numRows, VectorOrientation.COLUMN_MAJOR);
+            return;
+        }
         vectors = new SharedVector[matrix[0].length];
         for(int j = 0; j < matrix[0].length; j++) {
             double[] currentColumn = new double[matrix.length];
@@ -79,19 +211,17 @@ public class SharedMatrix {
             }
 
 
+            // all read locks are held, so copy straight from the backing arrays
             for (int i = 0; i < vectors.length; i++) {
                 SharedVector vec = vectors[i];
                 if(vec.getOrientation() == VectorOrientation.ROW_MAJOR) {
-                    for (int j = 0; j < numCols; j++) {
-                        result[i][j] = vec.get(j);
-                    }
+                    vec.copyToUnlocked(result[i], 0);
                 }
                 else{
                     for (int j = 0; j < numRows; j++) {
-                        result[j][i] = vec.get(j);
+                        result[j][i] = vec.getUnlocked(j);
                     }
                 }
-                
             }
         }
         finally{
@@ -100,6 +230,231 @@ public class SharedMatrix {
         return result;
     }
 
+    /**
+     * Returns a row-major copy of rows [rowFrom, rowTo) only, so a large matrix can be
+     * consumed a block at a time. A ROW_MAJOR matrix only locks the rows it copies.
+     */
+    public double[][] readRowBlock(int rowFrom, int rowTo) {
+        SharedVector[] vecs = vectors;
+        if (vecs.length == 0) {
+            return new double[0][0];
+        }
+        double[][] result = new double[rowTo - rowFrom][];
+        if (vecs[0].getOrientation() == VectorOrientation.ROW_MAJOR) {
+            for (int i = rowFrom; i < rowTo; i++) {
+                result[i - rowFrom] = new double[vecs[i].length()];
+                vecs[i].copyTo(result[i - rowFrom], 0);
+            }
+            return result;
+        }
+        acquireAllVectorReadLocks(vecs);
+        try{
+            for (int i = rowFrom; i < rowTo; i++) {
+                double[] row = new double[vecs.length];
+                for (int j = 0; j < vecs.length; j++) {
+                    row[j] = vecs[j].getUnlocked(i);
+                }
+                result[i - rowFrom] = row;
+            }
+        }
+        finally{
+            releaseAllVectorReadLocks(vecs);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the internal data with numVectors views of vectorLength elements each,
+     * laid out back to back in flat. The views share a bounded number of striped locks.
+     */
+    private void loadContiguous(double[] flat, int numVectors, int vectorLength, VectorOrientation orientation) {
+        ReadWriteLock[] stripes = lockStripes(numVectors);
+        SharedVector[] views = new SharedVector[numVectors];
+        for (int i = 0; i < numVectors; i++) {
+            views[i] = new SharedVector(flat, i * vectorLength, vectorLength, orientation, stripes[i % stripes.length]);
+        }
+        vectors = views;
+    }
+
+    private void loadContiguous(float[] flat, int numVectors, int vectorLength, VectorOrientation orientation) {
+        ReadWriteLock[] stripes = lockStripes(numVectors);
+        SharedVector[] views = new SharedVector[numVectors];
+        for (int i = 0; i < numVectors; i++) {
+            views[i] = new SharedVector(flat, i * vectorLength, vectorLength, orientation, stripes[i % stripes.length]);
+        }
+        vectors = views;
+    }
+
+    private static ReadWriteLock[] lockStripes(int numVectors) {
+        int numStripes = Math.min(numVectors, MAX_LOCK_STRIPES);
+        ReadWriteLock[] stripes = new ReadWriteLock[numStripes];
+        for (int s = 0; s < numStripes; s++) {
+            stripes[s] = new ReentrantReadWriteLock();
+        }
+        return stripes;
+    }
+
+    /**
+     * Returns a copy of every stored vector as it is laid out, without changing orientation:
+     * the rows of a ROW_MAJOR matrix, or the columns of a COLUMN_MAJOR one.
+     */
+    public double[][] readVectors() {
+        SharedVector[] vecs = vectors;
+        double[][] result = new double[vecs.length][];
+        acquireAllVectorReadLocks(vecs);
+        try{
+            for (int i = 0; i < vecs.length; i++) {
+                result[i] = new double[vecs[i].length()];
+                vecs[i].copyToUnlocked(result[i], 0);
+            }
+        }
+        finally{
+            releaseAllVectorReadLocks(vecs);
+        }
+        return result;
+    }
+
+    /**
+     * Same as readRowMajor, rounded to float; a FLOAT matrix is copied without conversion.
+     */
+    public float[][] readRowMajorFloats() {
+        SharedVector[] vecs = vectors;
+        if (vecs.length == 0) {
+            return new float[0][0];
+        }
+        if (vecs[0].getOrientation() == VectorOrientation.ROW_MAJOR) {
+            return readVectorsFloats();
+        }
+        float[][] columns = readVectorsFloats();
+        float[][] result = new float[columns[0].length][columns.length];
+        for (int j = 0; j < columns.length; j++) {
+            for (int i = 0; i < result.length; i++) {
+                result[i][j] = columns[j][i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as readVectors, rounded to float; a FLOAT matrix is copied without conversion.
+     */
+    public float[][] readVectorsFloats() {
+        SharedVector[] vecs = vectors;
+        float[][] result = new float[vecs.length][];
+        acquireAllVectorReadLocks(vecs);
+        try{
+            for (int i = 0; i < vecs.length; i++) {
+                result[i] = new float[vecs[i].length()];
+                vecs[i].copyToUnlocked(result[i], 0);
+            }
+        }
+        finally{
+            releaseAllVectorReadLocks(vecs);
+        }
+        return result;
+    }
+
+    /**
+     * Transposes the matrix by reinterpreting its stored vectors: rows become columns and
+     * the other way around. Only orientation metadata changes, no element is copied.
+     */
+    public void transpose() {
+        SharedVector[] vecs = vectors;
+        acquireAllVectorWriteLocks(vecs);
+        try{
+            for (SharedVector vec : vecs) {
+                vec.transposeUnlocked();
+            }
+        }
+        finally{
+            releaseAllVectorWriteLocks(vecs);
+        }
+    }
+
+    /**
+     * Overwrites rows [rowFrom, rowTo) and columns [colFrom, colTo) of this row-major matrix
+     * with the matching tile of left * right. left holds the rows of the left operand; right
+     * holds the rows of the right operand, or its columns if rightOrientation is COLUMN_MAJOR.
+     * The operands are not modified while tiles are computed, so only the written rows are locked.
+     */
+    public void storeProductTile(double[][] left, double[][] right, VectorOrientation rightOrientation,
+                                 int rowFrom, int rowTo, int colFrom, int colTo) {
+        productTile(left, right, rightOrientation, rowFrom, rowTo, colFrom, colTo, false);
+    }
+
+    /**
+     * Same as storeProductTile, but adds the tile to the current contents instead of
+     * overwriting them. The tile is computed on its own first, so the sum is rounded exactly
+     * as if the product had been stored and added in a separate pass.
+     */
+    public void addProductTile(double[][] left, double[][] right, VectorOrientation rightOrientation,
+                               int rowFrom, int rowTo, int colFrom, int colTo) {
+        productTile(left, right, rightOrientation, rowFrom, rowTo, colFrom, colTo, true);
+    }
+
+    private void productTile(double[][] left, double[][] right, VectorOrientation rightOrientation,
+                             int rowFrom, int rowTo, int colFrom, int colTo, boolean accumulate) {
+        if (getOrientation() != VectorOrientation.ROW_MAJOR) {
+            throw new IllegalStateException("Product tiles can only be stored into a ROW_MAJOR matrix");
+        }
+        int width = colTo - colFrom;
+        double[][] acc = new double[rowTo - rowFrom][width];
+        if (rightOrientation == VectorOrientation.COLUMN_MAJOR) {
+            MatrixKernels.gemmTileTransposed(left, right, rowFrom, rowTo, colFrom, colTo, acc);
+        }
+        else {
+            MatrixKernels.gemmTile(left, right, rowFrom, rowTo, colFrom, colTo, acc);
+        }
+        for (int i = rowFrom; i < rowTo; i++) {
+            if (accumulate) {
+                get(i).addRange(colFrom, acc[i - rowFrom], width);
+            }
+            else {
+                get(i).setRange(colFrom, acc[i - rowFrom], width);
+            }
+        }
+    }
+
+    /**
+     * Same as storeProductTile, over float operands read with readRowMajorFloats and
+     * readVectorsFloats. The tile is accumulated in float.
+     */
+    public void storeProductTile(float[][] left, float[][] right, VectorOrientation rightOrientation,
+                                 int rowFrom, int rowTo, int colFrom, int colTo) {
+        productTile(left, right, rightOrientation, rowFrom, rowTo, colFrom, colTo, false);
+    }
+
+    /**
+     * Same as addProductTile, over float operands.
+     */
+    public void addProductTile(float[][] left, float[][] right, VectorOrientation rightOrientation,
+                               int rowFrom, int rowTo, int colFrom, int colTo) {
+        productTile(left, right, rightOrientation, rowFrom, rowTo, colFrom, colTo, true);
+    }
+
+    private void productTile(float[][] left, float[][] right, VectorOrientation rightOrientation,
+                             int rowFrom, int rowTo, int colFrom, int colTo, boolean accumulate) {
+        if (getOrientation() != VectorOrientation.ROW_MAJOR) {
+            throw new IllegalStateException("Product tiles can only be stored into a ROW_MAJOR matrix");
+        }
+        int width = colTo - colFrom;
+        float[][] acc = new float[rowTo - rowFrom][width];
+        if (rightOrientation == VectorOrientation.COLUMN_MAJOR) {
+            FloatKernels.gemmTileTransposed(left, right, rowFrom, rowTo, colFrom, colTo, acc);
+        }
+        else {
+            FloatKernels.gemmTile(left, right, rowFrom, rowTo, colFrom, colTo, acc);
+        }
+        for (int i = rowFrom; i < rowTo; i++) {
+            if (accumulate) {
+                get(i).addRange(colFrom, acc[i - rowFrom], width);
+            }
+            else {
+                get(i).setRange(colFrom, acc[i - rowFrom], width);
+            }
+        }
+    }
+
     public SharedVector get(int index) {
         // TODO: return vector at index
         if(index < 0 || index >= vectors.length){
@@ -113,36 +468,92 @@ public class SharedMatrix {
         return vectors.length;
     }
 
+    /**
+     * Returns the number of rows of the matrix, whichever way it is stored.
+     */
+    public int getRowCount() {
+        SharedVector[] vecs = vectors;
+        if (vecs.length == 0) {
+            return 0;
+        }
+        return (vecs[0].getOrientation() == VectorOrientation.ROW_MAJOR) ? vecs.length : vecs[0].length();
+    }
+
+    /**
+     * Returns the number of columns of the matrix, whichever way it is stored.
+     */
+    public int getColumnCount() {
+        SharedVector[] vecs = vectors;
+        if (vecs.length == 0) {
+            return 0;
+        }
+        return (vecs[0].getOrientation() == VectorOrientation.ROW_MAJOR) ? vecs[0].length() : vecs.length;
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
     public VectorOrientation getOrientation() {
         // TODO: return orientation
         if (vectors.length == 0){ throw new IllegalStateException("Matrix is empty"); } 
         return vectors[0].getOrientation();
     }
 
+    /**
+     * Takes the read lock of every stored vector, so that a whole computation can run
+     * against this matrix without locking per element. Must be paired with readUnlockAll.
+     */
+    public void readLockAll() {
+        acquireAllVectorReadLocks(vectors);
+    }
+
+    public void readUnlockAll() {
+        releaseAllVectorReadLocks(vectors);
+    }
+
+    /**
+     * How many leading vectors of vecs hold every distinct lock. CONTIGUOUS views cycle through
+     * their stripes, so each stripe is taken once instead of once per view; a ReentrantReadWriteLock
+     * only allows 65535 holds, which a tall matrix would otherwise exceed.
+     */
+    private static int distinctLocks(SharedVector[] vecs) {
+        int stripes = Math.min(vecs.length, MAX_LOCK_STRIPES);
+        return (vecs.length > stripes && vecs[stripes].sharesLockWith(vecs[0])) ? stripes : vecs.length;
+    }
+
     private void acquireAllVectorReadLocks(SharedVector[] vecs) {
         // TODO: acquire read lock for each vector
-        for(int i = 0; i < vecs.length; i++){
+        int count = distinctLocks(vecs);
+        for(int i = 0; i < count; i++){
             vecs[i].readLock();
         }
     }
 
     private void releaseAllVectorReadLocks(SharedVector[] vecs) {
         // TODO: release read locks
-        for(int i = 0; i < vecs.length; i++){
+        int count = distinctLocks(vecs);
+        for(int i = 0; i < count; i++){
             vecs[i].readUnlock();
         }
     }
 
     private void acquireAllVectorWriteLocks(SharedVector[] vecs) {
         // TODO: acquire write lock for each vector
-        for(int i = 0; i < vecs.length; i++){
+        int count = distinctLocks(vecs);
+        for(int i = 0; i < count; i++){
             vecs[i].writeLock();
         }
     }
 
     private void releaseAllVectorWriteLocks(SharedVector[] vecs) {
         // TODO: release write locks
-        for(int i = 0; i < vecs.length; i++){
+        int count = distinctLocks(vecs);
+        for(int i = 0; i < count; i++){
             vecs[i].writeUnlock();
         }
     }
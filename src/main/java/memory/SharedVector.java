@@ -1,38 +1,78 @@
 package memory;
 
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class SharedVector {
 
     private double[] vector;
+    private float[] floats; // used instead of vector in FLOAT precision
+    private int offset; // position of element 0 inside vector
+    private int length; // number of elements this vector covers
     private VectorOrientation orientation;
-    private ReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    private final ReadWriteLock lock;
 
     public SharedVector(double[] vector, VectorOrientation orientation) {
-        this.vector = vector;
+        this(vector, 0, vector.length, orientation, new ReentrantReadWriteLock());
+    }
+
+    /**
+     * Creates a view over length consecutive elements of data, starting at offset.
+     * Used by CONTIGUOUS SharedMatrix storage, where the lock may be shared with other views.
+     */
+    SharedVector(double[] data, int offset, int length, VectorOrientation orientation, ReadWriteLock lock) {
+        this.vector = data;
+        this.offset = offset;
+        this.length = length;
+        this.orientation = orientation;
+        this.lock = lock;
+    }
+
+    public SharedVector(float[] vector, VectorOrientation orientation) {
+        this(vector, 0, vector.length, orientation, new ReentrantReadWriteLock());
+    }
+
+    /**
+     * FLOAT precision counterpart of the view constructor.
+     */
+    SharedVector(float[] data, int offset, int length, VectorOrientation orientation, ReadWriteLock lock) {
+        this.floats = data;
+        this.offset = offset;
+        this.length = length;
         this.orientation = orientation;
+        this.lock = lock;
     }
 
     public double get(int index) {
         lock.readLock().lock();
         try{
-            if(index < 0 || index >= this.vector.length) {
-                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for vector of length " + this.vector.length);
+            if(index < 0 || index >= this.length) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for vector of length " + this.length);
             }
-            return this.vector[index];
+            return getUnlocked(index);
         } finally {
             lock.readLock().unlock();
         }
     }
 
     public int length() {
-        return this.vector.length;
+        return this.length;
     }
 
     public VectorOrientation getOrientation() {
         return this.orientation;
     }
 
+    public Precision getPrecision() {
+        return (this.floats != null) ? Precision.FLOAT : Precision.DOUBLE;
+    }
+
+    private void requireSamePrecision(SharedVector other) {
+        if ((this.floats == null) != (other.floats == null)) {
+            throw new IllegalArgumentException("Vectors must have the same precision.");
+        }
+    }
+
     public void writeLock() {
         lock.writeLock().lock();
     }
@@ -49,29 +89,65 @@ public class SharedVector {
         lock.readLock().unlock();
     }
 
+    boolean sharesLockWith(SharedVector other) {
+        return lock == other.lock;
+    }
+
     public void transpose() {
         writeLock();
         try{
-            if(this.orientation == VectorOrientation.ROW_MAJOR) {
-                this.orientation = VectorOrientation.COLUMN_MAJOR;
-            } else {
-                this.orientation = VectorOrientation.ROW_MAJOR;
-            }
+            transposeUnlocked();
         } finally {
             writeUnlock();
         }
 
     }
 
+    /**
+     * Same as transpose, for callers that already hold this vector's write lock.
+     */
+    void transposeUnlocked() {
+        if(this.orientation == VectorOrientation.ROW_MAJOR) {
+            this.orientation = VectorOrientation.COLUMN_MAJOR;
+        } else {
+            this.orientation = VectorOrientation.ROW_MAJOR;
+        }
+    }
+
     public void add(SharedVector other) {
         if(other.length() != this.length()) {
             throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
         }
+        requireSamePrecision(other);
+        writeLock();
+        other.readLock();
+        try{
+            if (this.floats != null) {
+                FloatKernels.addInto(this.floats, this.offset, other.floats, other.offset, this.length);
+            }
+            else {
+                MatrixKernels.addInto(this.vector, this.offset, other.vector, other.offset, this.length);
+            }
+        }
+        finally {
+            writeUnlock();
+            other.readUnlock();
+        }
+    }
+
+    public void subtract(SharedVector other) {
+        if(other.length() != this.length()) {
+            throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
+        }
+        requireSamePrecision(other);
         writeLock();
         other.readLock();
         try{
-            for (int i = 0; i < this.length(); i++) {
-                this.vector[i] += other.vector[i];
+            if (this.floats != null) {
+                FloatKernels.subtractInto(this.floats, this.offset, other.floats, other.offset, this.length);
+            }
+            else {
+                MatrixKernels.subtractInto(this.vector, this.offset, other.vector, other.offset, this.length);
             }
         }
         finally {
@@ -83,8 +159,11 @@ public class SharedVector {
     public void negate() {
         writeLock();
         try{
-            for (int i = 0; i < this.length(); i++) {
-               this.vector[i] = -this.vector[i];
+            if (this.floats != null) {
+                FloatKernels.negateInPlace(this.floats, this.offset, this.length);
+            }
+            else {
+                MatrixKernels.negateInPlace(this.vector, this.offset, this.length);
             }
         }
         finally{    
@@ -100,14 +179,14 @@ public class SharedVector {
         if(this.orientation == other.getOrientation()) {
             throw new IllegalArgumentException("Vectors must be of different orientation to compute dot product.");
         }
+        requireSamePrecision(other);
         readLock();
         other.readLock();
         try{
-            double result = 0.0;
-            for (int i = 0; i < this.length(); i++) {
-                result += this.vector[i] * other.vector[i];
+            if (this.floats != null) {
+                return FloatKernels.dot(this.floats, this.offset, other.floats, other.offset, this.length);
             }
-            return result;
+            return MatrixKernels.dot(this.vector, this.offset, other.vector, other.offset, this.length);
         } 
         finally {
             readUnlock();
@@ -116,6 +195,144 @@ public class SharedVector {
 
     }
 
+    /**
+     * Copies all elements into dst starting at dstPos, taking the read lock once.
+     */
+    public void copyTo(double[] dst, int dstPos) {
+        readLock();
+        try{
+            copyToUnlocked(dst, dstPos);
+        }
+        finally{
+            readUnlock();
+        }
+    }
+
+    /**
+     * Same as copyTo, for callers that already hold this vector's lock.
+     */
+    void copyToUnlocked(double[] dst, int dstPos) {
+        if (this.floats != null) {
+            for (int i = 0; i < this.length; i++) {
+                dst[dstPos + i] = this.floats[this.offset + i];
+            }
+            return;
+        }
+        System.arraycopy(this.vector, this.offset, dst, dstPos, this.length);
+    }
+
+    /**
+     * Same as copyToUnlocked, into a float array; double elements are rounded to float.
+     */
+    void copyToUnlocked(float[] dst, int dstPos) {
+        if (this.floats != null) {
+            System.arraycopy(this.floats, this.offset, dst, dstPos, this.length);
+            return;
+        }
+        for (int i = 0; i < this.length; i++) {
+            dst[dstPos + i] = (float) this.vector[this.offset + i];
+        }
+    }
+
+    /**
+     * Reads an element without locking, for callers that already hold this vector's lock.
+     */
+    double getUnlocked(int index) {
+        return (this.floats != null) ? this.floats[this.offset + index] : this.vector[this.offset + index];
+    }
+
+    /**
+     * Overwrites count elements starting at index from with values[0..count).
+     */
+    void setRange(int from, double[] values, int count) {
+        if(from < 0 || from + count > this.length) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + (from + count) + " is out of bounds for vector of length " + this.length);
+        }
+        writeLock();
+        try{
+            if (this.floats != null) {
+                for (int i = 0; i < count; i++) {
+                    this.floats[this.offset + from + i] = (float) values[i];
+                }
+            }
+            else {
+                System.arraycopy(values, 0, this.vector, this.offset + from, count);
+            }
+        }
+        finally{
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Adds values[0..count) to the count elements starting at index from.
+     */
+    void addRange(int from, double[] values, int count) {
+        if(from < 0 || from + count > this.length) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + (from + count) + " is out of bounds for vector of length " + this.length);
+        }
+        writeLock();
+        try{
+            if (this.floats != null) {
+                for (int i = 0; i < count; i++) {
+                    this.floats[this.offset + from + i] = (float) (values[i] + this.floats[this.offset + from + i]);
+                }
+            }
+            else {
+                MatrixKernels.addInto(this.vector, this.offset + from, values, 0, count);
+            }
+        }
+        finally{
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Same as addRange, from float values.
+     */
+    void addRange(int from, float[] values, int count) {
+        if(from < 0 || from + count > this.length) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + (from + count) + " is out of bounds for vector of length " + this.length);
+        }
+        writeLock();
+        try{
+            if (this.floats != null) {
+                FloatKernels.addInto(this.floats, this.offset + from, values, 0, count);
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    this.vector[this.offset + from + i] += values[i];
+                }
+            }
+        }
+        finally{
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Same as setRange, from float values; a DOUBLE vector stores them widened.
+     */
+    void setRange(int from, float[] values, int count) {
+        if(from < 0 || from + count > this.length) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + (from + count) + " is out of bounds for vector of length " + this.length);
+        }
+        writeLock();
+        try{
+            if (this.floats != null) {
+                System.arraycopy(values, 0, this.floats, this.offset + from, count);
+            }
+            else {
+                for (int i = 0; i < count; i++) {
+                    this.vector[this.offset + from + i] = values[i];
+                }
+            }
+        }
+        finally{
+            writeUnlock();
+        }
+    }
+
     private void validateDimensions(int vLen, int mRows, int mCols) {
         if (this.getOrientation() == VectorOrientation.ROW_MAJOR && vLen != mRows) {
             throw new IllegalArgumentException("error: Illegal operation: dimensions mismatch");
@@ -136,29 +353,60 @@ public class SharedVector {
         double[] result;
 
         writeLock();
+        matrix.readLockAll();
         try{
-            if(mOrient == VectorOrientation.COLUMN_MAJOR){
+            // every lock is held from here on, so the loops touch the raw arrays directly
+            if(this.floats != null || matrix.getPrecision() == Precision.FLOAT){
+                // FLOAT operands go element by element, accumulating in double
+                result = new double[(mOrient == VectorOrientation.COLUMN_MAJOR) ? matrix.length() : matrix.get(0).length()];
+                for (int j = 0; j < this.length; j++) {
+                    double vj = getUnlocked(j);
+                    for (int i = 0; i < result.length; i++) {
+                        SharedVector other = matrix.get((mOrient == VectorOrientation.COLUMN_MAJOR) ? i : j);
+                        result[i] += vj * other.getUnlocked((mOrient == VectorOrientation.COLUMN_MAJOR) ? j : i);
+                    }
+                }
+            }
+            else if(mOrient == VectorOrientation.COLUMN_MAJOR){
                 result = new double[matrix.length()];
-                for (int i = 0; i < matrix.length(); i++) {
-                    result[i] = this.dot(matrix.get(i));
+                for (int i = 0; i < result.length; i++) {
+                    SharedVector column = matrix.get(i);
+                    result[i] = MatrixKernels.dot(this.vector, this.offset, column.vector, column.offset, this.length);
                 }
             }
             else{
-                int resultLen = matrix.get(0).length();
-                int matrixInternalListSize = matrix.length();
-                result = new double[resultLen];
-                for (int i = 0; i < resultLen; i++) {
-                    double sum = 0.0;
-
-                    for (int j = 0; j < matrixInternalListSize; j++) {
-                        sum += this.get(j) * matrix.get(j).get(i);
-                    }
-                    result[i] = sum;
+                // result += v[j] * row j, streaming through the matrix rows in storage order
+                result = new double[matrix.get(0).length()];
+                for (int j = 0; j < matrix.length(); j++) {
+                    SharedVector row = matrix.get(j);
+                    MatrixKernels.axpy(this.vector[this.offset + j], row.vector, row.offset, result, 0, result.length);
                 }
             }
-            this.vector = result;
+            if(result.length == this.length && this.floats != null) {
+                for (int i = 0; i < result.length; i++) {
+                    this.floats[this.offset + i] = (float) result[i];
+                }
+            }
+            else if(result.length == this.length) {
+                // keep writing into the same storage, which may be shared with other views
+                System.arraycopy(result, 0, this.vector, this.offset, result.length);
+            }
+            else if(this.floats != null) {
+                this.floats = new float[result.length];
+                this.offset = 0;
+                this.length = result.length;
+                for (int i = 0; i < result.length; i++) {
+                    this.floats[i] = (float) result[i];
+                }
+            }
+            else {
+                this.vector = result;
+                this.offset = 0;
+                this.length = result.length;
+            }
         }
         finally{
+            matrix.readUnlockAll();
             writeUnlock();
         }
     }
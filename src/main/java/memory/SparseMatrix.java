@@ -0,0 +1,521 @@
+package memory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable compressed sparse matrix. In ROW_MAJOR orientation it is CSR: pointers[i] to
+ * pointers[i + 1] delimit the entries of row i, and indices holds their columns. In COLUMN_MAJOR
+ * orientation it is CSC, with the roles of rows and columns swapped, so a transpose is a view
+ * over the same arrays. Indices within a row (or column) are sorted.
+ * The kernels work on row ranges, so the engine can split an operation into row-block tasks;
+ * they never modify their operands, which may be shared by several consumers.
+ * On a matrix whose values are all finite (see isFinite) the kernels give the same bits as the
+ * dense ones: the products they leave out are then signed zeros, which never change a sum that
+ * starts at +0.0, and implicit zeros are added wherever a dense sum would turn -0.0 into +0.0.
+ */
+public final class SparseMatrix {
+
+    // literal matrices are stored sparse at or below this density...
+    public static final double SPARSE_DENSITY = 0.1;
+    // ...and computed results go back to dense above this one; the gap keeps results from flip-flopping
+    public static final double DENSE_DENSITY = 0.3;
+    // smaller matrices always stay dense
+    public static final long MIN_ELEMENTS = 4096;
+
+    private final int rows;
+    private final int cols;
+    private final VectorOrientation orientation;
+    private final int[] pointers;
+    private final int[] indices;
+    private final double[] values;
+
+    private SparseMatrix(int rows, int cols, VectorOrientation orientation, int[] pointers, int[] indices, double[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.orientation = orientation;
+        this.pointers = pointers;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Whether a literal with this many elements and non-zeros is worth storing sparse.
+     */
+    public static boolean prefersSparse(long elements, long nonZeros) {
+        return elements >= MIN_ELEMENTS && nonZeros <= SPARSE_DENSITY * elements;
+    }
+
+    public static SparseMatrix fromDense(double[][] matrix) {
+        Builder builder = new Builder((matrix.length == 0) ? 0 : matrix[0].length);
+        for (double[] row : matrix) {
+            builder.appendRow(row);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects a CSR matrix row by row, for parsers that see one dense row at a time.
+     */
+    public static final class Builder {
+        private final int cols;
+        private int rows = 0;
+        private int[] pointers = new int[17];
+        private int[] indices = new int[16];
+        private double[] values = new double[16];
+
+        public Builder(int cols) {
+            this.cols = cols;
+        }
+
+        /**
+         * Appends the non-zeros of row, which is not kept and may be reused by the caller.
+         */
+        public void appendRow(double[] row) {
+            if (row.length != cols) {
+                throw new IllegalArgumentException("Inconsistent row sizes in matrix");
+            }
+            int count = pointers[rows];
+            for (int j = 0; j < row.length; j++) {
+                // only +0.0 is left out, so -0.0 survives a round trip
+                if (Double.doubleToRawLongBits(row[j]) != 0) {
+                    if (count == indices.length) {
+                        indices = Arrays.copyOf(indices, count * 2);
+                        values = Arrays.copyOf(values, count * 2);
+                    }
+                    indices[count] = j;
+                    values[count] = row[j];
+                    count++;
+                }
+            }
+            if (rows + 2 > pointers.length) {
+                pointers = Arrays.copyOf(pointers, pointers.length * 2);
+            }
+            pointers[++rows] = count;
+        }
+
+        public int getRowCount() {
+            return rows;
+        }
+
+        public long getElementCount() {
+            return (long) rows * cols;
+        }
+
+        public int getNonZeroCount() {
+            return pointers[rows];
+        }
+
+        public SparseMatrix build() {
+            int count = pointers[rows];
+            return new SparseMatrix(rows, cols, VectorOrientation.ROW_MAJOR,
+                    Arrays.copyOf(pointers, rows + 1), Arrays.copyOf(indices, count), Arrays.copyOf(values, count));
+        }
+
+        /**
+         * Expands the rows collected so far, for when the matrix turns out to be dense after all.
+         */
+        public double[][] toDenseRows() {
+            return build().toDense();
+        }
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return cols;
+    }
+
+    public VectorOrientation getOrientation() {
+        return orientation;
+    }
+
+    public int getNonZeroCount() {
+        return pointers[pointers.length - 1];
+    }
+
+    public double getDensity() {
+        long elements = (long) rows * cols;
+        return (elements == 0) ? 0 : (double) getNonZeroCount() / elements;
+    }
+
+    /**
+     * Whether a computed result of this shape and fill is cheaper to keep dense.
+     */
+    public boolean prefersDense() {
+        return (long) rows * cols < MIN_ELEMENTS || getDensity() > DENSE_DENSITY;
+    }
+
+    /**
+     * The transpose, sharing this matrix's arrays: CSR becomes CSC and the other way round.
+     */
+    public SparseMatrix transpose() {
+        VectorOrientation flipped = (orientation == VectorOrientation.ROW_MAJOR) ? VectorOrientation.COLUMN_MAJOR : VectorOrientation.ROW_MAJOR;
+        return new SparseMatrix(cols, rows, flipped, pointers, indices, values);
+    }
+
+    /**
+     * The same matrix stored in the given orientation; converts in O(nnz) if it is not already.
+     */
+    public SparseMatrix withOrientation(VectorOrientation target) {
+        if (orientation == target) {
+            return this;
+        }
+        // the compressed arrays of the transpose, in this orientation, are exactly what we need
+        int major = pointers.length - 1;
+        int minor = (orientation == VectorOrientation.ROW_MAJOR) ? cols : rows;
+        int[] counts = new int[minor + 1];
+        for (int e = 0; e < getNonZeroCount(); e++) {
+            counts[indices[e] + 1]++;
+        }
+        for (int m = 0; m < minor; m++) {
+            counts[m + 1] += counts[m];
+        }
+        int[] newPointers = counts.clone();
+        int[] newIndices = new int[getNonZeroCount()];
+        double[] newValues = new double[getNonZeroCount()];
+        int[] next = Arrays.copyOf(counts, minor);
+        for (int m = 0; m < major; m++) {
+            for (int e = pointers[m]; e < pointers[m + 1]; e++) {
+                int slot = next[indices[e]]++;
+                newIndices[slot] = m;
+                newValues[slot] = values[e];
+            }
+        }
+        return new SparseMatrix(rows, cols, target, newPointers, newIndices, newValues);
+    }
+
+    public double[][] toDense() {
+        double[][] dense = new double[rows][cols];
+        int major = pointers.length - 1;
+        for (int m = 0; m < major; m++) {
+            for (int e = pointers[m]; e < pointers[m + 1]; e++) {
+                if (orientation == VectorOrientation.ROW_MAJOR) {
+                    dense[m][indices[e]] = values[e];
+                }
+                else {
+                    dense[indices[e]][m] = values[e];
+                }
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Writes row into dst, zeros included. Requires ROW_MAJOR orientation.
+     */
+    public void readRow(int row, double[] dst) {
+        requireRowMajor();
+        Arrays.fill(dst, 0, cols, 0.0);
+        for (int e = pointers[row]; e < pointers[row + 1]; e++) {
+            dst[indices[e]] = values[e];
+        }
+    }
+
+    /**
+     * Whether every stored value is finite, so that the products with implicit zeros the
+     * kernels leave out are all signed zeros rather than NaN.
+     */
+    public boolean isFinite() {
+        for (int e = 0; e < getNonZeroCount(); e++) {
+            if (!Double.isFinite(values[e])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The rows of a dense matrix that hold an infinity or NaN, in ascending order, for
+     * multiplyDenseRows.
+     */
+    public static int[] nonFiniteRows(double[][] matrix) {
+        int[] found = new int[matrix.length];
+        int count = 0;
+        for (int k = 0; k < matrix.length; k++) {
+            for (double value : matrix[k]) {
+                if (!Double.isFinite(value)) {
+                    found[count++] = k;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Negates the stored values only: implicit zeros stay +0.0, where a dense negation gives
+     * -0.0, so the engine negates sparse operands into a dense result instead.
+     */
+    public SparseMatrix negate() {
+        double[] negated = new double[values.length];
+        for (int e = 0; e < negated.length; e++) {
+            negated[e] = -values[e];
+        }
+        return new SparseMatrix(rows, cols, orientation, pointers, indices, negated);
+    }
+
+    private void requireRowMajor() {
+        if (orientation != VectorOrientation.ROW_MAJOR) {
+            throw new IllegalStateException("Row access needs a ROW_MAJOR (CSR) matrix");
+        }
+    }
+
+    /**
+     * out[i] = row i of this * right for i in [rowFrom, rowTo); out rows must be zeroed.
+     * Requires ROW_MAJOR orientation and finite values; right is dense and row-major, and
+     * nonFiniteRows are its rows that are not finite (see nonFiniteRows). A row of this with an
+     * implicit zero against one of them is multiplied out in full, since 0 * Inf is NaN.
+     */
+    public void multiplyDenseRows(double[][] right, int[] nonFiniteRows, int rowFrom, int rowTo, double[][] out) {
+        requireRowMajor();
+        int width = (right.length == 0) ? 0 : right[0].length;
+        double[] expanded = null;
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] c = out[i];
+            if (coversRows(i, nonFiniteRows)) {
+                for (int e = pointers[i]; e < pointers[i + 1]; e++) {
+                    MatrixKernels.axpy(values[e], right[indices[e]], 0, c, 0, width);
+                }
+            }
+            else {
+                if (expanded == null) {
+                    expanded = new double[cols];
+                }
+                readRow(i, expanded);
+                for (int k = 0; k < cols; k++) {
+                    MatrixKernels.axpy(expanded[k], right[k], 0, c, 0, width);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether row holds an explicit entry in every one of the given sorted columns.
+     */
+    private boolean coversRows(int row, int[] columns) {
+        int e = pointers[row];
+        for (int column : columns) {
+            while (e < pointers[row + 1] && indices[e] < column) {
+                e++;
+            }
+            if (e == pointers[row + 1] || indices[e] != column) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * out[i] = row i of left * this for i in [rowFrom, rowTo); out rows must be zeroed.
+     * Requires ROW_MAJOR orientation and finite values; left is dense and row-major.
+     */
+    public void multiplyFromDenseRows(double[][] left, int rowFrom, int rowTo, double[][] out) {
+        requireRowMajor();
+        double[] expanded = null;
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] a = left[i];
+            double[] c = out[i];
+            for (int k = 0; k < a.length; k++) {
+                double aik = a[k];
+                if (aik == 0.0) {
+                    // finite values times a zero are signed zeros, which leave the sums as they are
+                    continue;
+                }
+                if (!Double.isFinite(aik)) {
+                    // an infinity or NaN turns the implicit zeros of row k into NaN too
+                    if (expanded == null) {
+                        expanded = new double[cols];
+                    }
+                    readRow(k, expanded);
+                    MatrixKernels.axpy(aik, expanded, 0, c, 0, cols);
+                    continue;
+                }
+                for (int e = pointers[k]; e < pointers[k + 1]; e++) {
+                    c[indices[e]] += aik * values[e];
+                }
+            }
+        }
+    }
+
+    /**
+     * dst[i][j] += scale * this[i][j] over rows [rowFrom, rowTo), where scale is 1 or -1.
+     * Requires ROW_MAJOR orientation. Adding, the implicit zeros are added too, since
+     * -0.0 + 0.0 is +0.0; subtracting them changes nothing.
+     */
+    public void scatterRows(double[][] dst, int rowFrom, int rowTo, double scale) {
+        requireRowMajor();
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] d = dst[i];
+            if (scale > 0) {
+                int e = pointers[i];
+                for (int j = 0; j < cols; j++) {
+                    if (e < pointers[i + 1] && indices[e] == j) {
+                        d[j] += values[e++];
+                    }
+                    else {
+                        d[j] += 0.0;
+                    }
+                }
+            }
+            else {
+                for (int e = pointers[i]; e < pointers[i + 1]; e++) {
+                    d[indices[e]] += scale * values[e];
+                }
+            }
+        }
+    }
+
+    /**
+     * dst[i][j] = this[i][j] - dst[i][j] over rows [rowFrom, rowTo), for a sparse minus a
+     * dense matrix. Requires ROW_MAJOR orientation.
+     */
+    public void subtractFromRows(double[][] dst, int rowFrom, int rowTo) {
+        requireRowMajor();
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] d = dst[i];
+            int e = pointers[i];
+            for (int j = 0; j < cols; j++) {
+                double value = (e < pointers[i + 1] && indices[e] == j) ? values[e++] : 0.0;
+                d[j] = value - d[j];
+            }
+        }
+    }
+
+    /**
+     * Compressed rows [rowFrom, rowTo) of a sparse result, computed by one task.
+     */
+    public static final class RowBlock {
+        final int rowFrom;
+        final int[] rowLengths;
+        final int[] indices;
+        final double[] values;
+
+        RowBlock(int rowFrom, int[] rowLengths, int[] indices, double[] values) {
+            this.rowFrom = rowFrom;
+            this.rowLengths = rowLengths;
+            this.indices = indices;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Rows [rowFrom, rowTo) of left * right, by Gustavson's row-by-row method with a dense
+     * accumulator. Both operands must be ROW_MAJOR.
+     */
+    public static RowBlock multiplyRows(SparseMatrix left, SparseMatrix right, int rowFrom, int rowTo) {
+        left.requireRowMajor();
+        right.requireRowMajor();
+        double[] accumulator = new double[right.cols];
+        boolean[] touched = new boolean[right.cols];
+        int[] columns = new int[right.cols];
+        int[] rowLengths = new int[rowTo - rowFrom];
+        int[] outIndices = new int[16];
+        double[] outValues = new double[16];
+        int count = 0;
+        for (int i = rowFrom; i < rowTo; i++) {
+            int found = 0;
+            for (int e = left.pointers[i]; e < left.pointers[i + 1]; e++) {
+                int k = left.indices[e];
+                double a = left.values[e];
+                for (int f = right.pointers[k]; f < right.pointers[k + 1]; f++) {
+                    int j = right.indices[f];
+                    if (!touched[j]) {
+                        touched[j] = true;
+                        columns[found++] = j;
+                    }
+                    accumulator[j] += a * right.values[f];
+                }
+            }
+            Arrays.sort(columns, 0, found);
+            if (count + found > outIndices.length) {
+                int capacity = Math.max(outIndices.length * 2, count + found);
+                outIndices = Arrays.copyOf(outIndices, capacity);
+                outValues = Arrays.copyOf(outValues, capacity);
+            }
+            for (int n = 0; n < found; n++) {
+                int j = columns[n];
+                outIndices[count] = j;
+                outValues[count] = accumulator[j];
+                count++;
+                accumulator[j] = 0.0;
+                touched[j] = false;
+            }
+            rowLengths[i - rowFrom] = found;
+        }
+        return new RowBlock(rowFrom, rowLengths, Arrays.copyOf(outIndices, count), Arrays.copyOf(outValues, count));
+    }
+
+    /**
+     * Rows [rowFrom, rowTo) of left + right, or left - right, merging the sorted rows.
+     * Both operands must be ROW_MAJOR and of the same shape. An entry present on one side only
+     * is still combined with the zero on the other, since that changes the sign of a zero.
+     */
+    public static RowBlock sumRows(SparseMatrix left, SparseMatrix right, boolean subtract, int rowFrom, int rowTo) {
+        left.requireRowMajor();
+        right.requireRowMajor();
+        int capacity = (left.pointers[rowTo] - left.pointers[rowFrom]) + (right.pointers[rowTo] - right.pointers[rowFrom]);
+        int[] outIndices = new int[capacity];
+        double[] outValues = new double[capacity];
+        int[] rowLengths = new int[rowTo - rowFrom];
+        int count = 0;
+        for (int i = rowFrom; i < rowTo; i++) {
+            int start = count;
+            int a = left.pointers[i];
+            int b = right.pointers[i];
+            int aEnd = left.pointers[i + 1];
+            int bEnd = right.pointers[i + 1];
+            while (a < aEnd || b < bEnd) {
+                int ja = (a < aEnd) ? left.indices[a] : Integer.MAX_VALUE;
+                int jb = (b < bEnd) ? right.indices[b] : Integer.MAX_VALUE;
+                if (ja == jb) {
+                    outIndices[count] = ja;
+                    double x = left.values[a++];
+                    double y = right.values[b++];
+                    outValues[count++] = subtract ? x - y : x + y;
+                }
+                else if (ja < jb) {
+                    outIndices[count] = ja;
+                    double x = left.values[a++];
+                    outValues[count++] = subtract ? x - 0.0 : x + 0.0;
+                }
+                else {
+                    outIndices[count] = jb;
+                    double y = right.values[b++];
+                    outValues[count++] = subtract ? 0.0 - y : 0.0 + y;
+                }
+            }
+            rowLengths[i - rowFrom] = count - start;
+        }
+        return new RowBlock(rowFrom, rowLengths, Arrays.copyOf(outIndices, count), Arrays.copyOf(outValues, count));
+    }
+
+    /**
+     * Joins the row blocks of a result, which must cover rows 0 to rows - 1, into a CSR matrix.
+     */
+    public static SparseMatrix assemble(int rows, int cols, List<RowBlock> blocks) {
+        int[] pointers = new int[rows + 1];
+        int total = 0;
+        for (RowBlock block : blocks) {
+            total += block.indices.length;
+        }
+        int[] indices = new int[total];
+        double[] values = new double[total];
+        for (RowBlock block : blocks) {
+            for (int r = 0; r < block.rowLengths.length; r++) {
+                pointers[block.rowFrom + r + 1] = block.rowLengths[r];
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            pointers[i + 1] += pointers[i];
+        }
+        for (RowBlock block : blocks) {
+            int start = pointers[block.rowFrom];
+            System.arraycopy(block.indices, 0, indices, start, block.indices.length);
+            System.arraycopy(block.values, 0, values, start, block.values.length);
+        }
+        return new SparseMatrix(rows, cols, VectorOrientation.ROW_MAJOR, pointers, indices, values);
+    }
+}
@@ -0,0 +1,11 @@
+package memory;
+/**
+ * Determines how a SharedMatrix lays out its elements in memory.
+ * VECTORS keeps one array and one lock per stored vector.
+ * CONTIGUOUS keeps all elements in a single array; the stored vectors are views over it
+ * and share a small, fixed set of locks.
+ */
+public enum StorageMode {
+    VECTORS,
+    CONTIGUOUS
+}
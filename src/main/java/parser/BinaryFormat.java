@@ -0,0 +1,566 @@
+package parser;
+
+import memory.MappedMatrix;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Compact binary alternative to the JSON input and output files.
+ * All values are little-endian. A file starts with the header
+ * <pre>
+ *   magic "LAEB" | version u16 | kind u8 (1 = expression tree, 2 = result matrix, 3 = error)
+ * </pre>
+ * followed by the body for its kind:
+ * <ul>
+ *   <li>tree: the nodes in pre-order. Each node starts with a tag u8: 0 for a matrix, otherwise
+ *       an operator code followed by its operand count u32 and the operands.</li>
+ *   <li>result: one matrix.</li>
+ *   <li>error: message length u32 and the UTF-8 message.</li>
+ * </ul>
+ * A matrix is rows u32 | cols u32, zero padding up to the next multiple of 8 bytes from the start
+ * of the file, and rows * cols float64 values in row-major order. The padding keeps every payload
+ * 8-byte aligned, so the file can also be memory-mapped directly.
+ * Files are read and written through a FileChannel and a direct buffer, streams through a
+ * channel wrapped around the stream.
+ */
+public final class BinaryFormat {
+
+    public static final String EXTENSION = ".laeb";
+    public static final int VERSION = 1;
+
+    static final byte KIND_TREE = 1;
+    static final byte KIND_RESULT = 2;
+    static final byte KIND_ERROR = 3;
+
+    private static final byte TAG_MATRIX = 0;
+    private static final byte[] MAGIC = {'L', 'A', 'E', 'B'};
+    private static final int BUFFER_SIZE = 1 << 20;
+    // largest matrix readMatrix loads, so the engine can still lay it out in one array
+    private static final long MAX_LOADED_ELEMENTS = Integer.MAX_VALUE - 8;
+
+    private BinaryFormat() {}
+
+    public static boolean isBinaryPath(String path) {
+        return path.toLowerCase().endsWith(EXTENSION);
+    }
+
+    public static ComputationNode readTree(String inputPath) throws ParseException {
+        try (Input in = new Input(Path.of(inputPath))) {
+            in.readHeader(KIND_TREE);
+            return readNodes(in, null);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input binary file: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Reads a tree of length bytes from a stream, e.g. a job received over a socket.
+     * Matrices larger than what is left of length are rejected before anything is allocated.
+     * The stream is not closed.
+     */
+    public static ComputationNode readTree(InputStream stream, long length) throws ParseException {
+        try {
+            Input in = new Input(Channels.newChannel(stream), length);
+            in.readHeader(KIND_TREE);
+            return readNodes(in, null);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the binary input: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Reads the tree structure of a binary input without loading its matrices: every matrix leaf
+     * becomes a read-only MappedMatrix over its payload in the file, for out-of-core evaluation.
+     */
+    public static ComputationNode mapTree(String inputPath) throws ParseException {
+        Path path = Path.of(inputPath);
+        try (Input in = new Input(path)) {
+            in.readHeader(KIND_TREE);
+            return readNodes(in, path);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input binary file: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Reads a result file: returns the matrix, or throws IllegalStateException with the stored
+     * message if the file holds an error.
+     */
+    public static double[][] readResult(String inputPath) throws ParseException {
+        try (Input in = new Input(Path.of(inputPath))) {
+            byte kind = in.readHeader((byte) 0);
+            if (kind == KIND_ERROR) {
+                int length = in.readInt();
+                in.checkRemaining(length, "Error message");
+                byte[] message = new byte[length];
+                in.readBytes(message);
+                throw new IllegalStateException(new String(message, StandardCharsets.UTF_8));
+            }
+            if (kind != KIND_RESULT) {
+                throw new ParseException("Not a binary result file", 0);
+            }
+            return in.readMatrix();
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the binary result file: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Returns the kind byte of a binary file, without reading its body.
+     */
+    static byte readKind(String inputPath) throws ParseException {
+        try (Input in = new Input(Path.of(inputPath))) {
+            return in.readHeader((byte) 0);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the binary file: " + e.getMessage(), 0);
+        }
+    }
+
+    public static void writeTree(ComputationNode root, String filePath) throws IOException {
+        try (Output out = new Output(Path.of(filePath))) {
+            out.writeHeader(KIND_TREE);
+            // iterative pre-order walk, so deep trees do not overflow the stack
+            Deque<ComputationNode> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                ComputationNode node = stack.pop();
+                if (node.getNodeType() == ComputationNodeType.MATRIX) {
+                    out.writeByte(TAG_MATRIX);
+                    if (node.getMappedMatrix() != null) {
+                        out.writeMatrix(node.getMappedMatrix());
+                    }
+                    else {
+                        out.writeMatrix(node.getMatrix());
+                    }
+                    continue;
+                }
+                List<ComputationNode> children = node.getChildren();
+                out.writeByte(operatorCode(node.getNodeType()));
+                out.writeInt(children.size());
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+    }
+
+    public static void writeResult(double[][] matrix, String filePath) throws IOException {
+        try (Output out = new Output(Path.of(filePath))) {
+            out.writeHeader(KIND_RESULT);
+            out.writeMatrix(matrix);
+        }
+    }
+
+    /**
+     * Writes a result to a stream and flushes it, without closing the stream.
+     */
+    public static void writeResult(double[][] matrix, OutputStream stream) throws IOException {
+        Output out = new Output(Channels.newChannel(stream));
+        out.writeHeader(KIND_RESULT);
+        out.writeMatrix(matrix);
+        out.flush();
+    }
+
+    /**
+     * Writes a file-backed result, streaming it row by row instead of loading it.
+     */
+    public static void writeResult(MappedMatrix matrix, String filePath) throws IOException {
+        try (Output out = new Output(Path.of(filePath))) {
+            out.writeHeader(KIND_RESULT);
+            out.writeMatrix(matrix);
+        }
+    }
+
+    public static void writeError(String error, String filePath) throws IOException {
+        try (Output out = new Output(Path.of(filePath))) {
+            writeErrorBody(out, error);
+        }
+    }
+
+    public static void writeError(String error, OutputStream stream) throws IOException {
+        Output out = new Output(Channels.newChannel(stream));
+        writeErrorBody(out, error);
+        out.flush();
+    }
+
+    private static void writeErrorBody(Output out, String error) throws IOException {
+        out.writeHeader(KIND_ERROR);
+        byte[] message = String.valueOf(error).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(message.length);
+        out.writeBytes(message);
+    }
+
+    private static byte operatorCode(ComputationNodeType type) {
+        switch (type) {
+            case ADD:
+                return 1;
+            case MULTIPLY:
+                return 2;
+            case NEGATE:
+                return 3;
+            case TRANSPOSE:
+                return 4;
+            case SUBTRACT:
+                return 5;
+            case MULTIPLY_ADD:
+                return 6;
+            default:
+                throw new IllegalArgumentException("No binary code for node type " + type);
+        }
+    }
+
+    private static ComputationNodeType operatorType(byte code) throws ParseException {
+        switch (code) {
+            case 1:
+                return ComputationNodeType.ADD;
+            case 2:
+                return ComputationNodeType.MULTIPLY;
+            case 3:
+                return ComputationNodeType.NEGATE;
+            case 4:
+                return ComputationNodeType.TRANSPOSE;
+            case 5:
+                return ComputationNodeType.SUBTRACT;
+            case 6:
+                return ComputationNodeType.MULTIPLY_ADD;
+            default:
+                throw new ParseException("Unknown operator code: " + code, 0);
+        }
+    }
+
+    /**
+     * Rebuilds the tree from its pre-order encoding with an explicit stack of open operators.
+     * With a mapping path, matrices are mapped from that file instead of being read.
+     */
+    private static ComputationNode readNodes(Input in, Path mapping) throws IOException, ParseException {
+        Deque<PendingOperator> open = new ArrayDeque<>();
+        while (true) {
+            byte tag = in.readByte();
+            ComputationNode node;
+            if (tag == TAG_MATRIX) {
+                node = (mapping == null) ? InputParser.literal(in.readMatrix()) : new ComputationNode(in.mapMatrix(mapping));
+            }
+            else {
+                ComputationNodeType type = operatorType(tag);
+                int count = in.readInt();
+                if (count > 0) {
+                    open.push(new PendingOperator(type, count));
+                    continue;
+                }
+                node = new ComputationNode(type, new ArrayList<>());
+            }
+            // attach the finished node, closing every operator that is now complete
+            while (true) {
+                if (open.isEmpty()) {
+                    return node;
+                }
+                PendingOperator parent = open.peek();
+                parent.operands.add(node);
+                if (parent.operands.size() < parent.count) {
+                    break;
+                }
+                open.pop();
+                node = new ComputationNode(parent.type, parent.operands);
+            }
+        }
+    }
+
+    private static class PendingOperator {
+        final ComputationNodeType type;
+        final int count;
+        final List<ComputationNode> operands = new ArrayList<>();
+
+        PendingOperator(ComputationNodeType type, int count) {
+            this.type = type;
+            this.count = count;
+        }
+    }
+
+    private static class Input implements AutoCloseable {
+        private final ReadableByteChannel channel;
+        private final long size; // bytes in the whole input
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = 0; // bytes consumed from the start of the file
+
+        Input(Path path) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.READ));
+        }
+
+        private Input(FileChannel channel) throws IOException {
+            this(channel, channel.size());
+        }
+
+        Input(ReadableByteChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+            buffer.limit(0);
+        }
+
+        /**
+         * Rejects a declared size of bytes that the rest of the input cannot hold.
+         */
+        void checkRemaining(long bytes, String what) throws ParseException {
+            if (bytes > size - position) {
+                throw new ParseException(what + " of " + bytes + " bytes does not fit in the rest of the binary input",
+                        (int) Math.min(Integer.MAX_VALUE, position));
+            }
+        }
+
+        /**
+         * Makes at least n bytes available in the buffer.
+         */
+        private void require(int n) throws IOException, ParseException {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < n) {
+                if (channel.read(buffer) < 0) {
+                    throw new ParseException("Unexpected end of binary file", (int) Math.min(Integer.MAX_VALUE, position));
+                }
+            }
+            buffer.flip();
+        }
+
+        byte readHeader(byte expectedKind) throws IOException, ParseException {
+            byte[] magic = new byte[MAGIC.length];
+            readBytes(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new ParseException("Not a binary LAE file", 0);
+                }
+            }
+            require(2);
+            int version = buffer.getShort() & 0xFFFF;
+            position += 2;
+            if (version != VERSION) {
+                throw new ParseException("Unsupported binary format version: " + version, 4);
+            }
+            byte kind = readByte();
+            if (expectedKind != 0 && kind != expectedKind) {
+                throw new ParseException("Unexpected binary file kind: " + kind, 6);
+            }
+            return kind;
+        }
+
+        byte readByte() throws IOException, ParseException {
+            require(1);
+            position += 1;
+            return buffer.get();
+        }
+
+        int readInt() throws IOException, ParseException {
+            require(4);
+            position += 4;
+            int value = buffer.getInt();
+            if (value < 0) {
+                throw new ParseException("Negative size in binary file: " + value, (int) Math.min(Integer.MAX_VALUE, position));
+            }
+            return value;
+        }
+
+        void readBytes(byte[] dst) throws IOException, ParseException {
+            int done = 0;
+            while (done < dst.length) {
+                require(1);
+                int n = Math.min(buffer.remaining(), dst.length - done);
+                buffer.get(dst, done, n);
+                done += n;
+                position += n;
+            }
+        }
+
+        /**
+         * Reads rows and cols and skips the padding; returns {rows, cols}. The payload must fit
+         * in the rest of the input, so a corrupt header cannot trigger a huge allocation.
+         */
+        private int[] readMatrixHeader() throws IOException, ParseException {
+            int rows = readInt();
+            int cols = readInt();
+            if (rows == 0 || cols == 0) {
+                throw new ParseException("Empty array cannot be parsed as DataNode.", (int) Math.min(Integer.MAX_VALUE, position));
+            }
+            int padding = (int) ((8 - position % 8) % 8);
+            require(padding);
+            buffer.position(buffer.position() + padding);
+            position += padding;
+            checkRemaining((long) rows * cols * Double.BYTES, "Matrix " + rows + "x" + cols);
+            return new int[]{rows, cols};
+        }
+
+        double[][] readMatrix() throws IOException, ParseException {
+            int[] shape = readMatrixHeader();
+            if ((long) shape[0] * shape[1] > MAX_LOADED_ELEMENTS) {
+                throw new ParseException("Matrix " + shape[0] + "x" + shape[1] + " is too large to load",
+                        (int) Math.min(Integer.MAX_VALUE, position));
+            }
+            int cols = shape[1];
+            double[][] matrix = new double[shape[0]][cols];
+            for (double[] row : matrix) {
+                int done = 0;
+                while (done < cols) {
+                    require(Double.BYTES);
+                    int n = Math.min(buffer.remaining() / Double.BYTES, cols - done);
+                    buffer.asDoubleBuffer().get(row, done, n);
+                    buffer.position(buffer.position() + n * Double.BYTES);
+                    done += n;
+                    position += (long) n * Double.BYTES;
+                }
+            }
+            return matrix;
+        }
+
+        /**
+         * Maps the payload of the next matrix from file and skips over it.
+         */
+        MappedMatrix mapMatrix(Path file) throws IOException, ParseException {
+            int[] shape = readMatrixHeader();
+            MappedMatrix matrix = MappedMatrix.map(file, position, shape[0], shape[1], false);
+            long payload = (long) shape[0] * shape[1] * Double.BYTES;
+            if (buffer.remaining() >= payload) {
+                buffer.position(buffer.position() + (int) payload);
+            }
+            else {
+                // drop what is buffered and continue reading right after the payload
+                buffer.position(0).limit(0);
+                ((FileChannel) channel).position(position + payload);
+            }
+            position += payload;
+            return matrix;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static class Output implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = 0; // bytes written from the start of the file
+
+        Output(Path path) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING));
+        }
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private void reserve(int n) throws IOException {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void writeHeader(byte kind) throws IOException {
+            writeBytes(MAGIC);
+            reserve(2);
+            buffer.putShort((short) VERSION);
+            position += 2;
+            writeByte(kind);
+        }
+
+        void writeByte(byte value) throws IOException {
+            reserve(1);
+            buffer.put(value);
+            position += 1;
+        }
+
+        void writeInt(int value) throws IOException {
+            reserve(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        void writeBytes(byte[] src) throws IOException {
+            int done = 0;
+            while (done < src.length) {
+                reserve(1);
+                int n = Math.min(buffer.remaining(), src.length - done);
+                buffer.put(src, done, n);
+                done += n;
+                position += n;
+            }
+        }
+
+        private void writeMatrixHeader(int rows, int cols) throws IOException {
+            writeInt(rows);
+            writeInt(cols);
+            int padding = (int) ((8 - position % 8) % 8);
+            reserve(padding);
+            for (int i = 0; i < padding; i++) {
+                buffer.put((byte) 0);
+            }
+            position += padding;
+        }
+
+        private void writeValues(double[] values, int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                reserve(Double.BYTES);
+                int n = Math.min(buffer.remaining() / Double.BYTES, length - done);
+                buffer.asDoubleBuffer().put(values, done, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+                done += n;
+                position += (long) n * Double.BYTES;
+            }
+        }
+
+        void writeMatrix(double[][] matrix) throws IOException {
+            int cols = (matrix.length == 0) ? 0 : matrix[0].length;
+            writeMatrixHeader(matrix.length, cols);
+            for (double[] row : matrix) {
+                writeValues(row, cols);
+            }
+        }
+
+        void writeMatrix(MappedMatrix matrix) throws IOException {
+            int cols = matrix.getColumnCount();
+            writeMatrixHeader(matrix.getRowCount(), cols);
+            double[] piece = new double[Math.min(cols, MappedMatrix.CHUNK_ELEMENTS)];
+            for (int i = 0; i < matrix.getRowCount(); i++) {
+                for (int c = 0; c < cols; c += piece.length) {
+                    int n = Math.min(piece.length, cols - c);
+                    matrix.readRow(i, c, piece, 0, n);
+                    writeValues(piece, n);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash-consing pass that turns a ComputationNode tree into a DAG.
+ * Literal matrices with the same shape and values, and operator nodes with the same operator
+ * over the same operands, are merged into one shared node, bottom-up, so that identical
+ * subtrees of any size collapse. The engine then evaluates every shared node once and hands
+ * its result to each consumer. File-backed and sparse leaves are never compared, since that
+ * would expand them onto the heap.
+ * Runs after NestingOptimizer and TreeRewriter, which both expect a tree.
+ */
+public final class CommonSubexpressions {
+
+    private CommonSubexpressions() {}
+
+    /**
+     * Merges identical subtrees below root in place. Returns the number of nodes merged away.
+     */
+    public static int merge(ComputationNode root) {
+        Map<ComputationNode, ComputationNode> canonical = new IdentityHashMap<>();
+        Map<Object, ComputationNode> table = new HashMap<>();
+        int merged = 0;
+        // children come before their parents, so their canonical nodes are known
+        for (ComputationNode node : NestingOptimizer.postOrder(root)) {
+            Object key;
+            if (node.getNodeType() == ComputationNodeType.MATRIX) {
+                if (node.getMappedMatrix() != null || node.getSharedMatrix() != null || node.getSparseMatrix() != null
+                        || node.getDiagonalMatrix() != null) {
+                    canonical.put(node, node);
+                    continue;
+                }
+                key = new LiteralKey(node.getMatrix());
+            }
+            else {
+                List<ComputationNode> children = new ArrayList<>(node.getChildren().size());
+                boolean changed = false;
+                for (ComputationNode child : node.getChildren()) {
+                    ComputationNode shared = canonical.get(child);
+                    children.add(shared);
+                    changed |= shared != child;
+                }
+                if (changed) {
+                    node.setChildren(children);
+                }
+                key = new OperatorKey(node.getNodeType(), children);
+            }
+            ComputationNode existing = table.putIfAbsent(key, node);
+            if (existing == null) {
+                canonical.put(node, node);
+            }
+            else {
+                canonical.put(node, existing);
+                merged++;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Literal matrices compare by shape and values; Arrays.deepEquals treats NaN as equal to
+     * itself and 0.0 as different from -0.0, so merged literals are bit for bit the same.
+     */
+    private static final class LiteralKey {
+        private final double[][] matrix;
+        private final int hash;
+
+        LiteralKey(double[][] matrix) {
+            this.matrix = matrix;
+            this.hash = Arrays.deepHashCode(matrix);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof LiteralKey && hash == ((LiteralKey) other).hash
+                    && Arrays.deepEquals(matrix, ((LiteralKey) other).matrix);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Operators compare by type and by the identity of their (already merged) operands.
+     */
+    private static final class OperatorKey {
+        private final ComputationNodeType type;
+        private final List<ComputationNode> children;
+        private final int hash;
+
+        OperatorKey(ComputationNodeType type, List<ComputationNode> children) {
+            this.type = type;
+            this.children = children;
+            int h = type.hashCode();
+            for (ComputationNode child : children) {
+                h = 31 * h + System.identityHashCode(child);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof OperatorKey)) {
+                return false;
+            }
+            OperatorKey key = (OperatorKey) other;
+            if (type != key.type || children.size() != key.children.size()) {
+                return false;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != key.children.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package parser;
 
+import memory.DiagonalMatrix;
+import memory.MappedMatrix;
+import memory.SharedMatrix;
+import memory.SparseMatrix;
+
 import java.util.List;
 
 public class ComputationNode {
@@ -7,6 +12,11 @@ public class ComputationNode {
     private ComputationNodeType nodeType;
     private List<ComputationNode> children = null;
     private double[][] matrix = null; // only used for MATRIX nodes
+    private SharedMatrix sharedMatrix = null; // result of a resolved operator, kept until it is consumed
+    private MappedMatrix mappedMatrix = null; // file-backed matrix, for out-of-core evaluation
+    private SparseMatrix sparseMatrix = null; // compressed literal or result, for mostly-zero matrices
+    private DiagonalMatrix diagonalMatrix = null; // diagonal literal or result, stored as its diagonal
+    private boolean symmetric = false; // the literal matrix equals its transpose
 
     public ComputationNode(String operatorStr, List<ComputationNode> children) throws IllegalArgumentException {
         this.nodeType = mapOperator(operatorStr);
@@ -38,6 +48,29 @@ public class ComputationNode {
         this.matrix = matrix;
     }
 
+    public ComputationNode(MappedMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.mappedMatrix = matrix;
+    }
+
+    public ComputationNode(SparseMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.sparseMatrix = matrix;
+    }
+
+    public ComputationNode(DiagonalMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.diagonalMatrix = matrix;
+    }
+
+    /**
+     * A dense literal that the parser found to be symmetric, so transposing it is a no-op.
+     */
+    public ComputationNode(double[][] matrix, boolean symmetric) {
+        this(matrix);
+        this.symmetric = symmetric;
+    }
+
     public ComputationNodeType getNodeType() {
         return nodeType;
     }
@@ -46,6 +79,25 @@ public class ComputationNode {
         return children;
     }
 
+    void setChildren(List<ComputationNode> children) {
+        this.children = children;
+    }
+
+    /**
+     * Turns this node into a copy of other, so that parents referring to this node
+     * now see other's operation or matrix.
+     */
+    void replaceWith(ComputationNode other) {
+        this.nodeType = other.nodeType;
+        this.children = other.children;
+        this.matrix = other.matrix;
+        this.sharedMatrix = other.sharedMatrix;
+        this.mappedMatrix = other.mappedMatrix;
+        this.sparseMatrix = other.sparseMatrix;
+        this.diagonalMatrix = other.diagonalMatrix;
+        this.symmetric = other.symmetric;
+    }
+
     /**
      * Recursively finds the first resolvable node in the tree.
      * A resolvable node is defined as a node that is not of type MATRIX,
@@ -88,9 +140,163 @@ public class ComputationNode {
         this.nodeType = ComputationNodeType.MATRIX;
         this.children = null;
         this.matrix = matrix;
+        this.sharedMatrix = null;
+        this.mappedMatrix = null;
+        this.sparseMatrix = null;
+        this.diagonalMatrix = null;
+        this.symmetric = false;
+    }
+
+    /**
+     * Resolves this node with a computed SharedMatrix. The result is kept as it is, so a parent
+     * can compute on it directly; it is only copied out to a double[][] when getMatrix is called.
+     */
+    public void resolve(SharedMatrix result) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sharedMatrix = result;
+        this.mappedMatrix = null;
+        this.sparseMatrix = null;
+        this.diagonalMatrix = null;
+        this.symmetric = false;
+    }
+
+    /**
+     * Resolves this node with a file-backed result of an out-of-core evaluation.
+     */
+    public void resolve(MappedMatrix result) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sharedMatrix = null;
+        this.mappedMatrix = result;
+        this.sparseMatrix = null;
+        this.diagonalMatrix = null;
+        this.symmetric = false;
+    }
+
+    /**
+     * Resolves this node with a sparse result, which stays compressed until getMatrix is called.
+     */
+    public void resolve(SparseMatrix result) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sharedMatrix = null;
+        this.mappedMatrix = null;
+        this.sparseMatrix = result;
+        this.diagonalMatrix = null;
+        this.symmetric = false;
+    }
+
+    /**
+     * Resolves this node with a diagonal result, which stays compact until getMatrix is called.
+     */
+    public void resolve(DiagonalMatrix result) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sharedMatrix = null;
+        this.mappedMatrix = null;
+        this.sparseMatrix = null;
+        this.diagonalMatrix = result;
+        this.symmetric = false;
+    }
+
+    /**
+     * Returns the SharedMatrix this node was resolved with, or null for literal matrices.
+     */
+    public SharedMatrix getSharedMatrix() {
+        return sharedMatrix;
+    }
+
+    /**
+     * Returns the file-backed matrix of this node, or null if it lives on the heap.
+     */
+    public MappedMatrix getMappedMatrix() {
+        return mappedMatrix;
+    }
+
+    /**
+     * Returns the compressed form of this node, or null if it is stored dense.
+     */
+    public SparseMatrix getSparseMatrix() {
+        return sparseMatrix;
+    }
+
+    /**
+     * Returns the diagonal form of this node, or null if it is not stored as one.
+     */
+    public DiagonalMatrix getDiagonalMatrix() {
+        return diagonalMatrix;
+    }
+
+    /**
+     * Whether this node is a matrix known to equal its transpose; diagonal matrices always are.
+     */
+    public boolean isSymmetric() {
+        return symmetric || diagonalMatrix != null;
+    }
+
+    /**
+     * Returns the row count of this matrix node in whichever form it is stored, without
+     * materializing it.
+     */
+    public int getRowCount() {
+        if (sharedMatrix != null) {
+            return sharedMatrix.getRowCount();
+        }
+        if (mappedMatrix != null) {
+            return mappedMatrix.getRowCount();
+        }
+        if (sparseMatrix != null) {
+            return sparseMatrix.getRowCount();
+        }
+        if (diagonalMatrix != null) {
+            return diagonalMatrix.size();
+        }
+        if (matrix == null) {
+            throw new IllegalStateException("This node does not contain a matrix.");
+        }
+        return matrix.length;
+    }
+
+    /**
+     * Returns the column count of this matrix node, like getRowCount; 0 for an empty matrix.
+     */
+    public int getColumnCount() {
+        if (sharedMatrix != null) {
+            return sharedMatrix.getColumnCount();
+        }
+        if (mappedMatrix != null) {
+            return mappedMatrix.getColumnCount();
+        }
+        if (sparseMatrix != null) {
+            return sparseMatrix.getColumnCount();
+        }
+        if (diagonalMatrix != null) {
+            return diagonalMatrix.size();
+        }
+        if (matrix == null) {
+            throw new IllegalStateException("This node does not contain a matrix.");
+        }
+        return (matrix.length == 0) ? 0 : matrix[0].length;
     }
 
     public double[][] getMatrix() {
+        if (matrix == null && sharedMatrix != null) {
+            matrix = sharedMatrix.readRowMajor();
+        }
+        if (matrix == null && mappedMatrix != null) {
+            matrix = mappedMatrix.toArray();
+        }
+        if (matrix == null && sparseMatrix != null) {
+            matrix = sparseMatrix.toDense();
+        }
+        if (matrix == null && diagonalMatrix != null) {
+            matrix = diagonalMatrix.toDense();
+        }
         if (matrix == null) {
             throw new IllegalStateException("This node does not contain a matrix.");
         }
@@ -3,11 +3,15 @@ package parser;
 /**
  * Computation nodes hold either an operation to be applied, or a matrix (2D array).
  * Matrices are always leaf nodes, while operation nodes have children.
+ * SUBTRACT has no operator string in the input format; it is only produced by TreeRewriter.
+ * Neither has MULTIPLY_ADD(A, B, C), which is A * B + C and is only produced by MultiplyAddFusion.
  */
 public enum ComputationNodeType {
     ADD,
+    SUBTRACT,
     MULTIPLY,
     NEGATE,
     TRANSPOSE,
+    MULTIPLY_ADD,
     MATRIX,
 }
\ No newline at end of file
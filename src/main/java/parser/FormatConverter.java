@@ -0,0 +1,171 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Converts input trees and result files between the JSON schema and BinaryFormat.
+ * The direction is taken from the file extensions: .laeb is binary, anything else is JSON.
+ * <pre>
+ *   java parser.FormatConverter input.json input.laeb
+ *   java parser.FormatConverter output.laeb output.json
+ * </pre>
+ */
+public final class FormatConverter {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final Object CLOSE_OPERATOR = new Object(); // marks the end of an operator on the write stack
+
+    private FormatConverter() {}
+
+    public static void main(String[] args) throws IOException, ParseException {
+        if (args.length != 2) {
+            System.err.println("Usage: FormatConverter <input> <output>   (.json <-> " + BinaryFormat.EXTENSION + ")");
+            System.exit(2);
+        }
+        convert(args[0], args[1]);
+    }
+
+    public static void convert(String inputPath, String outputPath) throws IOException, ParseException {
+        boolean binaryOut = BinaryFormat.isBinaryPath(outputPath);
+        if (BinaryFormat.isBinaryPath(inputPath)) {
+            if (BinaryFormat.readKind(inputPath) == BinaryFormat.KIND_TREE) {
+                writeTree(BinaryFormat.readTree(inputPath), outputPath, binaryOut);
+                return;
+            }
+            double[][] result;
+            try {
+                result = BinaryFormat.readResult(inputPath);
+            } catch (IllegalStateException e) {
+                writeError(e.getMessage(), outputPath, binaryOut);
+                return;
+            }
+            writeResult(result, outputPath, binaryOut);
+            return;
+        }
+
+        if (!isJsonResult(inputPath)) {
+            writeTree(new InputParser().parse(inputPath), outputPath, binaryOut);
+            return;
+        }
+        JsonNode json = mapper.readTree(new File(inputPath));
+        if (json.has("error")) {
+            writeError(json.get("error").asText(), outputPath, binaryOut);
+            return;
+        }
+        JsonNode rows = json.get("result");
+        double[][] result = new double[rows.size()][];
+        for (int i = 0; i < rows.size(); i++) {
+            result[i] = new double[rows.get(i).size()];
+            for (int j = 0; j < result[i].length; j++) {
+                result[i][j] = rows.get(i).get(j).asDouble();
+            }
+        }
+        writeResult(result, outputPath, binaryOut);
+    }
+
+    /**
+     * Checks whether a JSON file is an output file ({"result": ...} or {"error": ...}) by its first field.
+     */
+    private static boolean isJsonResult(String inputPath) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(new File(inputPath))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME) {
+                return false;
+            }
+            String field = parser.getCurrentName();
+            return "result".equals(field) || "error".equals(field);
+        }
+    }
+
+    private static void writeResult(double[][] result, String outputPath, boolean binary) throws IOException {
+        if (binary) {
+            BinaryFormat.writeResult(result, outputPath);
+        }
+        else {
+            OutputWriter.write(result, outputPath);
+        }
+    }
+
+    private static void writeError(String error, String outputPath, boolean binary) throws IOException {
+        if (binary) {
+            BinaryFormat.writeError(error, outputPath);
+        }
+        else {
+            OutputWriter.write(error, outputPath);
+        }
+    }
+
+    private static void writeTree(ComputationNode root, String outputPath, boolean binary) throws IOException {
+        if (binary) {
+            BinaryFormat.writeTree(root, outputPath);
+        }
+        else {
+            writeJsonTree(root, outputPath);
+        }
+    }
+
+    /**
+     * Writes a tree in the InputParser schema. Operators are written with their JSON symbols,
+     * so trees containing internal node types such as SUBTRACT are rejected.
+     */
+    public static void writeJsonTree(ComputationNode root, String outputPath) throws IOException {
+        JsonFactory factory = mapper.getFactory();
+        try (JsonGenerator generator = factory.createGenerator(new File(outputPath), JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            Deque<Object> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Object item = stack.pop();
+                if (item == CLOSE_OPERATOR) {
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                    continue;
+                }
+                ComputationNode node = (ComputationNode) item;
+                if (node.getNodeType() == ComputationNodeType.MATRIX) {
+                    generator.writeStartArray();
+                    for (double[] row : node.getMatrix()) {
+                        generator.writeArray(row, 0, row.length);
+                    }
+                    generator.writeEndArray();
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeStringField("operator", operatorSymbol(node.getNodeType()));
+                generator.writeArrayFieldStart("operands");
+                stack.push(CLOSE_OPERATOR);
+                List<ComputationNode> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+    }
+
+    private static String operatorSymbol(ComputationNodeType type) {
+        switch (type) {
+            case ADD:
+                return "+";
+            case MULTIPLY:
+                return "*";
+            case NEGATE:
+                return "-";
+            case TRANSPOSE:
+                return "T";
+            default:
+                throw new IllegalArgumentException("Node type " + type + " has no JSON operator");
+        }
+    }
+}
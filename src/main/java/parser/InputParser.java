@@ -1,68 +1,209 @@
 package parser;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import memory.DiagonalMatrix;
+import memory.SparseMatrix;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
 
+/**
+ * Reads the input file as a stream of JSON tokens and builds the ComputationNode tree in one pass.
+ * Matrix values go straight into primitive double arrays, without an intermediate JsonNode tree.
+ * Large matrices that are mostly zeros (see SparseMatrix.prefersSparse) are compressed row by
+ * row as they are read and become SparseMatrix leaves. Square diagonal literals become
+ * DiagonalMatrix leaves and symmetric ones are tagged, so the engine can take its fast paths.
+ */
 public class InputParser {
 
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final int INITIAL_ROW_CAPACITY = 16;
+
+    private final JsonFactory factory = new JsonFactory();
 
     public ComputationNode parse(String inputPath) throws ParseException {
-        try {
-            File inputFile = new File(inputPath);
-            JsonNode rootJsonNode = mapper.readTree(inputFile);
-            ComputationNode root = parseJsonNode(rootJsonNode);
-            return root;
+        try (JsonParser parser = factory.createParser(new File(inputPath))) {
+            return parseRoot(parser);
         } catch (IOException e) {
             throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
         }
     }
 
-    private ComputationNode parseJsonNode(JsonNode jsonNode) throws ParseException {
-        if (jsonNode.has("operator") && jsonNode.has("operands")) {
-            String operatorStr = jsonNode.get("operator").asText();
-            ArrayNode operandJsonNodes = (ArrayNode) jsonNode.get("operands");
-            List<ComputationNode> operands = new ArrayList<>();
-            for (int i = 0; i < operandJsonNodes.size(); i++) {
-                operands.add(parseJsonNode(operandJsonNodes.get(i)));
-            }
-            return new ComputationNode(operatorStr, operands);
+    /**
+     * Parses an input document that is already in memory, e.g. one received over a socket.
+     */
+    public ComputationNode parse(byte[] content) throws ParseException {
+        try (JsonParser parser = factory.createParser(content)) {
+            return parseRoot(parser);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input JSON: " + e.getMessage(), 0);
+        }
+    }
+
+    private ComputationNode parseRoot(JsonParser parser) throws IOException, ParseException {
+        if (parser.nextToken() == null) {
+            throw new ParseException("Invalid node structure: empty input", 0);
         }
-        else if (jsonNode.isArray()) {
-            if (jsonNode.size() == 0) {
-                throw new ParseException("Empty array cannot be parsed as DataNode.", 0);
+        ComputationNode root = parseNode(parser);
+        return root;
+    }
+
+    /**
+     * Parses the node starting at the current token and leaves the parser on its last token.
+     */
+    private ComputationNode parseNode(JsonParser parser) throws IOException, ParseException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parseOperator(parser);
+        }
+        else if (token == JsonToken.START_ARRAY) {
+            return parseMatrix(parser);
+        }
+        else { throw new ParseException("Invalid node structure: " + parser.getText(), offset(parser)); }
+    }
+
+    private ComputationNode parseOperator(JsonParser parser) throws IOException, ParseException {
+        String operatorStr = null;
+        List<ComputationNode> operands = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("operator".equals(field)) {
+                if (value.isStructStart()) {
+                    throw new ParseException("Invalid operator: expected a string", offset(parser));
+                }
+                operatorStr = parser.getValueAsString();
             }
-            // Check if it's a vector (1D array)
-            if (jsonNode.get(0).isNumber()) {
-                throw new ParseException("Vectors (1D arrays) are not supported as standalone nodes.", 0);
+            else if ("operands".equals(field)) {
+                if (value != JsonToken.START_ARRAY) {
+                    throw new ParseException("Invalid operands: expected an array", offset(parser));
+                }
+                operands = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    operands.add(parseNode(parser));
+                }
             }
-            // Otherwise, it's a matrix (2D array)
             else {
-                double[][] matrix = new double[jsonNode.size()][];
-                int width = jsonNode.get(0).size();
-                for (int i = 0; i < jsonNode.size(); i++) {
-                    JsonNode rowJsonNode = jsonNode.get(i);
-                    if (rowJsonNode.size() != width) {
-                        throw new ParseException("Inconsistent row sizes in matrix.", 0);
-                    }
-                    if (!rowJsonNode.isArray()) {
-                        throw new ParseException("Invalid matrix row: " + rowJsonNode.toString(), 0);
-                    }
-                    matrix[i] = new double[rowJsonNode.size()];
-                    for (int j = 0; j < rowJsonNode.size(); j++) {
-                        matrix[i][j] = rowJsonNode.get(j).asDouble();
-                    }
-                }
-                return new ComputationNode(matrix);
+                parser.skipChildren();
+            }
+        }
+        if (operatorStr == null || operands == null) {
+            throw new ParseException("Invalid node structure: an object needs both \"operator\" and \"operands\"", offset(parser));
+        }
+        return new ComputationNode(operatorStr, operands);
+    }
+
+    private ComputationNode parseMatrix(JsonParser parser) throws IOException, ParseException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            throw new ParseException("Empty array cannot be parsed as DataNode.", offset(parser));
+        }
+        // Check if it's a vector (1D array)
+        if (token.isNumeric()) {
+            throw new ParseException("Vectors (1D arrays) are not supported as standalone nodes.", offset(parser));
+        }
+        // Otherwise, it's a matrix (2D array)
+        double[] firstRow = readFirstRow(parser);
+        int width = firstRow.length;
+        // rows are compressed while the matrix still looks sparse, and kept dense once it does not
+        SparseMatrix.Builder sparse = new SparseMatrix.Builder(width);
+        sparse.appendRow(firstRow);
+        List<double[]> rows = null;
+        double[] buffer = firstRow;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (rows != null) {
+                rows.add(readRow(parser, width));
+                continue;
+            }
+            readRow(parser, buffer);
+            sparse.appendRow(buffer);
+            long seen = Math.max(sparse.getElementCount(), SparseMatrix.MIN_ELEMENTS);
+            if (!SparseMatrix.prefersSparse(seen, sparse.getNonZeroCount())) {
+                rows = new ArrayList<>(Arrays.asList(sparse.toDenseRows()));
             }
         }
-        else { throw new ParseException("Invalid node structure: " + jsonNode.toString(), 0); }
+        if (rows == null && SparseMatrix.prefersSparse(sparse.getElementCount(), sparse.getNonZeroCount())) {
+            SparseMatrix matrix = sparse.build();
+            double[] diagonal = DiagonalMatrix.diagonalOf(matrix);
+            return (diagonal == null) ? new ComputationNode(matrix) : new ComputationNode(new DiagonalMatrix(diagonal));
+        }
+        return literal((rows == null) ? sparse.toDenseRows() : rows.toArray(new double[0][]));
+    }
+
+    /**
+     * Wraps a dense literal, storing it as a DiagonalMatrix or tagging it as symmetric when it is one.
+     */
+    static ComputationNode literal(double[][] matrix) {
+        double[] diagonal = DiagonalMatrix.diagonalOf(matrix);
+        if (diagonal != null) {
+            return new ComputationNode(new DiagonalMatrix(diagonal));
+        }
+        return new ComputationNode(matrix, DiagonalMatrix.isSymmetric(matrix));
+    }
+
+    /**
+     * Reads the first row, whose width is not known yet, into a growing buffer.
+     */
+    private double[] readFirstRow(JsonParser parser) throws IOException, ParseException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new ParseException("Invalid matrix row: " + parser.getText(), offset(parser));
+        }
+        double[] buffer = new double[INITIAL_ROW_CAPACITY];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[size++] = readValue(parser);
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Reads a row of a matrix whose width is already known straight into a preallocated array.
+     */
+    private double[] readRow(JsonParser parser, int width) throws IOException, ParseException {
+        double[] row = new double[width];
+        readRow(parser, row);
+        return row;
+    }
+
+    /**
+     * Reads a row into row, which must have exactly the row's width.
+     */
+    private void readRow(JsonParser parser, double[] row) throws IOException, ParseException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new ParseException("Invalid matrix row: " + parser.getText(), offset(parser));
+        }
+        int width = row.length;
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == width) {
+                throw new ParseException("Inconsistent row sizes in matrix.", offset(parser));
+            }
+            row[size++] = readValue(parser);
+        }
+        if (size != width) {
+            throw new ParseException("Inconsistent row sizes in matrix.", offset(parser));
+        }
+    }
+
+    private double readValue(JsonParser parser) throws IOException, ParseException {
+        JsonToken token = parser.currentToken();
+        if (token.isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        if (token.isStructStart()) {
+            throw new ParseException("Invalid matrix element: nested " + parser.getText(), offset(parser));
+        }
+        return parser.getValueAsDouble();
+    }
+
+    private static int offset(JsonParser parser) {
+        return (int) Math.min(Integer.MAX_VALUE, parser.getCurrentLocation().getCharOffset());
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package parser;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Planner pass that fuses a product into the sum that consumes it, so the engine computes
+ * A * B straight into the addend instead of materializing the product and adding it in a
+ * second pass:
+ * <ul>
+ *   <li>A * B + C and C + A * B become MULTIPLY_ADD(A, B, C)</li>
+ *   <li>A * B - C becomes MULTIPLY_ADD(A, B, -C)</li>
+ *   <li>C - A * B becomes MULTIPLY_ADD(-A, B, C)</li>
+ * </ul>
+ * Negations are exact, so the fused result is bit-identical to the unfused one.
+ * Only products with a single consumer are fused, since a shared product is needed on its
+ * own anyway, and only dense operands, since sparse and diagonal operands have kernels of
+ * their own. Runs after CommonSubexpressions, on the DAG it produces.
+ */
+public final class MultiplyAddFusion {
+
+    private MultiplyAddFusion() {}
+
+    /**
+     * Fuses every eligible ADD and SUBTRACT below root in place. Returns the number of fusions.
+     */
+    public static int fuse(ComputationNode root) {
+        List<ComputationNode> order = NestingOptimizer.postOrder(root);
+        Map<ComputationNode, Integer> consumers = new IdentityHashMap<>();
+        Map<ComputationNode, int[]> shapes = new IdentityHashMap<>();
+        Map<ComputationNode, Boolean> dense = new IdentityHashMap<>();
+        for (ComputationNode node : order) {
+            shapes.put(node, NestingOptimizer.shapeOf(node, shapes));
+            boolean allDense;
+            if (node.getNodeType() == ComputationNodeType.MATRIX) {
+                allDense = node.getSparseMatrix() == null && node.getDiagonalMatrix() == null && node.getMappedMatrix() == null;
+            }
+            else {
+                allDense = true;
+                for (ComputationNode child : node.getChildren()) {
+                    consumers.merge(child, 1, Integer::sum);
+                    allDense &= dense.get(child);
+                }
+            }
+            dense.put(node, allDense);
+        }
+        int fused = 0;
+        for (ComputationNode node : order) {
+            boolean add = node.getNodeType() == ComputationNodeType.ADD;
+            if ((!add && node.getNodeType() != ComputationNodeType.SUBTRACT)
+                    || node.getChildren().size() != 2 || !dense.get(node) || shapes.get(node) == null) {
+                continue;
+            }
+            ComputationNode left = node.getChildren().get(0);
+            ComputationNode right = node.getChildren().get(1);
+            ComputationNode product;
+            ComputationNode addend;
+            boolean negateProduct = false;
+            boolean negateAddend = false;
+            if (isFusable(left, consumers)) {
+                product = left;
+                addend = right;
+                negateAddend = !add;
+            }
+            else if (isFusable(right, consumers)) {
+                product = right;
+                addend = left;
+                negateProduct = !add;
+            }
+            else {
+                continue;
+            }
+            ComputationNode a = product.getChildren().get(0);
+            ComputationNode b = product.getChildren().get(1);
+            if (negateProduct) {
+                a = new ComputationNode(ComputationNodeType.NEGATE, List.of(a));
+            }
+            if (negateAddend) {
+                addend = new ComputationNode(ComputationNodeType.NEGATE, List.of(addend));
+            }
+            node.replaceWith(new ComputationNode(ComputationNodeType.MULTIPLY_ADD, List.of(a, b, addend)));
+            fused++;
+        }
+        return fused;
+    }
+
+    private static boolean isFusable(ComputationNode node, Map<ComputationNode, Integer> consumers) {
+        return node.getNodeType() == ComputationNodeType.MULTIPLY && node.getChildren().size() == 2
+                && consumers.get(node) == 1;
+    }
+}
@@ -0,0 +1,194 @@
+package parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns n-ary operator nodes into binary ones, choosing the nesting from the matrix shapes
+ * known at parse time.
+ * MULTIPLY chains get the parenthesization with the fewest scalar multiplications (the classic
+ * matrix-chain dynamic program). ADD chains become balanced trees, so partial sums can be
+ * computed in parallel. Operators whose operand shapes cannot be determined fall back to
+ * associativeNesting.
+ */
+public final class NestingOptimizer {
+
+    // longest MULTIPLY chain handed to the O(n^3) dynamic program
+    private static final int MAX_CHAIN_LENGTH = 256;
+
+    private NestingOptimizer() {}
+
+    public static void optimize(ComputationNode root) {
+        Map<ComputationNode, int[]> shapes = new IdentityHashMap<>();
+        for (ComputationNode node : postOrder(root)) {
+            // MULTIPLY_ADD is not associative; its three children are its operands
+            if (node.getNodeType() != ComputationNodeType.MATRIX && node.getNodeType() != ComputationNodeType.MULTIPLY_ADD
+                    && node.getChildren().size() > 2) {
+                boolean nested = false;
+                if (node.getNodeType() == ComputationNodeType.MULTIPLY) {
+                    nested = nestMultiplyChain(node, shapes);
+                }
+                else if (node.getNodeType() == ComputationNodeType.ADD) {
+                    nested = nestBalanced(node, shapes);
+                }
+                if (!nested) {
+                    node.associativeNesting();
+                }
+            }
+            shapes.put(node, shapeOf(node, shapes));
+        }
+    }
+
+    /**
+     * Returns {rows, columns} of the matrix node evaluates to, or null if it is unknown
+     * or the operands do not fit together.
+     */
+    static int[] shapeOf(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) {
+            if (node.getRowCount() == 0) {
+                return null;
+            }
+            return new int[]{node.getRowCount(), node.getColumnCount()};
+        }
+        List<ComputationNode> children = node.getChildren();
+        int[] first = children.isEmpty() ? null : shapes.get(children.get(0));
+        int[] second = children.size() < 2 ? null : shapes.get(children.get(1));
+        switch (node.getNodeType()) {
+            case NEGATE:
+                return (children.size() == 1) ? first : null;
+            case TRANSPOSE:
+                return (children.size() == 1 && first != null) ? new int[]{first[1], first[0]} : null;
+            case ADD:
+            case SUBTRACT:
+                if (children.size() != 2 || first == null || second == null) {
+                    return null;
+                }
+                return (first[0] == second[0] && first[1] == second[1]) ? first : null;
+            case MULTIPLY:
+                if (children.size() != 2 || first == null || second == null || first[1] != second[0]) {
+                    return null;
+                }
+                return new int[]{first[0], second[1]};
+            case MULTIPLY_ADD: {
+                int[] third = children.size() != 3 ? null : shapes.get(children.get(2));
+                if (first == null || second == null || third == null || first[1] != second[0]
+                        || third[0] != first[0] || third[1] != second[1]) {
+                    return null;
+                }
+                return third;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static boolean nestMultiplyChain(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        List<ComputationNode> operands = node.getChildren();
+        int n = operands.size();
+        if (n > MAX_CHAIN_LENGTH) {
+            return false;
+        }
+        // operand i has shape dims[i] x dims[i + 1]
+        long[] dims = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            int[] shape = shapes.get(operands.get(i));
+            if (shape == null || (i > 0 && shape[0] != dims[i])) {
+                return false;
+            }
+            dims[i] = shape[0];
+            dims[i + 1] = shape[1];
+        }
+
+        // cost[i][j]: cheapest way to multiply operands i..j, split[i][j]: where its last product splits
+        long[][] cost = new long[n][n];
+        int[][] split = new int[n][n];
+        for (int len = 2; len <= n; len++) {
+            for (int i = 0; i + len - 1 < n; i++) {
+                int j = i + len - 1;
+                cost[i][j] = Long.MAX_VALUE;
+                for (int k = i; k < j; k++) {
+                    long candidate = cost[i][k] + cost[k + 1][j] + dims[i] * dims[k + 1] * dims[j + 1];
+                    if (candidate < cost[i][j]) {
+                        cost[i][j] = candidate;
+                        split[i][j] = k;
+                    }
+                }
+            }
+        }
+
+        int k = split[0][n - 1];
+        ComputationNode left = buildChain(operands, split, 0, k, shapes);
+        ComputationNode right = buildChain(operands, split, k + 1, n - 1, shapes);
+        node.setChildren(List.of(left, right));
+        return true;
+    }
+
+    private static ComputationNode buildChain(List<ComputationNode> operands, int[][] split, int i, int j,
+                                              Map<ComputationNode, int[]> shapes) {
+        if (i == j) {
+            return operands.get(i);
+        }
+        int k = split[i][j];
+        ComputationNode left = buildChain(operands, split, i, k, shapes);
+        ComputationNode right = buildChain(operands, split, k + 1, j, shapes);
+        ComputationNode product = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(left, right));
+        shapes.put(product, shapeOf(product, shapes));
+        return product;
+    }
+
+    private static boolean nestBalanced(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        List<ComputationNode> operands = node.getChildren();
+        int mid = operands.size() / 2;
+        ComputationNode left = buildBalanced(node.getNodeType(), operands, 0, mid, shapes);
+        ComputationNode right = buildBalanced(node.getNodeType(), operands, mid, operands.size(), shapes);
+        node.setChildren(List.of(left, right));
+        return true;
+    }
+
+    private static ComputationNode buildBalanced(ComputationNodeType type, List<ComputationNode> operands,
+                                                 int from, int to, Map<ComputationNode, int[]> shapes) {
+        if (to - from == 1) {
+            return operands.get(from);
+        }
+        int mid = (from + to) / 2;
+        ComputationNode left = buildBalanced(type, operands, from, mid, shapes);
+        ComputationNode right = buildBalanced(type, operands, mid, to, shapes);
+        ComputationNode combined = new ComputationNode(type, List.of(left, right));
+        shapes.put(combined, shapeOf(combined, shapes));
+        return combined;
+    }
+
+    /**
+     * Lists every node reachable from root, children before their parents.
+     */
+    public static List<ComputationNode> postOrder(ComputationNode root) {
+        List<ComputationNode> order = new ArrayList<>();
+        Set<ComputationNode> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<ComputationNode> emitted = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ComputationNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            ComputationNode node = stack.peek();
+            if (node.getNodeType() == ComputationNodeType.MATRIX || !expanded.add(node)) {
+                // leaf, or every child has been emitted already
+                stack.pop();
+                if (emitted.add(node)) {
+                    order.add(node);
+                }
+                continue;
+            }
+            for (ComputationNode child : node.getChildren()) {
+                if (!emitted.contains(child)) {
+                    stack.push(child);
+                }
+            }
+        }
+        return order;
+    }
+}
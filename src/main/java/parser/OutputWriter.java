@@ -2,12 +2,18 @@ package parser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import memory.MappedMatrix;
+import memory.SharedMatrix;
 
 public class OutputWriter {
 
     private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    // rows copied out of a SharedMatrix per lock round in compact mode
+    private static final int COMPACT_BLOCK_ROWS = 64;
 
     public static class ResultMatrix {
         public double[][] result;
@@ -31,4 +37,115 @@ public class OutputWriter {
         mapper.writerWithDefaultPrettyPrinter().writeValue(file, new ErrorMessage(error));
     }
 
+    /**
+     * Same as write(double[][], String), to a stream that is left open.
+     */
+    public static void write(double[][] matrix, OutputStream stream) throws IOException {
+        mapper.writerWithDefaultPrettyPrinter().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(stream, new ResultMatrix(matrix));
+    }
+
+    public static void write(String error, OutputStream stream) throws IOException {
+        mapper.writerWithDefaultPrettyPrinter().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(stream, new ErrorMessage(error));
+    }
+
+    /**
+     * Writes a resolved node in compact form, streaming from whichever storage holds its result.
+     */
+    public static void writeCompact(ComputationNode node, String filePath) throws IOException {
+        if (node.getMappedMatrix() != null) {
+            writeCompact(node.getMappedMatrix(), filePath);
+        }
+        else if (node.getSharedMatrix() != null) {
+            writeCompact(node.getSharedMatrix(), filePath);
+        }
+        else {
+            writeCompact(node.getMatrix(), filePath);
+        }
+    }
+
+    /**
+     * Compact output: same schema as write, without whitespace, streamed row by row.
+     */
+    public static void writeCompact(double[][] matrix, String filePath) throws IOException {
+        try (ResultStreamWriter out = new ResultStreamWriter(filePath)) {
+            for (double[] row : matrix) {
+                out.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Streams a SharedMatrix result a block of rows at a time, without copying it out whole.
+     */
+    public static void writeCompact(SharedMatrix matrix, String filePath) throws IOException {
+        int rows = matrix.getRowCount();
+        try (ResultStreamWriter out = new ResultStreamWriter(filePath)) {
+            for (int r = 0; r < rows; r += COMPACT_BLOCK_ROWS) {
+                for (double[] row : matrix.readRowBlock(r, Math.min(r + COMPACT_BLOCK_ROWS, rows))) {
+                    out.writeRow(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams a file-backed result, reading each row in pieces of bounded size.
+     */
+    public static void writeCompact(MappedMatrix matrix, String filePath) throws IOException {
+        int cols = matrix.getColumnCount();
+        double[] piece = new double[Math.min(cols, MappedMatrix.CHUNK_ELEMENTS)];
+        try (ResultStreamWriter out = new ResultStreamWriter(filePath)) {
+            for (int i = 0; i < matrix.getRowCount(); i++) {
+                for (int c = 0; c < cols; c += piece.length) {
+                    int n = Math.min(piece.length, cols - c);
+                    matrix.readRow(i, c, piece, 0, n);
+                    out.writeRowPiece(piece, 0, n);
+                }
+                out.endRow();
+            }
+        }
+    }
+
+    public static void writeCompact(String error, String filePath) throws IOException {
+        try (JsonGenerator generator = ResultStreamWriter.open(filePath)) {
+            writeErrorObject(generator, error);
+        }
+    }
+
+    /**
+     * Streams a resolved node in compact form to a stream that is left open.
+     */
+    public static void writeCompact(ComputationNode node, OutputStream stream) throws IOException {
+        try (ResultStreamWriter out = new ResultStreamWriter(stream)) {
+            if (node.getSharedMatrix() != null) {
+                SharedMatrix matrix = node.getSharedMatrix();
+                int rows = matrix.getRowCount();
+                for (int r = 0; r < rows; r += COMPACT_BLOCK_ROWS) {
+                    for (double[] row : matrix.readRowBlock(r, Math.min(r + COMPACT_BLOCK_ROWS, rows))) {
+                        out.writeRow(row);
+                    }
+                }
+            }
+            else {
+                for (double[] row : node.getMatrix()) {
+                    out.writeRow(row);
+                }
+            }
+        }
+    }
+
+    public static void writeCompact(String error, OutputStream stream) throws IOException {
+        try (JsonGenerator generator = ResultStreamWriter.open(stream)) {
+            writeErrorObject(generator, error);
+        }
+    }
+
+    private static void writeErrorObject(JsonGenerator generator, String error) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("error", error);
+        generator.writeEndObject();
+    }
+
 }
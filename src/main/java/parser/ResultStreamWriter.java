@@ -0,0 +1,109 @@
+package parser;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a {"result": [[...], ...]} file incrementally, one row (or piece of a row) at a time,
+ * without whitespace. Values are formatted with Jackson's fast double writer and go through a
+ * buffered FileChannel, so the file can be written while the result is still being read out
+ * of its SharedMatrix or MappedMatrix.
+ * <pre>
+ *   try (ResultStreamWriter out = new ResultStreamWriter(path)) {
+ *       out.writeRow(row);
+ *   }
+ * </pre>
+ */
+public class ResultStreamWriter implements AutoCloseable {
+
+    static final JsonFactory FACTORY = JsonFactory.builder()
+            .enable(StreamWriteFeature.USE_FAST_DOUBLE_WRITER)
+            .build();
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final JsonGenerator generator;
+    private boolean inRow = false;
+
+    public ResultStreamWriter(String filePath) throws IOException {
+        this(open(filePath));
+    }
+
+    /**
+     * Writes to a stream, which is flushed but left open when this writer is closed.
+     */
+    public ResultStreamWriter(OutputStream stream) throws IOException {
+        this(open(stream));
+    }
+
+    private ResultStreamWriter(JsonGenerator generator) throws IOException {
+        this.generator = generator;
+        generator.writeStartObject();
+        generator.writeFieldName("result");
+        generator.writeStartArray();
+    }
+
+    static JsonGenerator open(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        // the generator owns the stream and closes the channel with it
+        return FACTORY.createGenerator(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE),
+                JsonEncoding.UTF8);
+    }
+
+    static JsonGenerator open(OutputStream stream) throws IOException {
+        JsonGenerator generator = FACTORY.createGenerator(stream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    public void writeRow(double[] row) throws IOException {
+        writeRow(row, 0, row.length);
+    }
+
+    public void writeRow(double[] values, int offset, int length) throws IOException {
+        endRow();
+        generator.writeArray(values, offset, length);
+    }
+
+    /**
+     * Appends values to the current row, starting a new row first if none is open.
+     * Lets rows that are too long for one buffer be written in pieces; endRow closes the row.
+     */
+    public void writeRowPiece(double[] values, int offset, int length) throws IOException {
+        if (!inRow) {
+            generator.writeStartArray();
+            inRow = true;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            generator.writeNumber(values[i]);
+        }
+    }
+
+    public void endRow() throws IOException {
+        if (inRow) {
+            generator.writeEndArray();
+            inRow = false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            endRow();
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } finally {
+            generator.close();
+        }
+    }
+}
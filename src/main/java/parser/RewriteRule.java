@@ -0,0 +1,17 @@
+package parser;
+
+import java.util.Map;
+
+/**
+ * A single algebraic rewrite applied by TreeRewriter.
+ */
+interface RewriteRule {
+
+    /**
+     * Rewrites node in place if the rule matches it.
+     * shapes holds {rows, columns} for the nodes whose shape is known; a rule that creates
+     * new nodes records their shapes there as well.
+     * Returns true if the node was changed.
+     */
+    boolean apply(ComputationNode node, Map<ComputationNode, int[]> shapes);
+}
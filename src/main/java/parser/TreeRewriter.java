@@ -0,0 +1,156 @@
+package parser;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rule-based rewrite stage that runs over a binary ComputationNode tree before execution.
+ * Each rule cancels or fuses a pattern that would otherwise cost the engine a full pass:
+ * <ul>
+ *   <li>T(T(A)) becomes A</li>
+ *   <li>T(S) becomes S when S is a symmetric or diagonal literal</li>
+ *   <li>-(-A) becomes A</li>
+ *   <li>A + (-B) and (-B) + A become a single SUBTRACT(A, B)</li>
+ *   <li>T(A * B) becomes T(B) * T(A) when fewer column-major elements end up being read by rows</li>
+ * </ul>
+ * A transpose costs the engine nothing but an orientation flip; the pass it does cost is reading
+ * a column-major matrix by rows, which happens to the left operand of a product and to a
+ * transposed result. The right operand of a product is read in either orientation.
+ * Nodes are rewritten in place, so the root object stays the root of the result.
+ */
+public final class TreeRewriter {
+
+    private static final List<RewriteRule> RULES = List.of(
+            TreeRewriter::cancelDoubleTranspose,
+            TreeRewriter::dropSymmetricTranspose,
+            TreeRewriter::cancelDoubleNegation,
+            TreeRewriter::fuseNegatedAddend,
+            TreeRewriter::transposeProduct);
+
+    private TreeRewriter() {}
+
+    /**
+     * Applies the rules bottom-up until none of them matches any more.
+     * Returns the number of rewrites that fired.
+     */
+    public static int rewrite(ComputationNode root) {
+        Map<ComputationNode, int[]> shapes = new IdentityHashMap<>();
+        List<ComputationNode> order = NestingOptimizer.postOrder(root);
+        for (ComputationNode node : order) {
+            shapes.put(node, NestingOptimizer.shapeOf(node, shapes));
+        }
+        int fired = 0;
+        for (ComputationNode node : order) {
+            fired += rewriteNode(node, shapes);
+        }
+        return fired;
+    }
+
+    private static int rewriteNode(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        int fired = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (RewriteRule rule : RULES) {
+                if (node.getNodeType() != ComputationNodeType.MATRIX && rule.apply(node, shapes)) {
+                    fired++;
+                    changed = true;
+                    // a rewrite may hand this node new children that have not been visited yet
+                    if (node.getNodeType() != ComputationNodeType.MATRIX) {
+                        for (ComputationNode child : node.getChildren()) {
+                            fired += rewriteNode(child, shapes);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        return fired;
+    }
+
+    private static boolean isUnary(ComputationNode node, ComputationNodeType type) {
+        return node.getNodeType() == type && node.getChildren().size() == 1;
+    }
+
+    private static boolean isBinary(ComputationNode node, ComputationNodeType type) {
+        return node.getNodeType() == type && node.getChildren().size() == 2;
+    }
+
+    private static boolean cancelDoubleTranspose(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        if (!isUnary(node, ComputationNodeType.TRANSPOSE)
+                || !isUnary(node.getChildren().get(0), ComputationNodeType.TRANSPOSE)) {
+            return false;
+        }
+        node.replaceWith(node.getChildren().get(0).getChildren().get(0));
+        return true;
+    }
+
+    private static boolean dropSymmetricTranspose(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        if (!isUnary(node, ComputationNodeType.TRANSPOSE) || !node.getChildren().get(0).isSymmetric()) {
+            return false;
+        }
+        node.replaceWith(node.getChildren().get(0));
+        return true;
+    }
+
+    private static boolean cancelDoubleNegation(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        if (!isUnary(node, ComputationNodeType.NEGATE)
+                || !isUnary(node.getChildren().get(0), ComputationNodeType.NEGATE)) {
+            return false;
+        }
+        node.replaceWith(node.getChildren().get(0).getChildren().get(0));
+        return true;
+    }
+
+    private static boolean fuseNegatedAddend(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        if (!isBinary(node, ComputationNodeType.ADD)) {
+            return false;
+        }
+        ComputationNode left = node.getChildren().get(0);
+        ComputationNode right = node.getChildren().get(1);
+        if (isUnary(right, ComputationNodeType.NEGATE)) {
+            node.replaceWith(new ComputationNode(ComputationNodeType.SUBTRACT, List.of(left, right.getChildren().get(0))));
+            return true;
+        }
+        if (isUnary(left, ComputationNodeType.NEGATE)) {
+            node.replaceWith(new ComputationNode(ComputationNodeType.SUBTRACT, List.of(right, left.getChildren().get(0))));
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean transposeProduct(ComputationNode node, Map<ComputationNode, int[]> shapes) {
+        if (!isUnary(node, ComputationNodeType.TRANSPOSE)
+                || !isBinary(node.getChildren().get(0), ComputationNodeType.MULTIPLY)) {
+            return false;
+        }
+        ComputationNode product = node.getChildren().get(0);
+        ComputationNode a = product.getChildren().get(0);
+        ComputationNode b = product.getChildren().get(1);
+        int[] shapeA = shapes.get(a);
+        int[] shapeB = shapes.get(b);
+        int[] shapeProduct = shapes.get(product);
+        if (shapeA == null || shapeB == null || shapeProduct == null) {
+            return false;
+        }
+        // before: a transposed A is read by rows, and so is the transposed product afterwards;
+        // after: T(B) is read by rows unless B is a transpose and the two cancel, and T(A) is
+        // the right operand, read as it is. The products themselves give the same bits.
+        long before = columnMajorElements(a, shapeA) + (long) shapeProduct[0] * shapeProduct[1];
+        long after = isUnary(b, ComputationNodeType.TRANSPOSE) ? 0 : (long) shapeB[0] * shapeB[1];
+        if (after >= before) {
+            return false;
+        }
+        ComputationNode transposedB = new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(b));
+        ComputationNode transposedA = new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(a));
+        shapes.put(transposedB, new int[]{shapeB[1], shapeB[0]});
+        shapes.put(transposedA, new int[]{shapeA[1], shapeA[0]});
+        node.replaceWith(new ComputationNode(ComputationNodeType.MULTIPLY, List.of(transposedB, transposedA)));
+        return true;
+    }
+
+    private static long columnMajorElements(ComputationNode operand, int[] shape) {
+        return isUnary(operand, ComputationNodeType.TRANSPOSE) ? (long) shape[0] * shape[1] : 0;
+    }
+}
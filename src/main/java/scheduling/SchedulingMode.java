@@ -0,0 +1,11 @@
+package scheduling;
+/**
+ * Determines how a TiredExecutor hands tasks to its workers.
+ * HANDOFF gives each task to the least fatigued idle worker and blocks the submitter until one is idle.
+ * WORK_STEALING never blocks: tasks go to the deque of the least loaded, least fatigued worker,
+ * and idle workers steal from the others.
+ */
+public enum SchedulingMode {
+    HANDOFF,
+    WORK_STEALING
+}
@@ -11,21 +11,36 @@ public class TiredExecutor {
     private final TiredThread[] workers;
     private final PriorityBlockingQueue<TiredThread> idleMinHeap = new PriorityBlockingQueue<>();
     private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final SchedulingMode mode;
 
     public TiredExecutor(int numThreads) {
+        this(numThreads, SchedulingMode.HANDOFF);
+    }
+
+    public TiredExecutor(int numThreads, SchedulingMode mode) {
+        this.mode = mode;
         workers = new TiredThread[numThreads];
         Random rnd = new Random();
         for (int i = 0; i < numThreads; i++) {
             double fatigueFactor = rnd.nextDouble() + 0.5;
-            TiredThread worker = new TiredThread(i, fatigueFactor);
+            TiredThread worker = (mode == SchedulingMode.WORK_STEALING)
+                    ? new TiredThread(i, fatigueFactor, workers)
+                    : new TiredThread(i, fatigueFactor);
             workers[i] = worker;
             idleMinHeap.add(worker);
+        }
+        // start only once every worker exists, stealing workers look at each other
+        for (TiredThread worker : workers) {
             worker.start();
         }
         inFlight.set(0);
     }
 
 public void submit(Runnable task) {
+    if (mode == SchedulingMode.WORK_STEALING) {
+        submitStealing(task);
+        return;
+    }
     try {
         TiredThread worker = idleMinHeap.take();
         inFlight.incrementAndGet();
@@ -67,6 +82,39 @@ public void submit(Runnable task) {
         throw new RuntimeException("Executor interrupted", e);
     }
 }
+    /**
+     * Non-blocking placement for work-stealing mode: the task goes to the worker with the
+     * fewest waiting tasks, preferring idle and then less fatigued workers.
+     */
+    private void submitStealing(Runnable task) {
+        TiredThread target = null;
+        long targetLoad = Long.MAX_VALUE;
+        for (TiredThread worker : workers) {
+            long load = worker.getQueuedTasks() + (worker.isBusy() ? 1 : 0);
+            if (load < targetLoad || (load == targetLoad && worker.getFatigue() < target.getFatigue())) {
+                target = worker;
+                targetLoad = load;
+            }
+        }
+        inFlight.incrementAndGet();
+        target.enqueue(() -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        if (targetLoad > 0) {
+            // the target is behind, let an idle worker steal the task
+            for (TiredThread worker : workers) {
+                if (worker != target && !worker.isBusy()) {
+                    worker.wakeUp();
+                    break;
+                }
+            }
+        }
+    }
+
     public void submitAll(Iterable<Runnable> tasks) {
         for (Runnable task : tasks) {
             submit(task);
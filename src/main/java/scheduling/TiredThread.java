@@ -2,8 +2,11 @@ package scheduling;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class TiredThread extends Thread implements Comparable<TiredThread> {
 
@@ -17,6 +20,11 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     // Single-slot handoff queue; executor will put tasks here
     private final BlockingQueue<Runnable> handoff = new ArrayBlockingQueue<>(1);
 
+    // Work-stealing mode only: own deque, and every worker of the executor (including this one)
+    private final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger queued = new AtomicInteger(0); // Tasks waiting in deque
+    private final TiredThread[] peers;
+
     private final AtomicBoolean busy = new AtomicBoolean(false); // Indicates if the worker is currently executing a task
 
     private final AtomicLong timeUsed = new AtomicLong(0); // Total time spent executing tasks
@@ -24,8 +32,18 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     private final AtomicLong idleStartTime = new AtomicLong(0); // Timestamp when the worker became idle
 
     public TiredThread(int id, double fatigueFactor) {
+        this(id, fatigueFactor, null);
+    }
+
+    /**
+     * Creates a worker for work-stealing mode. Tasks are given with enqueue instead of newTask;
+     * when its own deque is empty the worker steals from the other workers in peers.
+     * The array may be filled in after construction, as long as it is complete before start.
+     */
+    public TiredThread(int id, double fatigueFactor, TiredThread[] peers) {
         this.id = id;
         this.fatigueFactor = fatigueFactor;
+        this.peers = peers;
         this.idleStartTime.set(System.nanoTime());
         setName(String.format("FF=%.2f", fatigueFactor));
     }
@@ -70,13 +88,44 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
         }
     }
 
+    /**
+     * Work-stealing mode: append a task to this worker's deque. Never blocks.
+     */
+    public void enqueue(Runnable task) {
+        if(!alive.get()){
+            throw new IllegalStateException("Worker is not alive");
+        }
+        queued.incrementAndGet();
+        deque.addLast(task);
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Number of tasks waiting in this worker's deque (work-stealing mode).
+     */
+    public int getQueuedTasks() {
+        return queued.get();
+    }
+
+    /**
+     * Work-stealing mode: wake the worker so it looks for work right away.
+     */
+    public void wakeUp() {
+        LockSupport.unpark(this);
+    }
+
     /**
      * Request this worker to stop after finishing current task.
      * Inserts a poison pill so the worker wakes up and exits.
+     * In work-stealing mode the worker first runs every task already in its deque.
      */
     public void shutdown() {
         try{
             alive.set(false);
+            if(peers != null){
+                LockSupport.unpark(this);
+                return;
+            }
             handoff.put(POISON_PILL);
         }
         catch(InterruptedException e){
@@ -86,33 +135,17 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
 
     @Override
     public void run() {
+        if(peers != null){
+            runStealing();
+            return;
+        }
         while(alive.get()){
             try{
                 Runnable task = handoff.take();
                 if(task == POISON_PILL){
                     break;
                 }
-
-                long idleEndTime = System.nanoTime();
-                long idleDuration = idleEndTime - idleStartTime.get();
-                timeIdle.addAndGet(idleDuration);
-
-                busy.set(true);
-                long startTime = System.nanoTime();
-                try{
-                    task.run();
-                }
-                catch(Exception e){
-                    e.printStackTrace();
-                }
-                finally{
-                    long endTime = System.nanoTime();
-                    long usedDuration = endTime - startTime;
-                    timeUsed.addAndGet(usedDuration);
-                    busy.set(false);
-
-                    idleStartTime.set(System.nanoTime());
-                }
+                execute(task);
             }
             catch(Exception e){
                 e.printStackTrace();
@@ -120,6 +153,72 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
         }
     }
 
+    private void runStealing() {
+        while(true){
+            // newest own task first while it is still in cache, otherwise the oldest task of a peer
+            Runnable task = deque.pollLast();
+            if(task != null){
+                queued.decrementAndGet();
+            }
+            else{
+                task = steal();
+            }
+            if(task != null){
+                execute(task);
+                continue;
+            }
+            // nothing left to run: exit only once shut down, so queued tasks are never dropped
+            if(!alive.get()){
+                break;
+            }
+            // enqueue, wakeUp and shutdown all unpark after publishing their change, and an unpark
+            // that lands between the checks above and this call makes park return at once
+            LockSupport.park(this);
+        }
+    }
+
+    private Runnable steal() {
+        for(int i = 1; i < peers.length; i++){
+            TiredThread victim = peers[(id + i) % peers.length];
+            Runnable task = victim.deque.pollFirst();
+            if(task != null){
+                victim.queued.decrementAndGet();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs one task and updates the fatigue accounting.
+     */
+    private void execute(Runnable task) {
+        long idleEndTime = System.nanoTime();
+        long idleDuration = idleEndTime - idleStartTime.get();
+        timeIdle.addAndGet(idleDuration);
+
+        busy.set(true);
+        long startTime = System.nanoTime();
+        try{
+            task.run();
+        }
+        catch(Exception e){
+            e.printStackTrace();
+        }
+        finally{
+            long endTime = System.nanoTime();
+            long usedDuration = endTime - startTime;
+            timeUsed.addAndGet(usedDuration);
+            busy.set(false);
+            // wake an executor waiting to hand us the next task
+            synchronized (this) {
+                notifyAll();
+            }
+
+            idleStartTime.set(System.nanoTime());
+        }
+    }
+
     @Override
     public int compareTo(TiredThread o) {
         return Double.compare(this.getFatigue(), o.getFatigue());
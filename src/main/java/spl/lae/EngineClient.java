@@ -0,0 +1,94 @@
+package spl.lae;
+
+import parser.BinaryFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Client for EngineServer. One client holds one connection, which can run many jobs in turn.
+ * <pre>
+ *   java spl.lae.EngineClient [--port=7878] [--compact] input output
+ *   java spl.lae.EngineClient [--port=7878] --shutdown
+ * </pre>
+ * Like Main, files ending in .laeb are sent or received in BinaryFormat.
+ */
+public class EngineClient implements AutoCloseable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public EngineClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = EngineServer.DEFAULT_PORT;
+        boolean compact = false;
+        boolean shutdown = false;
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            if (args[first].startsWith("--port=")) {
+                port = Integer.parseInt(args[first].substring("--port=".length()));
+            }
+            else if (args[first].equals("--compact")) {
+                compact = true;
+            }
+            else if (args[first].equals("--shutdown")) {
+                shutdown = true;
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + args[first]);
+            }
+        }
+        try (EngineClient client = new EngineClient(port)) {
+            if (shutdown) {
+                client.shutdownServer();
+                return;
+            }
+            String inputPath = args[first];
+            String outputPath = args[first + 1];
+            byte inputFormat = BinaryFormat.isBinaryPath(inputPath) ? JobProtocol.INPUT_BINARY : JobProtocol.INPUT_JSON;
+            byte outputFormat = BinaryFormat.isBinaryPath(outputPath) ? JobProtocol.OUTPUT_BINARY
+                    : compact ? JobProtocol.OUTPUT_COMPACT : JobProtocol.OUTPUT_JSON;
+            Files.write(Path.of(outputPath), client.run(Files.readAllBytes(Path.of(inputPath)), inputFormat, outputFormat));
+        }
+    }
+
+    /**
+     * Runs a job and returns the output document: the result, or an error document if the job failed.
+     */
+    public byte[] run(byte[] input, byte inputFormat, byte outputFormat) throws IOException {
+        JobProtocol.writeRequest(out, JobProtocol.COMMAND_RUN, inputFormat, outputFormat, input);
+        in.readByte(); // the status is also visible in the document itself
+        return JobProtocol.readPayload(in);
+    }
+
+    /**
+     * Convenience for JSON in and pretty JSON out.
+     */
+    public byte[] run(byte[] jsonInput) throws IOException {
+        return run(jsonInput, JobProtocol.INPUT_JSON, JobProtocol.OUTPUT_JSON);
+    }
+
+    public void shutdownServer() throws IOException {
+        JobProtocol.writeRequest(out, JobProtocol.COMMAND_SHUTDOWN, (byte) 0, (byte) 0, new byte[0]);
+        in.readByte();
+        JobProtocol.readPayload(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
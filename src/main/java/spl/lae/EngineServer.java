@@ -0,0 +1,295 @@
+package spl.lae;
+
+import parser.BinaryFormat;
+import parser.ComputationNode;
+import parser.InputParser;
+import parser.OutputWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running engine that serves jobs over a loopback socket, so the JVM, the JIT-compiled
+ * code and the worker pool stay warm between jobs.
+ * <pre>
+ *   java spl.lae.EngineServer [--port=7878] [--threads=n] [--jobs=n] [--cache=MB] [--max-payload=MB]
+ * </pre>
+ * Up to --jobs connections are served at once, each running its jobs one after the other on
+ * the shared engine; further connections wait. Every job has its own tree and operand
+ * buffers, and a failing job only produces an error document for that job.
+ * With --cache, results are kept in a ResultCache shared by all jobs.
+ * Requests larger than --max-payload (256 MB by default) are answered with an error document
+ * without being read into memory.
+ * Closing the server also closes every open connection, idle or not.
+ * The protocol is described in JobProtocol; EngineClient is the matching client.
+ * Java 15 has no Unix-domain socket channels, so the server only binds to the loopback address.
+ */
+public class EngineServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7878;
+
+    private final ServerSocket serverSocket;
+    private final LinearAlgebraEngine engine;
+    private final ExecutorService connections;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicLong jobsServed = new AtomicLong(0);
+    private volatile long maxPayload = (long) JobProtocol.DEFAULT_MAX_PAYLOAD_MEGABYTES << 20;
+    private Thread acceptor;
+
+    /**
+     * Binds to port on the loopback address; port 0 picks a free port.
+     */
+    public EngineServer(int port, int numThreads, int maxConcurrentJobs) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        engine = new LinearAlgebraEngine(numThreads);
+        connections = Executors.newFixedThreadPool(maxConcurrentJobs, task -> {
+            Thread thread = new Thread(task, "engine-server-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int jobs = 4;
+        long cacheMegabytes = 0;
+        long maxPayloadMegabytes = JobProtocol.DEFAULT_MAX_PAYLOAD_MEGABYTES;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "--port":
+                    port = Integer.parseInt(pair[1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(pair[1]);
+                    break;
+                case "--jobs":
+                    jobs = Integer.parseInt(pair[1]);
+                    break;
+                case "--cache":
+                    cacheMegabytes = Long.parseLong(pair[1]);
+                    break;
+                case "--max-payload":
+                    maxPayloadMegabytes = Long.parseLong(pair[1]);
+                    break;
+                default:
+                    System.err.println("Unknown option: " + arg);
+                    System.exit(2);
+            }
+        }
+        ResultCache cache = (cacheMegabytes > 0) ? new ResultCache(cacheMegabytes << 20) : null;
+        try (EngineServer server = new EngineServer(port, threads, jobs)) {
+            if (cache != null) {
+                server.setResultCache(cache);
+            }
+            server.setMaxPayload(maxPayloadMegabytes << 20);
+            server.start();
+            System.out.println("Engine server listening on " + server.getPort());
+            server.awaitShutdown();
+        }
+        if (cache != null) {
+            System.out.print(cache.getReport());
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void setResultCache(ResultCache cache) {
+        engine.setResultCache(cache);
+    }
+
+    /**
+     * Sets the largest request payload, in bytes, that the server reads.
+     */
+    public void setMaxPayload(long bytes) {
+        maxPayload = bytes;
+    }
+
+    public long getJobsServed() {
+        return jobsServed.get();
+    }
+
+    public void start() {
+        acceptor = new Thread(this::acceptLoop, "engine-server-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Blocks until the server is closed, locally or by a client's shutdown request.
+     */
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    private void acceptLoop() {
+        while (!closed.get()) {
+            try {
+                Socket socket = serverSocket.accept();
+                clients.add(socket);
+                if (closed.get()) {
+                    // close() may already have gone over the open connections
+                    clients.remove(socket);
+                    socket.close();
+                    continue;
+                }
+                try {
+                    connections.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    // close() shut the pool down between the check and here
+                    clients.remove(socket);
+                    socket.close();
+                }
+            } catch (IOException e) {
+                if (!closed.get()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            while (!closed.get()) {
+                int magic;
+                try {
+                    magic = in.readInt();
+                } catch (EOFException e) {
+                    return; // the client is done
+                }
+                if (magic != JobProtocol.MAGIC) {
+                    return;
+                }
+                byte command = in.readByte();
+                byte inputFormat = in.readByte();
+                byte outputFormat = in.readByte();
+                int length = JobProtocol.readPayloadLength(in);
+                if (length > maxPayload) {
+                    // skipping the payload keeps the connection in step with the client
+                    in.skipNBytes(length);
+                    ByteArrayOutputStream error = new ByteArrayOutputStream();
+                    byte status = writeError("Request payload of " + length + " bytes exceeds the limit of "
+                            + maxPayload + " bytes", outputFormat, error);
+                    JobProtocol.writeResponse(out, status, error.toByteArray());
+                    continue;
+                }
+                byte[] payload = JobProtocol.readPayload(in, length);
+                if (command == JobProtocol.COMMAND_SHUTDOWN) {
+                    JobProtocol.writeResponse(out, JobProtocol.STATUS_OK, new byte[0]);
+                    new Thread(this::close, "engine-server-shutdown").start();
+                    return;
+                }
+                ByteArrayOutputStream result = new ByteArrayOutputStream();
+                byte status = runJob(payload, inputFormat, outputFormat, result);
+                jobsServed.incrementAndGet();
+                JobProtocol.writeResponse(out, status, result.toByteArray());
+            }
+        } catch (SocketException e) {
+            // the connection was reset or the server is closing
+        } catch (IOException e) {
+            if (!closed.get()) {
+                e.printStackTrace();
+            }
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    /**
+     * Runs one job and writes its output document to result. Returns the response status.
+     */
+    byte runJob(byte[] payload, byte inputFormat, byte outputFormat, ByteArrayOutputStream result) throws IOException {
+        try {
+            ComputationNode root = (inputFormat == JobProtocol.INPUT_BINARY)
+                    ? BinaryFormat.readTree(new ByteArrayInputStream(payload), payload.length)
+                    : new InputParser().parse(payload);
+            ComputationNode resultNode = engine.run(root);
+            if (outputFormat == JobProtocol.OUTPUT_BINARY) {
+                BinaryFormat.writeResult(resultNode.getMatrix(), result);
+            }
+            else if (outputFormat == JobProtocol.OUTPUT_COMPACT) {
+                OutputWriter.writeCompact(resultNode, result);
+            }
+            else {
+                OutputWriter.write(resultNode.getMatrix(), result);
+            }
+            return JobProtocol.STATUS_OK;
+        } catch (Exception e) {
+            return writeError(e.getMessage(), outputFormat, result);
+        } catch (OutOfMemoryError e) {
+            // only this job's buffers were live; once they are dropped the other jobs carry on
+            return writeError("Job ran out of memory: " + e.getMessage(), outputFormat, result);
+        }
+    }
+
+    private static byte writeError(String message, byte outputFormat, ByteArrayOutputStream result) throws IOException {
+        // a partially written result is dropped, the job answers with its error only
+        result.reset();
+        if (outputFormat == JobProtocol.OUTPUT_BINARY) {
+            BinaryFormat.writeError(message, result);
+        }
+        else if (outputFormat == JobProtocol.OUTPUT_COMPACT) {
+            OutputWriter.writeCompact(message, result);
+        }
+        else {
+            OutputWriter.write(message, result);
+        }
+        return JobProtocol.STATUS_ERROR;
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // idle connections block reading the next request, so they are closed rather than waited for
+        for (Socket socket : clients) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        connections.shutdown();
+        try {
+            if (!connections.awaitTermination(10, TimeUnit.SECONDS)) {
+                connections.shutdownNow();
+            }
+            engine.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.countDown();
+        }
+    }
+}
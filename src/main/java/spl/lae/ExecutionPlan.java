@@ -0,0 +1,104 @@
+package spl.lae;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dependency bookkeeping for one run of the engine.
+ * The tree is walked once up front to record, for every operator node, how many of its
+ * operands are still unresolved and which nodes consume it. Resolving a node then only touches
+ * its parents, so a tree of N operators is evaluated in O(N) total instead of re-walking it
+ * from the root after every step.
+ * The tree may be a DAG: a node shared by several consumers is evaluated once, and the plan
+ * counts its remaining consumers so that only the last one takes over its buffer.
+ */
+class ExecutionPlan {
+
+    private final Map<ComputationNode, Integer> pendingOperands = new IdentityHashMap<>();
+    private final Map<ComputationNode, List<ComputationNode>> parents = new IdentityHashMap<>();
+    private final Map<ComputationNode, Integer> uses = new IdentityHashMap<>(); // consumers not prepared yet
+    private final Deque<ComputationNode> ready = new ArrayDeque<>();
+    private int unresolved = 0; // operator nodes not resolved yet
+
+    ExecutionPlan(ComputationNode root) {
+        if (root.getNodeType() == ComputationNodeType.MATRIX) {
+            return;
+        }
+        // iterative walk, so very deep trees do not overflow the stack
+        Deque<ComputationNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        pendingOperands.put(root, 0);
+        while (!stack.isEmpty()) {
+            ComputationNode node = stack.pop();
+            unresolved++;
+            int pending = 0;
+            for (ComputationNode child : node.getChildren()) {
+                uses.merge(child, 1, Integer::sum);
+                if (child.getNodeType() == ComputationNodeType.MATRIX) {
+                    continue;
+                }
+                pending++;
+                parents.computeIfAbsent(child, k -> new ArrayList<>()).add(node);
+                if (!pendingOperands.containsKey(child)) {
+                    pendingOperands.put(child, 0);
+                    stack.push(child);
+                }
+            }
+            pendingOperands.put(node, pending);
+            if (pending == 0) {
+                ready.add(node);
+            }
+        }
+    }
+
+    /**
+     * Returns an operator node whose operands are all resolved, or null if there is none right now.
+     */
+    ComputationNode pollReady() {
+        return ready.poll();
+    }
+
+    /**
+     * Records that node was resolved and queues every parent that has no pending operands left.
+     */
+    void markResolved(ComputationNode node) {
+        unresolved--;
+        List<ComputationNode> consumers = parents.remove(node);
+        if (consumers == null) {
+            return;
+        }
+        for (ComputationNode parent : consumers) {
+            int pending = pendingOperands.get(parent) - 1;
+            pendingOperands.put(parent, pending);
+            if (pending == 0) {
+                ready.add(parent);
+            }
+        }
+    }
+
+    /**
+     * Records that one consumer of operand is done with it. Returns true if that was the last
+     * consumer, which may then reuse or free the operand's buffer; earlier consumers must copy it.
+     * Operands outside the plan are always owned by their only consumer.
+     */
+    boolean releaseOperand(ComputationNode operand) {
+        Integer remaining = uses.get(operand);
+        if (remaining == null || remaining <= 1) {
+            uses.remove(operand);
+            return true;
+        }
+        uses.put(operand, remaining - 1);
+        return false;
+    }
+
+    boolean isComplete() {
+        return unresolved == 0;
+    }
+}
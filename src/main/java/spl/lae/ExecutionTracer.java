@@ -0,0 +1,307 @@
+package spl.lae;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import scheduling.TiredThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in tracing for a LinearAlgebraEngine.
+ * Records a span for every resolved node (operator, operand and result shapes, and its load,
+ * compute and readback phases), for every task a worker runs, and for named driver phases
+ * such as parsing and writing. Every span is also emitted as a JFR event (spl.lae.Node,
+ * spl.lae.Task, spl.lae.Phase), which costs nothing unless a flight recording is running.
+ * writeChromeTrace saves the spans as a Chrome trace-event file for chrome://tracing or Perfetto:
+ * node phases are async slices on the driver, tasks are slices on one track per worker.
+ */
+public class ExecutionTracer {
+
+    private static final int DRIVER_TRACK = 0;
+
+    private final long origin = System.nanoTime();
+    private final AtomicInteger nextNodeId = new AtomicInteger(0);
+    private final ConcurrentLinkedQueue<NodeSpan> nodes = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<TaskSpan> tasks = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<PhaseSpan> phases = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Records a named phase that ran on the calling thread between start and end (System.nanoTime).
+     */
+    public void phase(String name, long start, long end) {
+        phases.add(new PhaseSpan(name, start, end));
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.durationNanos = end - start;
+            event.commit();
+        }
+    }
+
+    public int getNodeSpanCount() {
+        return nodes.size();
+    }
+
+    public int getTaskSpanCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Starts the span of an operator node whose operands are all resolved. Must be called
+     * before the node is prepared, while its operands still have their original shapes.
+     */
+    NodeTrace beginNode(ComputationNode node) {
+        StringBuilder inputs = new StringBuilder();
+        for (ComputationNode child : node.getChildren()) {
+            if (inputs.length() > 0) {
+                inputs.append(", ");
+            }
+            inputs.append(shape(child));
+        }
+        return new NodeTrace(nextNodeId.getAndIncrement(), node.getNodeType(), inputs.toString());
+    }
+
+    private static String shape(ComputationNode node) {
+        String shape = node.getRowCount() + "x" + node.getColumnCount();
+        if (node.getSparseMatrix() != null) {
+            return shape + " sparse";
+        }
+        if (node.getDiagonalMatrix() != null) {
+            return shape + " diagonal";
+        }
+        return shape;
+    }
+
+    /**
+     * Per-node timestamps, filled in by the engine as the node moves through its phases.
+     */
+    class NodeTrace {
+        final int id;
+        final ComputationNodeType operator;
+        final String inputs;
+        final long loadStart = System.nanoTime();
+        long loadEnd;
+        volatile long computeEnd;
+        private final NodeEvent event = new NodeEvent();
+
+        NodeTrace(int id, ComputationNodeType operator, String inputs) {
+            this.id = id;
+            this.operator = operator;
+            this.inputs = inputs;
+            event.begin();
+        }
+
+        void loaded() {
+            loadEnd = System.nanoTime();
+        }
+
+        void computed() {
+            computeEnd = System.nanoTime();
+        }
+
+        /**
+         * Wraps a task so that the worker that runs it records a task span.
+         */
+        Runnable wrap(Runnable task) {
+            return () -> {
+                TaskEvent taskEvent = new TaskEvent();
+                taskEvent.begin();
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    long end = System.nanoTime();
+                    Thread thread = Thread.currentThread();
+                    int worker = (thread instanceof TiredThread) ? ((TiredThread) thread).getWorkerId() : -1;
+                    tasks.add(new TaskSpan(id, operator, worker, start, end));
+                    taskEvent.end();
+                    if (taskEvent.shouldCommit()) {
+                        taskEvent.nodeId = id;
+                        taskEvent.operator = operator.name();
+                        taskEvent.workerId = worker;
+                        taskEvent.commit();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Closes the span once the node is resolved; readbackStart is when the driver picked it up.
+         */
+        void completed(ComputationNode resolved, long readbackStart) {
+            long readbackEnd = System.nanoTime();
+            String output = shape(resolved);
+            long finished = (computeEnd == 0) ? loadEnd : computeEnd;
+            nodes.add(new NodeSpan(this, output, finished, readbackStart, readbackEnd));
+            event.end();
+            if (event.shouldCommit()) {
+                event.nodeId = id;
+                event.operator = operator.name();
+                event.inputs = inputs;
+                event.output = output;
+                event.loadNanos = loadEnd - loadStart;
+                event.computeNanos = finished - loadEnd;
+                event.readbackNanos = readbackEnd - readbackStart;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Writes every span recorded so far as a Chrome trace-event JSON file.
+     */
+    public void writeChromeTrace(String filePath) throws IOException {
+        List<NodeSpan> nodeSpans = new ArrayList<>(nodes);
+        nodeSpans.sort(Comparator.comparingLong(span -> span.trace.loadStart));
+        List<TaskSpan> taskSpans = new ArrayList<>(tasks);
+        taskSpans.sort(Comparator.comparingLong(span -> span.start));
+        int maxWorker = -1;
+        for (TaskSpan span : taskSpans) {
+            maxWorker = Math.max(maxWorker, span.worker);
+        }
+        try (JsonGenerator out = new JsonFactory().createGenerator(new File(filePath), JsonEncoding.UTF8)) {
+            out.writeStartObject();
+            out.writeStringField("displayTimeUnit", "ms");
+            out.writeArrayFieldStart("traceEvents");
+            threadName(out, DRIVER_TRACK, "driver");
+            for (int worker = 0; worker <= maxWorker; worker++) {
+                threadName(out, worker + 1, "worker " + worker);
+            }
+            for (PhaseSpan span : phases) {
+                complete(out, span.name, "phase", DRIVER_TRACK, span.start, span.end);
+                out.writeEndObject();
+            }
+            for (NodeSpan span : nodeSpans) {
+                NodeTrace trace = span.trace;
+                String name = trace.operator + " #" + trace.id;
+                async(out, "b", name, trace.id, trace.loadStart);
+                out.writeObjectFieldStart("args");
+                out.writeStringField("inputs", trace.inputs);
+                out.writeStringField("output", span.output);
+                out.writeEndObject();
+                out.writeEndObject();
+                async(out, "b", "load", trace.id, trace.loadStart);
+                out.writeEndObject();
+                async(out, "e", "load", trace.id, trace.loadEnd);
+                out.writeEndObject();
+                async(out, "b", "compute", trace.id, trace.loadEnd);
+                out.writeEndObject();
+                async(out, "e", "compute", trace.id, span.computeEnd);
+                out.writeEndObject();
+                async(out, "b", "readback", trace.id, span.readbackStart);
+                out.writeEndObject();
+                async(out, "e", "readback", trace.id, span.readbackEnd);
+                out.writeEndObject();
+                async(out, "e", name, trace.id, span.readbackEnd);
+                out.writeEndObject();
+            }
+            for (TaskSpan span : taskSpans) {
+                complete(out, span.operator + " #" + span.nodeId, "task", span.worker + 1, span.start, span.end);
+                out.writeObjectFieldStart("args");
+                out.writeNumberField("node", span.nodeId);
+                out.writeEndObject();
+                out.writeEndObject();
+            }
+            out.writeEndArray();
+            out.writeEndObject();
+        }
+    }
+
+    private void threadName(JsonGenerator out, int track, String name) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("name", "thread_name");
+        out.writeStringField("ph", "M");
+        out.writeNumberField("pid", 1);
+        out.writeNumberField("tid", track);
+        out.writeObjectFieldStart("args");
+        out.writeStringField("name", name);
+        out.writeEndObject();
+        out.writeEndObject();
+    }
+
+    /**
+     * Opens a complete ("X") event; the caller may add args and must close the object.
+     */
+    private void complete(JsonGenerator out, String name, String category, int track, long start, long end) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("name", name);
+        out.writeStringField("cat", category);
+        out.writeStringField("ph", "X");
+        out.writeNumberField("pid", 1);
+        out.writeNumberField("tid", track);
+        out.writeNumberField("ts", micros(start));
+        out.writeNumberField("dur", (end - start) / 1000.0);
+    }
+
+    /**
+     * Opens a nestable async ("b"/"e") event; the caller may add args and must close the object.
+     */
+    private void async(JsonGenerator out, String phase, String name, int id, long time) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("name", name);
+        out.writeStringField("cat", "node");
+        out.writeStringField("ph", phase);
+        out.writeNumberField("id", id);
+        out.writeNumberField("pid", 1);
+        out.writeNumberField("tid", DRIVER_TRACK);
+        out.writeNumberField("ts", micros(time));
+    }
+
+    // trace-event timestamps are microseconds since the tracer was created
+    private double micros(long nanos) {
+        return (nanos - origin) / 1000.0;
+    }
+
+    private static class NodeSpan {
+        final NodeTrace trace;
+        final String output;
+        final long computeEnd;
+        final long readbackStart;
+        final long readbackEnd;
+
+        NodeSpan(NodeTrace trace, String output, long computeEnd, long readbackStart, long readbackEnd) {
+            this.trace = trace;
+            this.output = output;
+            this.computeEnd = computeEnd;
+            this.readbackStart = readbackStart;
+            this.readbackEnd = readbackEnd;
+        }
+    }
+
+    private static class TaskSpan {
+        final int nodeId;
+        final ComputationNodeType operator;
+        final int worker;
+        final long start;
+        final long end;
+
+        TaskSpan(int nodeId, ComputationNodeType operator, int worker, long start, long end) {
+            this.nodeId = nodeId;
+            this.operator = operator;
+            this.worker = worker;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class PhaseSpan {
+        final String name;
+        final long start;
+        final long end;
+
+        PhaseSpan(String name, long start, long end) {
+            this.name = name;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package spl.lae;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Wire format between EngineClient and EngineServer. All integers are big-endian.
+ * <pre>
+ *   request:  magic "LAEJ" | command u8 | input format u8 | output format u8 | length u32 | payload
+ *   response: status u8 | length u32 | payload
+ * </pre>
+ * The request payload is the content of an input file, the response payload the content of
+ * the output file: a result or an error document in the requested format. A connection may
+ * carry any number of requests, one after the other. A request whose payload is over the
+ * server's limit is skipped and answered with an error document.
+ */
+public final class JobProtocol {
+
+    static final int MAGIC = ('L' << 24) | ('A' << 16) | ('E' << 8) | 'J';
+    static final int DEFAULT_MAX_PAYLOAD_MEGABYTES = 256;
+
+    static final byte COMMAND_RUN = 1;
+    static final byte COMMAND_SHUTDOWN = 2;
+
+    public static final byte INPUT_JSON = 0;
+    public static final byte INPUT_BINARY = 1;
+
+    public static final byte OUTPUT_JSON = 0;
+    public static final byte OUTPUT_COMPACT = 1;
+    public static final byte OUTPUT_BINARY = 2;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1; // the payload is an error document
+
+    private JobProtocol() {}
+
+    static void writeRequest(DataOutputStream out, byte command, byte inputFormat, byte outputFormat, byte[] payload)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(command);
+        out.writeByte(inputFormat);
+        out.writeByte(outputFormat);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    static void writeResponse(DataOutputStream out, byte status, byte[] payload) throws IOException {
+        out.writeByte(status);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    static byte[] readPayload(DataInputStream in) throws IOException {
+        return readPayload(in, readPayloadLength(in));
+    }
+
+    /**
+     * Reads the length field of a payload; the caller then reads or skips that many bytes.
+     */
+    static int readPayloadLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid payload length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Reads a payload of the given length. The buffer grows as the bytes arrive, so a length
+     * the peer never sends is not allocated up front.
+     */
+    static byte[] readPayload(DataInputStream in, int length) throws IOException {
+        byte[] payload = in.readNBytes(length);
+        if (payload.length != length) {
+            throw new EOFException("Payload ended after " + payload.length + " of " + length + " bytes");
+        }
+        return payload;
+    }
+}
@@ -4,39 +4,184 @@ import parser.*;
 import memory.*;
 import scheduling.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiFunction;
 
 public class LinearAlgebraEngine {
 
-    private SharedMatrix leftMatrix = new SharedMatrix();
-    private SharedMatrix rightMatrix = new SharedMatrix();
+    private SharedMatrix leftMatrix;
+    private SharedMatrix rightMatrix;
     private TiredExecutor executor;
+    private final int numThreads;
+    private final StorageMode storageMode;
+    private final Precision precision;
+    private volatile int lastRewriteCount = 0;
+    private volatile int lastMergeCount = 0;
+    private volatile int lastFusionCount = 0;
+    private volatile ExecutionTracer tracer = null;
+    private volatile ResultCache resultCache = null;
 
     public LinearAlgebraEngine(int numThreads) {
-        executor = new TiredExecutor(numThreads);
+        this(numThreads, StorageMode.VECTORS);
+    }
+
+    public LinearAlgebraEngine(int numThreads, StorageMode storageMode) {
+        this(numThreads, storageMode, SchedulingMode.HANDOFF);
+    }
+
+    public LinearAlgebraEngine(int numThreads, StorageMode storageMode, SchedulingMode schedulingMode) {
+        this(numThreads, storageMode, schedulingMode, Precision.DOUBLE);
+    }
+
+    /**
+     * With Precision.FLOAT, every dense operand is stored and computed in float (see Precision
+     * for the error bound); sparse, diagonal and out-of-core operations still run in double.
+     */
+    public LinearAlgebraEngine(int numThreads, StorageMode storageMode, SchedulingMode schedulingMode, Precision precision) {
+        executor = new TiredExecutor(numThreads, schedulingMode);
+        this.numThreads = numThreads;
+        this.storageMode = storageMode;
+        this.precision = precision;
+        leftMatrix = new SharedMatrix(storageMode, precision);
+        rightMatrix = new SharedMatrix(storageMode, precision);
     }
 
     public ComputationNode run(ComputationNode computationRoot) {
         if (computationRoot == null) {
             throw new IllegalArgumentException("Computation root cannot be null");
         }
-        while (computationRoot.getNodeType() != ComputationNodeType.MATRIX){
-            ComputationNode resolvableNode = computationRoot.findResolvable();
-            if(resolvableNode == null) {
+        ResultCache cache = resultCache;
+        // n-ary operators become binary ones, nested by the operand shapes; with a cache,
+        // products are not fused so that each stays a node that can be cached across jobs
+        optimize(computationRoot, cache == null);
+        Map<ComputationNode, ResultCache.Key> keys = null;
+        if (cache != null) {
+            keys = ResultCache.keys(computationRoot);
+            cache.resolveCached(computationRoot, keys);
+        }
+        execute(computationRoot, this::prepare, cache, keys);
+        return computationRoot;
+    }
+
+    /**
+     * Evaluates the tree without holding any matrix on the heap. Operands are MappedMatrix
+     * files (literal matrices are spilled to scratch first), every result is written to a new
+     * file in scratch, and scratch files are deleted as soon as their consumer is done.
+     * The root is resolved with a MappedMatrix that stays valid until scratch is closed.
+     */
+    public ComputationNode runOutOfCore(ComputationNode computationRoot, ScratchSpace scratch) {
+        if (computationRoot == null) {
+            throw new IllegalArgumentException("Computation root cannot be null");
+        }
+        // the out-of-core kernels have no fused multiply-add
+        optimize(computationRoot, false);
+        // results live in scratch files here, so the result cache is not consulted
+        execute(computationRoot, (node, plan) -> prepareOutOfCore(node, plan, scratch), null, null);
+        return computationRoot;
+    }
+
+    private void optimize(ComputationNode computationRoot, boolean fuse) {
+        long start = System.nanoTime();
+        NestingOptimizer.optimize(computationRoot);
+        lastRewriteCount = TreeRewriter.rewrite(computationRoot);
+        // after the passes above, since they expect a tree
+        lastMergeCount = CommonSubexpressions.merge(computationRoot);
+        // after merging, so that products with several consumers are left alone
+        lastFusionCount = fuse ? MultiplyAddFusion.fuse(computationRoot) : 0;
+        ExecutionTracer activeTracer = tracer;
+        if (activeTracer != null) {
+            activeTracer.phase("optimize", start, System.nanoTime());
+        }
+    }
+
+    /**
+     * Evaluates every operator node of the tree. With a cache, every node is looked up as it
+     * becomes ready, and every computed result is offered to the cache.
+     */
+    private void execute(ComputationNode computationRoot, BiFunction<ComputationNode, ExecutionPlan, NodeEvaluation> prepare,
+                         ResultCache cache, Map<ComputationNode, ResultCache.Key> keys) {
+        ExecutionTracer activeTracer = tracer;
+        BlockingQueue<NodeEvaluation> finished = new LinkedBlockingQueue<>();
+        ExecutionPlan plan = new ExecutionPlan(computationRoot);
+        int inFlight = 0;
+        while (!plan.isComplete()){
+            // start every node whose operands are ready, not only the first one
+            for (ComputationNode node = plan.pollReady(); node != null; node = plan.pollReady()) {
+                if (cache != null) {
+                    // an equal subexpression may have finished earlier in this run
+                    double[][] cached = cache.lookup(keys.get(node));
+                    if (cached != null) {
+                        node.resolve(cached);
+                        plan.markResolved(node);
+                        continue;
+                    }
+                }
+                ExecutionTracer.NodeTrace trace = (activeTracer == null) ? null : activeTracer.beginNode(node);
+                NodeEvaluation evaluation = prepare.apply(node, plan);
+                if (trace != null) {
+                    trace.loaded();
+                    evaluation.setTrace(trace);
+                }
+                executor.submitAll(evaluation.wrapTasks(finished));
+                inFlight++;
+            }
+            if (plan.isComplete()) {
+                break; // the remaining nodes were all served from the cache
+            }
+            if(inFlight == 0) {
                 throw new IllegalStateException("No resolvable node found, but computation is not complete");
             }
-            loadAndCompute(resolvableNode);
+            NodeEvaluation done = awaitNext(finished);
+            inFlight--;
+            done.complete();
+            if (cache != null) {
+                offer(cache, keys.get(done.getNode()), done.getNode());
+            }
+            plan.markResolved(done.getNode());
+        }
+    }
+
+    /**
+     * Stores a copy of a computed result, since the result itself becomes its parent's buffer.
+     * Sparse and diagonal results are not cached.
+     */
+    private void offer(ResultCache cache, ResultCache.Key key, ComputationNode resolved) {
+        SharedMatrix result = resolved.getSharedMatrix();
+        if (result != null) {
+            boolean admitted = cache.admits(result.getRowCount(), result.getColumnCount());
+            cache.store(key, admitted ? result.readRowMajor() : null);
+        }
+        else if (resolved.getSparseMatrix() == null && resolved.getDiagonalMatrix() == null) {
+            double[][] matrix = resolved.getMatrix();
+            boolean admitted = cache.admits(matrix.length, (matrix.length == 0) ? 0 : matrix[0].length);
+            cache.store(key, admitted ? copyRows(matrix) : null);
+        }
+        else {
+            cache.store(key, null);
         }
-        return computationRoot;
     }
 
     public void loadAndCompute(ComputationNode node) {
         if(node == null) {
             return;
         }
-        List<Runnable> tasks;
+        BlockingQueue<NodeEvaluation> finished = new LinkedBlockingQueue<>();
+        NodeEvaluation evaluation = prepare(node, null);
+        executor.submitAll(evaluation.wrapTasks(finished));
+        awaitNext(finished).complete();
+    }
+
+    /**
+     * Checks that an operator node has the right number of children and that they are all matrices.
+     */
+    private void validate(ComputationNode node) {
         switch (node.getNodeType()) {
             case ADD:
                 if(node.getChildren().size() != 2) {
@@ -46,10 +191,15 @@ public class LinearAlgebraEngine {
                    node.getChildren().get(1).getNodeType() != ComputationNodeType.MATRIX) {
                     throw new IllegalArgumentException("ADD node children must be of type MATRIX");
                 }
-                leftMatrix.loadRowMajor(node.getChildren().get(0).getMatrix());
-                rightMatrix.loadRowMajor(node.getChildren().get(1).getMatrix());
-                tasks = createAddTasks();
-                executeAndWait(tasks);
+                break;
+            case SUBTRACT:
+                if(node.getChildren().size() != 2) {
+                    throw new IllegalArgumentException("SUBTRACT node must have exactly 2 children");
+                }
+                if(node.getChildren().get(0).getNodeType() != ComputationNodeType.MATRIX ||
+                   node.getChildren().get(1).getNodeType() != ComputationNodeType.MATRIX) {
+                    throw new IllegalArgumentException("SUBTRACT node children must be of type MATRIX");
+                }
                 break;
             case MULTIPLY:
                 if(node.getChildren().size() != 2) {
@@ -59,12 +209,17 @@ public class LinearAlgebraEngine {
                    node.getChildren().get(1).getNodeType() != ComputationNodeType.MATRIX) {
                     throw new IllegalArgumentException("MULTIPLY node children must be of type MATRIX");
                 }
-                leftMatrix.loadRowMajor(node.getChildren().get(0).getMatrix());
-                rightMatrix.loadRowMajor(node.getChildren().get(1).getMatrix());
-                tasks = createMultiplyTasks();
-                executeAndWait(tasks);
                 break;
-
+            case MULTIPLY_ADD:
+                if(node.getChildren().size() != 3) {
+                    throw new IllegalArgumentException("MULTIPLY_ADD node must have exactly 3 children");
+                }
+                for (ComputationNode child : node.getChildren()) {
+                    if(child.getNodeType() != ComputationNodeType.MATRIX) {
+                        throw new IllegalArgumentException("MULTIPLY_ADD node children must be of type MATRIX");
+                    }
+                }
+                break;
             case NEGATE:
                 if(node.getChildren().size() != 1) {
                     throw new IllegalArgumentException("NEGATE node must have exactly 1 child");
@@ -72,9 +227,6 @@ public class LinearAlgebraEngine {
                 if(node.getChildren().get(0).getNodeType() != ComputationNodeType.MATRIX) {
                     throw new IllegalArgumentException("NEGATE node child must be of type MATRIX");
                 }
-                leftMatrix.loadRowMajor(node.getChildren().get(0).getMatrix());
-                tasks = createNegateTasks();
-                executeAndWait(tasks);
                 break;
             case TRANSPOSE:
                 if(node.getChildren().size() != 1) {
@@ -83,49 +235,506 @@ public class LinearAlgebraEngine {
                 if(node.getChildren().get(0).getNodeType() != ComputationNodeType.MATRIX) {
                     throw new IllegalArgumentException("TRANSPOSE node child must be of type MATRIX");
                 }
-                leftMatrix.loadRowMajor(node.getChildren().get(0).getMatrix());
-                tasks = createTransposeTasks();
-                executeAndWait(tasks);
-
                 break;
             default:
                 throw new IllegalArgumentException("Computation root cannot be a matrix");
         }
-        node.resolve(leftMatrix.readRowMajor());
+    }
 
+    /**
+     * Validates an operator node whose children are all matrices, loads its operands into
+     * buffers of its own and creates the tasks that compute it.
+     * plan tracks which operands are shared with other consumers; null means none are.
+     */
+    private NodeEvaluation prepare(ComputationNode node, ExecutionPlan plan) {
+        validate(node);
+        if (node.getNodeType() == ComputationNodeType.MULTIPLY_ADD) {
+            // MultiplyAddFusion only fuses dense operands; any other operand is expanded here
+            SharedMatrix a = operand(node.getChildren().get(0), plan);
+            SharedMatrix b = operand(node.getChildren().get(1), plan);
+            SharedMatrix c = operand(node.getChildren().get(2), plan);
+            return new NodeEvaluation(node, c, createMultiplyAddTasks(a, b, c));
+        }
+        // a transpose only flips the orientation, so it takes any diagonal or sparse operand
+        boolean transpose = node.getNodeType() == ComputationNodeType.TRANSPOSE;
+        for (ComputationNode child : node.getChildren()) {
+            if ((transpose) ? child.getDiagonalMatrix() != null : diagonalOperand(child) != null) {
+                return prepareDiagonal(node, plan);
+            }
+        }
+        for (ComputationNode child : node.getChildren()) {
+            if ((transpose) ? child.getSparseMatrix() != null : sparseOperand(child) != null) {
+                ComputationNode leftChild = node.getChildren().get(0);
+                ComputationNode rightChild = (node.getChildren().size() > 1) ? node.getChildren().get(1) : null;
+                return prepareSparse(node, plan, (transpose) ? leftChild.getSparseMatrix() : sparseOperand(leftChild),
+                        (rightChild != null) ? sparseOperand(rightChild) : null);
+            }
+        }
+        SharedMatrix left = operand(node.getChildren().get(0), plan);
+        SharedMatrix right;
+        List<Runnable> tasks;
+        switch (node.getNodeType()) {
+            case ADD:
+                right = operand(node.getChildren().get(1), plan);
+                tasks = createAddTasks(left, right);
+                break;
+            case SUBTRACT:
+                right = operand(node.getChildren().get(1), plan);
+                tasks = createSubtractTasks(left, right);
+                break;
+            case MULTIPLY:
+                right = operand(node.getChildren().get(1), plan);
+                tasks = createMultiplyTasks(left, right);
+                break;
+            case NEGATE:
+                tasks = createNegateTasks(left);
+                break;
+            default:
+                // a transpose is only a change of orientation, there is nothing to compute,
+                // and a symmetric matrix does not even need that
+                if (!node.getChildren().get(0).isSymmetric()) {
+                    left.transpose();
+                }
+                tasks = new ArrayList<>();
+                break;
+        }
+        return new NodeEvaluation(node, left, tasks);
+    }
+
+    /**
+     * The sparse form of child, if it has one the sparse kernels give the same bits on as the
+     * dense ones, that is one with finite values; null sends child through the dense path.
+     */
+    private static SparseMatrix sparseOperand(ComputationNode child) {
+        SparseMatrix sparse = child.getSparseMatrix();
+        return (sparse != null && sparse.isFinite()) ? sparse : null;
+    }
+
+    /**
+     * Counterpart of prepare for nodes with at least one sparse operand. Sparse operands are
+     * never written to, so a shared one needs no copy. Operations on sparse operands only give
+     * a sparse result, unless fill-in makes it denser than SparseMatrix.DENSE_DENSITY; as soon
+     * as a dense operand is involved the result is dense, and so is a negation, whose implicit
+     * zeros become -0.0.
+     * left and right are the sparse forms of the operands, null for a dense operand.
+     */
+    private NodeEvaluation prepareSparse(ComputationNode node, ExecutionPlan plan, SparseMatrix left, SparseMatrix right) {
+        ComputationNode leftChild = node.getChildren().get(0);
+        ComputationNode rightChild = (node.getChildren().size() > 1) ? node.getChildren().get(1) : null;
+        int[] leftShape = shapeOf(leftChild);
+        int[] rightShape = (rightChild != null) ? shapeOf(rightChild) : null;
+        List<Runnable> tasks = new ArrayList<>();
+        switch (node.getNodeType()) {
+            case NEGATE: {
+                SparseMatrix csr = left.withOrientation(VectorOrientation.ROW_MAJOR);
+                double[][] out = new double[leftShape[0]][leftShape[1]];
+                release(plan, leftChild);
+                for (int[] block : rowBlocks(out.length)) {
+                    tasks.add(() -> {
+                        for (int i = block[0]; i < block[1]; i++) {
+                            csr.readRow(i, out[i]);
+                            MatrixKernels.negateInPlace(out[i], 0, out[i].length);
+                        }
+                    });
+                }
+                return new NodeEvaluation(node, tasks, n -> n.resolve(out));
+            }
+            case TRANSPOSE:
+                release(plan, leftChild);
+                return new NodeEvaluation(node, tasks, n -> n.resolve(left.transpose()));
+            case ADD:
+            case SUBTRACT: {
+                if (leftShape[0] != rightShape[0] || leftShape[1] != rightShape[1]) {
+                    throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
+                }
+                boolean subtract = node.getNodeType() == ComputationNodeType.SUBTRACT;
+                int rows = leftShape[0];
+                if (left != null && right != null) {
+                    release(plan, leftChild);
+                    release(plan, rightChild);
+                    SparseMatrix l = left.withOrientation(VectorOrientation.ROW_MAJOR);
+                    SparseMatrix r = right.withOrientation(VectorOrientation.ROW_MAJOR);
+                    return sparseRowBlocks(node, rows, leftShape[1], (from, to) -> SparseMatrix.sumRows(l, r, subtract, from, to));
+                }
+                // the dense operand becomes the result, the sparse one is scattered into it
+                SparseMatrix sparse = ((left != null) ? left : right).withOrientation(VectorOrientation.ROW_MAJOR);
+                double[][] out = denseOperand((left != null) ? rightChild : leftChild, plan, true);
+                release(plan, (left != null) ? leftChild : rightChild);
+                boolean subtractDense = subtract && left != null;
+                double scale = (subtract && right != null) ? -1.0 : 1.0;
+                for (int[] block : rowBlocks(rows)) {
+                    tasks.add(() -> {
+                        if (subtractDense) {
+                            sparse.subtractFromRows(out, block[0], block[1]);
+                        }
+                        else {
+                            sparse.scatterRows(out, block[0], block[1], scale);
+                        }
+                    });
+                }
+                return new NodeEvaluation(node, tasks, n -> n.resolve(out));
+            }
+            default: {
+                if (leftShape[1] != rightShape[0]) {
+                    throw new IllegalArgumentException("error: Illegal operation: dimensions mismatch");
+                }
+                int rows = leftShape[0];
+                int cols = rightShape[1];
+                if (left != null && right != null) {
+                    release(plan, leftChild);
+                    release(plan, rightChild);
+                    SparseMatrix l = left.withOrientation(VectorOrientation.ROW_MAJOR);
+                    SparseMatrix r = right.withOrientation(VectorOrientation.ROW_MAJOR);
+                    return sparseRowBlocks(node, rows, cols, (from, to) -> SparseMatrix.multiplyRows(l, r, from, to));
+                }
+                double[][] out = new double[rows][cols];
+                if (left != null) {
+                    SparseMatrix l = left.withOrientation(VectorOrientation.ROW_MAJOR);
+                    double[][] dense = denseOperand(rightChild, plan, false);
+                    int[] nonFinite = SparseMatrix.nonFiniteRows(dense);
+                    release(plan, leftChild);
+                    for (int[] block : rowBlocks(rows)) {
+                        tasks.add(() -> { l.multiplyDenseRows(dense, nonFinite, block[0], block[1], out); });
+                    }
+                }
+                else {
+                    SparseMatrix r = right.withOrientation(VectorOrientation.ROW_MAJOR);
+                    double[][] dense = denseOperand(leftChild, plan, false);
+                    release(plan, rightChild);
+                    for (int[] block : rowBlocks(rows)) {
+                        tasks.add(() -> { r.multiplyFromDenseRows(dense, block[0], block[1], out); });
+                    }
+                }
+                return new NodeEvaluation(node, tasks, n -> n.resolve(out));
+            }
+        }
     }
 
-    private void executeAndWait(List<Runnable> tasks) {
-        CountDownLatch latch = new CountDownLatch(tasks.size());
-        
-        List<Runnable> wrappedTasks = new ArrayList<>();
-        for (Runnable task : tasks) {
-            wrappedTasks.add(() -> {
-                try {
-                    task.run();
-                } finally {
-                    latch.countDown();
+    /**
+     * The diagonal form of child, if it has one with finite values; null sends child through
+     * the sparse or dense path, like sparseOperand.
+     */
+    private static DiagonalMatrix diagonalOperand(ComputationNode child) {
+        DiagonalMatrix diagonal = child.getDiagonalMatrix();
+        return (diagonal != null && diagonal.isFinite()) ? diagonal : null;
+    }
+
+    /**
+     * Counterpart of prepare for nodes with a diagonal operand. Diagonal operands are never
+     * written to; the result is diagonal when every operand is, and otherwise the dense operand
+     * is scaled or added to in place, in O(n^2) instead of a full product. A negation is dense,
+     * since the zeros off the diagonal become -0.0, and a dense operand that is not finite is
+     * multiplied out in full, since 0 * Inf off the diagonal is NaN. A diagonal operand that
+     * meets a sparse one takes the sparse path as a CSR copy; the operand node itself stays
+     * diagonal for its other consumers.
+     */
+    private NodeEvaluation prepareDiagonal(ComputationNode node, ExecutionPlan plan) {
+        ComputationNode leftChild = node.getChildren().get(0);
+        ComputationNode rightChild = (node.getChildren().size() > 1) ? node.getChildren().get(1) : null;
+        List<Runnable> tasks = new ArrayList<>();
+        if (node.getNodeType() == ComputationNodeType.NEGATE) {
+            DiagonalMatrix negated = leftChild.getDiagonalMatrix();
+            double[][] out = new double[negated.size()][negated.size()];
+            release(plan, leftChild);
+            for (int[] block : rowBlocks(out.length)) {
+                tasks.add(() -> { negated.negateRows(out, block[0], block[1]); });
+            }
+            return new NodeEvaluation(node, tasks, n -> n.resolve(out));
+        }
+        if (node.getNodeType() == ComputationNodeType.TRANSPOSE) {
+            // a diagonal matrix is its own transpose
+            DiagonalMatrix transposed = leftChild.getDiagonalMatrix();
+            release(plan, leftChild);
+            return new NodeEvaluation(node, tasks, n -> n.resolve(transposed));
+        }
+        DiagonalMatrix left = diagonalOperand(leftChild);
+        DiagonalMatrix right = diagonalOperand(rightChild);
+        ComputationNode diagonalChild = (left != null) ? leftChild : rightChild;
+        ComputationNode otherChild = (left != null) ? rightChild : leftChild;
+        DiagonalMatrix diagonal = (left != null) ? left : right;
+        if (left == null || right == null) {
+            SparseMatrix sparse = sparseOperand(otherChild);
+            if (sparse != null) {
+                SparseMatrix csr = diagonal.toSparse();
+                return (left != null)
+                        ? prepareSparse(node, plan, csr, sparse)
+                        : prepareSparse(node, plan, sparse, csr);
+            }
+        }
+        int[] leftShape = shapeOf(leftChild);
+        int[] rightShape = shapeOf(rightChild);
+        if (node.getNodeType() == ComputationNodeType.MULTIPLY) {
+            if (leftShape[1] != rightShape[0]) {
+                throw new IllegalArgumentException("error: Illegal operation: dimensions mismatch");
+            }
+            if (left != null && right != null) {
+                release(plan, leftChild);
+                release(plan, rightChild);
+                return new NodeEvaluation(node, tasks, n -> n.resolve(left.times(right)));
+            }
+            double[][] other = denseOperand(otherChild, plan, true);
+            release(plan, diagonalChild);
+            if (!DiagonalMatrix.isFinite(other)) {
+                double[][] l = (left != null) ? diagonal.toDense() : other;
+                double[][] r = (left != null) ? other : diagonal.toDense();
+                double[][] product = new double[l.length][r[0].length];
+                for (int[] block : rowBlocks(product.length)) {
+                    tasks.add(() -> {
+                        MatrixKernels.gemmTile(l, r, block[0], block[1], 0, r[0].length,
+                                Arrays.copyOfRange(product, block[0], block[1]));
+                    });
+                }
+                return new NodeEvaluation(node, tasks, n -> n.resolve(product));
+            }
+            // D * A scales the rows of A, A * D its columns
+            boolean scaleRows = left != null;
+            for (int[] block : rowBlocks(other.length)) {
+                tasks.add(() -> {
+                    if (scaleRows) {
+                        diagonal.scaleRows(other, block[0], block[1]);
+                    }
+                    else {
+                        diagonal.scaleColumns(other, block[0], block[1]);
+                    }
+                });
+            }
+            return new NodeEvaluation(node, tasks, n -> n.resolve(other));
+        }
+        if (leftShape[0] != rightShape[0] || leftShape[1] != rightShape[1]) {
+            throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
+        }
+        boolean subtract = node.getNodeType() == ComputationNodeType.SUBTRACT;
+        if (left != null && right != null) {
+            release(plan, leftChild);
+            release(plan, rightChild);
+            return new NodeEvaluation(node, tasks, n -> n.resolve(left.plus(right, subtract)));
+        }
+        // the dense operand becomes the result
+        double[][] out = denseOperand(otherChild, plan, true);
+        release(plan, diagonalChild);
+        boolean subtractDense = subtract && left != null;
+        double scale = (subtract && right != null) ? -1.0 : 1.0;
+        for (int[] block : rowBlocks(out.length)) {
+            tasks.add(() -> {
+                if (subtractDense) {
+                    diagonal.subtractFromRows(out, block[0], block[1]);
+                }
+                else {
+                    diagonal.addToDiagonal(out, block[0], block[1], scale);
                 }
             });
         }
-        
-        executor.submitAll(wrappedTasks);
-        
+        return new NodeEvaluation(node, tasks, n -> n.resolve(out));
+    }
+
+    /**
+     * Computes a sparse result as independent row blocks and assembles them once all are done.
+     */
+    private NodeEvaluation sparseRowBlocks(ComputationNode node, int rows, int cols,
+                                           BiFunction<Integer, Integer, SparseMatrix.RowBlock> kernel) {
+        List<int[]> ranges = rowBlocks(rows);
+        SparseMatrix.RowBlock[] blocks = new SparseMatrix.RowBlock[ranges.size()];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int b = 0; b < ranges.size(); b++) {
+            final int index = b;
+            int[] range = ranges.get(b);
+            tasks.add(() -> { blocks[index] = kernel.apply(range[0], range[1]); });
+        }
+        return new NodeEvaluation(node, tasks, n -> {
+            SparseMatrix result = SparseMatrix.assemble(rows, cols, Arrays.asList(blocks));
+            if (result.prefersDense()) {
+                n.resolve(result.toDense());
+            }
+            else {
+                n.resolve(result);
+            }
+        });
+    }
+
+    /**
+     * Splits rows into about four blocks per worker.
+     */
+    private List<int[]> rowBlocks(int rows) {
+        int size = Math.max(1, (rows + 4 * numThreads - 1) / (4 * numThreads));
+        List<int[]> blocks = new ArrayList<>();
+        for (int from = 0; from < rows; from += size) {
+            blocks.add(new int[]{from, Math.min(from + size, rows)});
+        }
+        return blocks;
+    }
+
+    private static int[] shapeOf(ComputationNode child) {
+        return new int[]{child.getRowCount(), child.getColumnCount()};
+    }
+
+    private static void release(ExecutionPlan plan, ComputationNode child) {
+        if (plan != null) {
+            plan.releaseOperand(child);
+        }
+    }
+
+    /**
+     * Returns a dense operand as row-major arrays. A writable operand is the caller's to
+     * overwrite, so it is copied unless this is its last consumer.
+     */
+    private double[][] denseOperand(ComputationNode child, ExecutionPlan plan, boolean writable) {
+        boolean last = (plan == null) || plan.releaseOperand(child);
+        SharedMatrix shared = child.getSharedMatrix();
+        if (shared != null) {
+            return shared.readRowMajor();
+        }
+        return (writable && !last) ? copyRows(child.getMatrix()) : child.getMatrix();
+    }
+
+    /**
+     * Out-of-core counterpart of prepare: allocates the result in scratch and splits the
+     * operation into chunk tasks that stream over the mapped operands.
+     */
+    private NodeEvaluation prepareOutOfCore(ComputationNode node, ExecutionPlan plan, ScratchSpace scratch) {
+        validate(node);
+        ComputationNode leftChild = node.getChildren().get(0);
+        ComputationNode rightChild = (node.getChildren().size() > 1) ? node.getChildren().get(1) : null;
+        MappedMatrix left = mappedOperand(leftChild, scratch);
+        MappedMatrix right = (rightChild != null) ? mappedOperand(rightChild, scratch) : null;
+        int rows = left.getRowCount();
+        int cols = left.getColumnCount();
+        List<Runnable> tasks = new ArrayList<>();
+        MappedMatrix result;
         try {
-            latch.await();
+            switch (node.getNodeType()) {
+                case ADD:
+                case SUBTRACT:
+                    if (rows != right.getRowCount() || cols != right.getColumnCount()) {
+                        throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
+                    }
+                    result = scratch.allocate(rows, cols);
+                    boolean subtract = node.getNodeType() == ComputationNodeType.SUBTRACT;
+                    for (int r = 0; r < rows; r += MappedMatrix.rowsPerChunk(cols)) {
+                        final int rowFrom = r;
+                        final int rowTo = Math.min(r + MappedMatrix.rowsPerChunk(cols), rows);
+                        tasks.add(() -> { result.storeSum(left, right, subtract, rowFrom, rowTo); });
+                    }
+                    break;
+                case NEGATE:
+                    result = scratch.allocate(rows, cols);
+                    for (int r = 0; r < rows; r += MappedMatrix.rowsPerChunk(cols)) {
+                        final int rowFrom = r;
+                        final int rowTo = Math.min(r + MappedMatrix.rowsPerChunk(cols), rows);
+                        tasks.add(() -> { result.storeNegation(left, rowFrom, rowTo); });
+                    }
+                    break;
+                case TRANSPOSE:
+                    result = scratch.allocate(cols, rows);
+                    for (int r = 0; r < rows; r += MappedMatrix.TILE) {
+                        for (int c = 0; c < cols; c += MappedMatrix.TILE) {
+                            final int rowFrom = r;
+                            final int rowTo = Math.min(r + MappedMatrix.TILE, rows);
+                            final int colFrom = c;
+                            final int colTo = Math.min(c + MappedMatrix.TILE, cols);
+                            tasks.add(() -> { result.storeTransposeTile(left, rowFrom, rowTo, colFrom, colTo); });
+                        }
+                    }
+                    break;
+                default:
+                    if (cols != right.getRowCount()) {
+                        throw new IllegalArgumentException("error: Illegal operation: dimensions mismatch");
+                    }
+                    int numCols = right.getColumnCount();
+                    result = scratch.allocate(rows, numCols);
+                    for (int r = 0; r < rows; r += MappedMatrix.TILE) {
+                        for (int c = 0; c < numCols; c += MappedMatrix.TILE) {
+                            final int rowFrom = r;
+                            final int rowTo = Math.min(r + MappedMatrix.TILE, rows);
+                            final int colFrom = c;
+                            final int colTo = Math.min(c + MappedMatrix.TILE, numCols);
+                            tasks.add(() -> { result.storeProductTile(left, right, rowFrom, rowTo, colFrom, colTo); });
+                        }
+                    }
+                    break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to allocate scratch space: " + e.getMessage(), e);
+        }
+        // an operand is dead once its last consumer is computed; spilled literals are private copies
+        return new NodeEvaluation(node, result, tasks, () -> {
+            releaseMapped(leftChild, left, plan, scratch);
+            if (right != null) {
+                releaseMapped(rightChild, right, plan, scratch);
+            }
+        });
+    }
+
+    private void releaseMapped(ComputationNode child, MappedMatrix operand, ExecutionPlan plan, ScratchSpace scratch) {
+        boolean last = plan.releaseOperand(child);
+        if (last || operand != child.getMappedMatrix()) {
+            scratch.release(operand);
+        }
+    }
+
+    private MappedMatrix mappedOperand(ComputationNode child, ScratchSpace scratch) {
+        MappedMatrix mapped = child.getMappedMatrix();
+        if (mapped != null) {
+            return mapped;
+        }
+        try {
+            return scratch.copyOf(child.getMatrix());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill a matrix to scratch space: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the operand held by a resolved child. Results of earlier operations are handed
+     * over as they are, and become the buffer this node computes in; literal matrices are
+     * loaded into a new SharedMatrix. A child that other consumers still need is copied instead.
+     */
+    private SharedMatrix operand(ComputationNode child, ExecutionPlan plan) {
+        boolean last = (plan == null) || plan.releaseOperand(child);
+        SharedMatrix result = child.getSharedMatrix();
+        if (result != null && last) {
+            return result;
+        }
+        SharedMatrix loaded = new SharedMatrix(storageMode, precision);
+        if (result != null) {
+            loaded.loadRowMajor(result.readRowMajor());
+        }
+        else {
+            // loadRowMajor may keep the rows it is given, which this node then writes to;
+            // a FLOAT load always converts them into arrays of its own
+            boolean keeps = precision == Precision.DOUBLE && !last;
+            loaded.loadRowMajor(keeps ? copyRows(child.getMatrix()) : child.getMatrix());
+        }
+        return loaded;
+    }
+
+    private static double[][] copyRows(double[][] matrix) {
+        double[][] copy = new double[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            copy[i] = matrix[i].clone();
+        }
+        return copy;
+    }
+
+    private NodeEvaluation awaitNext(BlockingQueue<NodeEvaluation> finished) {
+        try {
+            return finished.take();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Interrupted while waiting for tasks", e);
         }
     }
+
     public List<Runnable> createAddTasks() {
         // TODO: return tasks that perform row-wise addition
+        return createAddTasks(leftMatrix, rightMatrix);
+    }
+
+    private List<Runnable> createAddTasks(SharedMatrix leftMatrix, SharedMatrix rightMatrix) {
         List<Runnable> tasks = new ArrayList<>();
-        if(leftMatrix.getOrientation()!= VectorOrientation.ROW_MAJOR){
-            leftMatrix.loadRowMajor(leftMatrix.readRowMajor());
-        }
-        if(rightMatrix.getOrientation()!= VectorOrientation.ROW_MAJOR){
-            rightMatrix.loadRowMajor(rightMatrix.readRowMajor());
+        // elementwise, so any layout works as long as both operands share it
+        alignOrientation(rightMatrix, leftMatrix.getOrientation());
+        if(leftMatrix.length() != rightMatrix.length() || leftMatrix.get(0).length() != rightMatrix.get(0).length()) {
+            throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
         }
         for (int i = 0; i < leftMatrix.length(); i++) {
             final int rowIndex = i;
@@ -134,25 +743,143 @@ public class LinearAlgebraEngine {
         return tasks;
     }
 
+    public List<Runnable> createSubtractTasks() {
+        return createSubtractTasks(leftMatrix, rightMatrix);
+    }
+
+    private List<Runnable> createSubtractTasks(SharedMatrix leftMatrix, SharedMatrix rightMatrix) {
+        List<Runnable> tasks = new ArrayList<>();
+        // elementwise, so any layout works as long as both operands share it
+        alignOrientation(rightMatrix, leftMatrix.getOrientation());
+        if(leftMatrix.length() != rightMatrix.length() || leftMatrix.get(0).length() != rightMatrix.get(0).length()) {
+            throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
+        }
+        for (int i = 0; i < leftMatrix.length(); i++) {
+            final int rowIndex = i;
+            tasks.add (() -> { leftMatrix.get(rowIndex).subtract(rightMatrix.get(rowIndex));} );
+        }
+        return tasks;
+    }
+
     public List<Runnable> createMultiplyTasks() {
         // TODO: return tasks that perform row × matrix multiplication
+        return createMultiplyTasks(leftMatrix, rightMatrix);
+    }
+
+    private List<Runnable> createMultiplyTasks(SharedMatrix leftMatrix, SharedMatrix rightMatrix) {
+        if (leftMatrix.getPrecision() == Precision.FLOAT) {
+            return createFloatMultiplyTasks(leftMatrix, rightMatrix);
+        }
         List<Runnable> tasks = new ArrayList<>();
-        if(leftMatrix.getOrientation()!= VectorOrientation.ROW_MAJOR){
-            leftMatrix.loadRowMajor(leftMatrix.readRowMajor());
+        double[][] left = leftMatrix.readRowMajor();
+        // a transposed right operand is read through its columns, without materializing it
+        VectorOrientation rightOrientation = rightMatrix.getOrientation();
+        double[][] right = rightMatrix.readVectors();
+        int rightRows = (rightOrientation == VectorOrientation.ROW_MAJOR) ? right.length : right[0].length;
+        if (left[0].length != rightRows) {
+            throw new IllegalArgumentException("error: Illegal operation: dimensions mismatch");
         }
-        for(int i = 0; i < leftMatrix.length(); i++) {
-            final int rowIndex = i;
-            tasks.add (() -> { leftMatrix.get(rowIndex).vecMatMul(rightMatrix);});
+        int numRows = left.length;
+        int numCols = (rightOrientation == VectorOrientation.ROW_MAJOR) ? right[0].length : right.length;
+        // the product overwrites leftMatrix one output tile at a time
+        leftMatrix.allocateRowMajor(numRows, numCols);
+
+        // shrink row tiles on small outputs so every worker still gets a couple of tiles
+        int tileRows = productTileRows(numRows);
+        for (int r = 0; r < numRows; r += tileRows) {
+            for (int c = 0; c < numCols; c += MatrixKernels.TILE_COLS) {
+                final int rowFrom = r;
+                final int rowTo = Math.min(r + tileRows, numRows);
+                final int colFrom = c;
+                final int colTo = Math.min(c + MatrixKernels.TILE_COLS, numCols);
+                tasks.add(() -> { leftMatrix.storeProductTile(left, right, rightOrientation, rowFrom, rowTo, colFrom, colTo); });
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Same as createMultiplyTasks, with both operands read out as float.
+     */
+    private List<Runnable> createFloatMultiplyTasks(SharedMatrix leftMatrix, SharedMatrix rightMatrix) {
+        List<Runnable> tasks = new ArrayList<>();
+        float[][] left = leftMatrix.readRowMajorFloats();
+        VectorOrientation rightOrientation = rightMatrix.getOrientation();
+        float[][] right = rightMatrix.readVectorsFloats();
+        int rightRows = (rightOrientation == VectorOrientation.ROW_MAJOR) ? right.length : right[0].length;
+        if (left[0].length != rightRows) {
+            throw new IllegalArgumentException("error: Illegal operation: dimensions mismatch");
+        }
+        int numRows = left.length;
+        int numCols = (rightOrientation == VectorOrientation.ROW_MAJOR) ? right[0].length : right.length;
+        leftMatrix.allocateRowMajor(numRows, numCols);
+
+        int tileRows = productTileRows(numRows);
+        for (int r = 0; r < numRows; r += tileRows) {
+            for (int c = 0; c < numCols; c += MatrixKernels.TILE_COLS) {
+                final int rowFrom = r;
+                final int rowTo = Math.min(r + tileRows, numRows);
+                final int colFrom = c;
+                final int colTo = Math.min(c + MatrixKernels.TILE_COLS, numCols);
+                tasks.add(() -> { leftMatrix.storeProductTile(left, right, rightOrientation, rowFrom, rowTo, colFrom, colTo); });
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Tasks that add a * b into c, which becomes the result. Every task adds one output tile,
+     * so the product is never stored on its own; the sum is rounded exactly as a separate
+     * MULTIPLY and ADD would round it.
+     */
+    private List<Runnable> createMultiplyAddTasks(SharedMatrix a, SharedMatrix b, SharedMatrix c) {
+        List<Runnable> tasks = new ArrayList<>();
+        boolean single = c.getPrecision() == Precision.FLOAT;
+        double[][] left = single ? null : a.readRowMajor();
+        double[][] right = single ? null : b.readVectors();
+        float[][] leftFloats = single ? a.readRowMajorFloats() : null;
+        float[][] rightFloats = single ? b.readVectorsFloats() : null;
+        VectorOrientation rightOrientation = b.getOrientation();
+        int depth = a.getColumnCount();
+        if (depth != b.getRowCount()) {
+            throw new IllegalArgumentException("error: Illegal operation: dimensions mismatch");
+        }
+        int numRows = a.getRowCount();
+        int numCols = b.getColumnCount();
+        if (c.getRowCount() != numRows || c.getColumnCount() != numCols) {
+            throw new IllegalArgumentException("Error: Illegal operation: dimension mismatch");
+        }
+        alignOrientation(c, VectorOrientation.ROW_MAJOR);
+
+        int tileRows = productTileRows(numRows);
+        for (int r = 0; r < numRows; r += tileRows) {
+            for (int col = 0; col < numCols; col += MatrixKernels.TILE_COLS) {
+                final int rowFrom = r;
+                final int rowTo = Math.min(r + tileRows, numRows);
+                final int colFrom = col;
+                final int colTo = Math.min(col + MatrixKernels.TILE_COLS, numCols);
+                if (single) {
+                    tasks.add(() -> { c.addProductTile(leftFloats, rightFloats, rightOrientation, rowFrom, rowTo, colFrom, colTo); });
+                }
+                else {
+                    tasks.add(() -> { c.addProductTile(left, right, rightOrientation, rowFrom, rowTo, colFrom, colTo); });
+                }
+            }
         }
         return tasks;
     }
 
+    private int productTileRows(int numRows) {
+        return Math.max(1, Math.min(MatrixKernels.TILE_ROWS, (numRows + 2 * numThreads - 1) / (2 * numThreads)));
+    }
+
     public List<Runnable> createNegateTasks() {
         // TODO: return tasks that negate rows
+        return createNegateTasks(leftMatrix);
+    }
+
+    private List<Runnable> createNegateTasks(SharedMatrix leftMatrix) {
         List<Runnable> tasks = new ArrayList<>();
-        if(leftMatrix.getOrientation()!= VectorOrientation.ROW_MAJOR){
-            leftMatrix.loadRowMajor(leftMatrix.readRowMajor());
-        }
         for (int i = 0; i < leftMatrix.length(); i++) {
             final int rowIndex = i;
             tasks.add (() -> { leftMatrix.get(rowIndex).negate();} );
@@ -162,6 +889,10 @@ public class LinearAlgebraEngine {
 
     public List<Runnable> createTransposeTasks() {
         // TODO: return tasks that transpose rows
+        return createTransposeTasks(leftMatrix);
+    }
+
+    private List<Runnable> createTransposeTasks(SharedMatrix leftMatrix) {
         List<Runnable> tasks = new ArrayList<>();
         for (int i = 0; i < leftMatrix.length(); i++) {
             final int rowIndex = i;
@@ -170,9 +901,74 @@ public class LinearAlgebraEngine {
         return tasks;
     }
 
+    /**
+     * Turns tracing on for the following runs, or off with null.
+     */
+    public void setTracer(ExecutionTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public ExecutionTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Reuses results through cache in the following runs, or stops caching with null.
+     * One cache may be shared by several engines of the same precision.
+     * While a cache is set, products are not fused into MULTIPLY_ADD nodes.
+     */
+    public void setResultCache(ResultCache cache) {
+        this.resultCache = cache;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns how many algebraic rewrites fired while preparing the last tree passed to run.
+     */
+    public int getRewriteCount() {
+        return lastRewriteCount;
+    }
+
+    /**
+     * Returns how many duplicate subtrees were merged into shared nodes in the last tree passed to run.
+     */
+    public int getMergeCount() {
+        return lastMergeCount;
+    }
+
+    /**
+     * Returns how many products were fused into the sum that consumes them in the last tree passed to run.
+     */
+    public int getFusionCount() {
+        return lastFusionCount;
+    }
+
+    /**
+     * Re-lays matrix out in the given orientation, copying only if it is not already in it.
+     */
+    private void alignOrientation(SharedMatrix matrix, VectorOrientation orientation) {
+        if (matrix.getOrientation() == orientation) {
+            return;
+        }
+        if (orientation == VectorOrientation.ROW_MAJOR) {
+            matrix.loadRowMajor(matrix.readRowMajor());
+        }
+        else {
+            matrix.loadColumnMajor(matrix.readRowMajor());
+        }
+    }
+
     public String getWorkerReport() {
         // TODO: return summary of worker activity
-        return executor.getWorkerReport();
+        ResultCache cache = resultCache;
+        return (cache == null) ? executor.getWorkerReport() : executor.getWorkerReport() + cache.getReport();
     }
     public void shutdown() throws InterruptedException {
         executor.shutdown();
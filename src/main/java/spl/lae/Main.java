@@ -1,34 +1,135 @@
 package spl.lae;
 import java.io.IOException;
+import java.nio.file.Path;
+
+import memory.Precision;
+import memory.ScratchSpace;
+import memory.StorageMode;
+import scheduling.SchedulingMode;
 
 import parser.*;
 
 public class Main {
+    /**
+     * Usage: Main [--binary] [--compact] [--trace[=file]] [--out-of-core] [--scratch=dir] [--cache=MB] [--precision=float] threads input output
+     * Files ending in .laeb (or every file, with --binary) are read and written in BinaryFormat.
+     * --compact writes JSON output without whitespace, streamed row by row from the result.
+     * --trace emits JFR events for every node and task (record with -XX:StartFlightRecording);
+     * --trace=file.json also writes them as a Chrome trace-event file.
+     * --out-of-core keeps every matrix in memory-mapped files under the scratch directory
+     * (java.io.tmpdir by default); binary inputs are mapped in place instead of being loaded.
+     * --cache reuses the results of repeated subexpressions, keeping up to MB megabytes of them.
+     * --precision=float computes in single precision, within the error bound documented in Precision.
+     */
     public static void main(String[] args) throws IOException {
       OutputWriter writer = new OutputWriter();
       InputParser parser = new InputParser();
       ComputationNode root = null;
 
-      int numberOfThreads = Integer.parseInt(args[0]);
-      String InputPath = args[1];
-      String OutputPath = args[2];
+      boolean binary = false;
+      boolean compact = false;
+      ExecutionTracer tracer = null;
+      String tracePath = null;
+      boolean outOfCore = false;
+      String scratchDir = System.getProperty("java.io.tmpdir");
+      ResultCache cache = null;
+      Precision precision = Precision.DOUBLE;
+      int first = 0;
+      for (; first < args.length && args[first].startsWith("--"); first++) {
+          if (args[first].equals("--binary")) {
+              binary = true;
+          }
+          else if (args[first].equals("--compact")) {
+              compact = true;
+          }
+          else if (args[first].equals("--trace") || args[first].startsWith("--trace=")) {
+              tracer = new ExecutionTracer();
+              if (args[first].startsWith("--trace=")) {
+                  tracePath = args[first].substring("--trace=".length());
+              }
+          }
+          else if (args[first].equals("--out-of-core")) {
+              outOfCore = true;
+          }
+          else if (args[first].startsWith("--scratch=")) {
+              scratchDir = args[first].substring("--scratch=".length());
+          }
+          else if (args[first].startsWith("--cache=")) {
+              cache = new ResultCache(Long.parseLong(args[first].substring("--cache=".length())) << 20);
+          }
+          else if (args[first].startsWith("--precision=")) {
+              precision = Precision.valueOf(args[first].substring("--precision=".length()).toUpperCase());
+          }
+          else {
+              throw new IllegalArgumentException("Unknown option: " + args[first]);
+          }
+      }
+      int numberOfThreads = Integer.parseInt(args[first]);
+      String InputPath = args[first + 1];
+      String OutputPath = args[first + 2];
+      boolean binaryInput = binary || BinaryFormat.isBinaryPath(InputPath);
+      boolean binaryOutput = binary || BinaryFormat.isBinaryPath(OutputPath);
       LinearAlgebraEngine lae = null;
+      ScratchSpace scratch = null;
       try{
-          root = parser.parse(InputPath);
-          lae = new LinearAlgebraEngine(numberOfThreads);
-          ComputationNode resultNode = lae.run(root);
-          double[][] resultMatrix = resultNode.getMatrix();
-          writer.write(resultMatrix, OutputPath);
+          long parseStart = System.nanoTime();
+          if (outOfCore) {
+              scratch = new ScratchSpace(Path.of(scratchDir));
+              root = binaryInput ? BinaryFormat.mapTree(InputPath) : parser.parse(InputPath);
+          }
+          else {
+              root = binaryInput ? BinaryFormat.readTree(InputPath) : parser.parse(InputPath);
+          }
+          if (tracer != null) {
+              tracer.phase("parse", parseStart, System.nanoTime());
+          }
+          lae = new LinearAlgebraEngine(numberOfThreads, StorageMode.VECTORS, SchedulingMode.HANDOFF, precision);
+          lae.setTracer(tracer);
+          lae.setResultCache(cache);
+          ComputationNode resultNode = outOfCore ? lae.runOutOfCore(root, scratch) : lae.run(root);
+          long writeStart = System.nanoTime();
+          if (binaryOutput && resultNode.getMappedMatrix() != null) {
+              // streamed from its file, the result never has to fit on the heap
+              BinaryFormat.writeResult(resultNode.getMappedMatrix(), OutputPath);
+          }
+          else if (binaryOutput) {
+              BinaryFormat.writeResult(resultNode.getMatrix(), OutputPath);
+          }
+          else if (compact) {
+              OutputWriter.writeCompact(resultNode, OutputPath);
+          }
+          else {
+              writer.write(resultNode.getMatrix(), OutputPath);
+          }
+          if (tracer != null) {
+              tracer.phase("write", writeStart, System.nanoTime());
+          }
       } catch (Exception e){
-          writer.write(e.getMessage(), OutputPath);
+          if (binaryOutput) {
+              BinaryFormat.writeError(e.getMessage(), OutputPath);
+          }
+          else if (compact) {
+              OutputWriter.writeCompact(e.getMessage(), OutputPath);
+          }
+          else {
+              writer.write(e.getMessage(), OutputPath);
+          }
       }
       finally {
+          if (scratch != null) {
+            scratch.close();
+          }
+          if (tracePath != null) {
+            tracer.writeChromeTrace(tracePath);
+          }
           try{
-            lae.shutdown();          
+            if (lae != null) {
+              lae.shutdown();
+            }
           } catch (InterruptedException e) {
             e.printStackTrace();
           }
       }
 
     }
-}
\ No newline at end of file
+}
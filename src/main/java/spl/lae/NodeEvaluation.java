@@ -0,0 +1,139 @@
+package spl.lae;
+
+import memory.MappedMatrix;
+import memory.SharedMatrix;
+import parser.ComputationNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * The in-flight evaluation of a single operator node.
+ * Each evaluation owns its operand buffers, so evaluations of independent nodes can share the
+ * executor at the same time. The task that finishes last reports the evaluation on a completion
+ * queue; the node itself is only resolved by the thread driving run, with the buffer the tasks
+ * left the result in.
+ */
+class NodeEvaluation {
+
+    private final ComputationNode node;
+    private final SharedMatrix result; // operand buffer the tasks leave the result in
+    private final MappedMatrix mappedResult; // result file of an out-of-core evaluation
+    private final Runnable cleanup; // runs once the node is resolved
+    private final Consumer<ComputationNode> resolver; // resolves the node itself when there is no single result buffer
+    private final List<Runnable> tasks;
+    private final AtomicInteger remaining;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>(null);
+    private ExecutionTracer.NodeTrace trace = null; // set before the tasks are wrapped when tracing
+
+    NodeEvaluation(ComputationNode node, SharedMatrix result, List<Runnable> tasks) {
+        this.node = node;
+        this.result = result;
+        this.mappedResult = null;
+        this.tasks = tasks;
+        this.remaining = new AtomicInteger(tasks.size());
+        this.cleanup = () -> {};
+        this.resolver = null;
+    }
+
+    NodeEvaluation(ComputationNode node, MappedMatrix result, List<Runnable> tasks, Runnable cleanup) {
+        this.node = node;
+        this.result = null;
+        this.mappedResult = result;
+        this.tasks = tasks;
+        this.remaining = new AtomicInteger(tasks.size());
+        this.cleanup = cleanup;
+        this.resolver = null;
+    }
+
+    /**
+     * For results the tasks build up elsewhere, such as the row blocks of a sparse result;
+     * resolver assembles them and resolves the node once every task is done.
+     */
+    NodeEvaluation(ComputationNode node, List<Runnable> tasks, Consumer<ComputationNode> resolver) {
+        this.node = node;
+        this.result = null;
+        this.mappedResult = null;
+        this.tasks = tasks;
+        this.remaining = new AtomicInteger(tasks.size());
+        this.cleanup = () -> {};
+        this.resolver = resolver;
+    }
+
+    ComputationNode getNode() {
+        return node;
+    }
+
+    void setTrace(ExecutionTracer.NodeTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Wraps the computation tasks so that the last one to finish publishes this evaluation
+     * on the given queue. Failures are recorded instead of being lost in the worker.
+     */
+    List<Runnable> wrapTasks(BlockingQueue<NodeEvaluation> finished) {
+        List<Runnable> wrapped = new ArrayList<>();
+        if (tasks.isEmpty()) {
+            finish(finished);
+            return wrapped;
+        }
+        for (Runnable task : tasks) {
+            Runnable traced = (trace == null) ? task : trace.wrap(task);
+            wrapped.add(() -> {
+                try {
+                    traced.run();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        finish(finished);
+                    }
+                }
+            });
+        }
+        return wrapped;
+    }
+
+    private void finish(BlockingQueue<NodeEvaluation> finished) {
+        if (trace != null) {
+            trace.computed();
+        }
+        finished.add(this);
+    }
+
+    /**
+     * Resolves the node with the result buffer, or rethrows the first task failure.
+     * The cleanup only runs after a successful resolve.
+     */
+    void complete() {
+        long start = System.nanoTime();
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new RuntimeException(t);
+        }
+        if (resolver != null) {
+            resolver.accept(node);
+        }
+        else if (mappedResult != null) {
+            node.resolve(mappedResult);
+        }
+        else {
+            node.resolve(result);
+        }
+        cleanup.run();
+        if (trace != null) {
+            trace.completed(node, start);
+        }
+    }
+}
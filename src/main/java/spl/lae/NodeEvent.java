@@ -0,0 +1,41 @@
+package spl.lae;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event covering one operator node from the start of its load to the end of its readback.
+ */
+@Name("spl.lae.Node")
+@Label("Node Evaluation")
+@Category({"SPL", "Linear Algebra Engine"})
+@Description("An operator node of the computation tree, from loading its operands to resolving it")
+class NodeEvent extends jdk.jfr.Event {
+
+    @Label("Node Id")
+    int nodeId;
+
+    @Label("Operator")
+    String operator;
+
+    @Label("Operand Shapes")
+    String inputs;
+
+    @Label("Result Shape")
+    String output;
+
+    @Label("Load Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long loadNanos;
+
+    @Label("Compute Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long computeNanos;
+
+    @Label("Readback Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long readbackNanos;
+}
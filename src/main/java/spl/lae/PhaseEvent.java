@@ -0,0 +1,25 @@
+package spl.lae;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for a driver phase such as parsing or writing. It is committed when the phase
+ * ends, so its own timestamp marks the end and durationNanos gives the length.
+ */
+@Name("spl.lae.Phase")
+@Label("Engine Phase")
+@Category({"SPL", "Linear Algebra Engine"})
+@Description("A sequential phase of a job run by the driver thread")
+class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String name;
+
+    @Label("Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long durationNanos;
+}
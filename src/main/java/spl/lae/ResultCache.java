@@ -0,0 +1,265 @@
+package spl.lae;
+
+import memory.DiagonalMatrix;
+import memory.SparseMatrix;
+import memory.VectorOrientation;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import parser.NestingOptimizer;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content-addressed cache of operator results, shared by every run of the engines it is set on.
+ * A subtree is keyed by a 128-bit hash of its structure (operators and operand order) and of
+ * the shapes and values of its leaf matrices, so equal subexpressions hit the cache no matter
+ * which tree or job they come from. The hash is not cryptographic; it guards against accidental
+ * collisions, not crafted ones.
+ * Entries are evicted least recently used first once their total size exceeds the budget;
+ * a result larger than the whole budget is not stored at all.
+ */
+public class ResultCache {
+
+    private static final long SEED_FIRST = 0x9E3779B97F4A7C15L;
+    private static final long SEED_SECOND = 0xC2B2AE3D27D4EB4FL;
+    private static final long LEAF_TAG = -1;
+
+    private final long budgetBytes;
+    private final LinkedHashMap<Key, double[][]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ResultCache(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive");
+        }
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Hash of a subtree. Equal keys are treated as equal results.
+     */
+    static final class Key {
+        final long first;
+        final long second;
+
+        Key(long first, long second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return first == key.first && second == key.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(first ^ second);
+        }
+    }
+
+    /**
+     * Computes the key of every node in the tree, children before parents.
+     */
+    static Map<ComputationNode, Key> keys(ComputationNode root) {
+        Map<ComputationNode, Key> keys = new IdentityHashMap<>();
+        for (ComputationNode node : NestingOptimizer.postOrder(root)) {
+            keys.put(node, (node.getNodeType() == ComputationNodeType.MATRIX) ? leafKey(node) : operatorKey(node, keys));
+        }
+        return keys;
+    }
+
+    /**
+     * Hashes the shape and values row by row, so a sparse or diagonal leaf gets the same key as its dense form.
+     */
+    private static Key leafKey(ComputationNode leaf) {
+        Hash hash = new Hash(LEAF_TAG);
+        DiagonalMatrix diagonal = leaf.getDiagonalMatrix();
+        SparseMatrix sparse = (diagonal != null) ? diagonal.toSparse() : leaf.getSparseMatrix();
+        if (sparse == null) {
+            double[][] matrix = leaf.getMatrix();
+            hash.mix(matrix.length);
+            for (double[] row : matrix) {
+                hash.mixRow(row);
+            }
+            return hash.toKey();
+        }
+        SparseMatrix rows = sparse.withOrientation(VectorOrientation.ROW_MAJOR);
+        double[] row = new double[rows.getColumnCount()];
+        hash.mix(rows.getRowCount());
+        for (int i = 0; i < rows.getRowCount(); i++) {
+            rows.readRow(i, row);
+            hash.mixRow(row);
+        }
+        return hash.toKey();
+    }
+
+    private static Key operatorKey(ComputationNode node, Map<ComputationNode, Key> keys) {
+        Hash hash = new Hash(node.getNodeType().ordinal());
+        hash.mix(node.getChildren().size());
+        for (ComputationNode child : node.getChildren()) {
+            Key key = keys.get(child);
+            hash.mix(key.first);
+            hash.mix(key.second);
+        }
+        return hash.toKey();
+    }
+
+    /**
+     * Two independent 64-bit lanes, so a collision needs both of them to collide.
+     */
+    private static final class Hash {
+        private long first = SEED_FIRST;
+        private long second = SEED_SECOND;
+
+        Hash(long tag) {
+            mix(tag);
+        }
+
+        void mix(long value) {
+            first = (first ^ value) * 0xFF51AFD7ED558CCDL;
+            first ^= first >>> 32;
+            second = Long.rotateLeft((second + value) * 0xC4CEB9FE1A85EC53L, 27);
+        }
+
+        void mixRow(double[] row) {
+            mix(row.length);
+            for (double value : row) {
+                mix(Double.doubleToLongBits(value));
+            }
+        }
+
+        Key toKey() {
+            return new Key(finish(first), finish(second));
+        }
+
+        private static long finish(long hash) {
+            hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+            hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+            return hash ^ (hash >>> 31);
+        }
+    }
+
+    /**
+     * Resolves every operator node whose result is cached, largest subtrees first, so that
+     * nothing below a hit is evaluated. Returns the number of nodes resolved.
+     */
+    int resolveCached(ComputationNode root, Map<ComputationNode, Key> keys) {
+        int resolved = 0;
+        Set<ComputationNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ComputationNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            ComputationNode node = stack.pop();
+            // shared nodes of a DAG are looked up once
+            if (node.getNodeType() == ComputationNodeType.MATRIX || !visited.add(node)) {
+                continue;
+            }
+            double[][] cached = lookup(keys.get(node));
+            if (cached != null) {
+                node.resolve(cached);
+                resolved++;
+                continue;
+            }
+            for (ComputationNode child : node.getChildren()) {
+                stack.push(child);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns a copy of the cached result, or null. The copy is the caller's to compute in.
+     */
+    double[][] lookup(Key key) {
+        double[][] cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached == null) {
+                return null;
+            }
+            hits++;
+        }
+        // stored matrices are never written to, so they can be copied outside the lock
+        double[][] copy = new double[cached.length][];
+        for (int i = 0; i < cached.length; i++) {
+            copy[i] = cached[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Whether a result of this shape would be stored; callers skip copying it out otherwise.
+     */
+    boolean admits(int rows, int cols) {
+        return sizeOf(rows, cols) <= budgetBytes;
+    }
+
+    /**
+     * Records a computed result (a miss) and stores it, evicting older entries to stay in budget.
+     * matrix must not be modified afterwards; pass null if the result was not admitted.
+     */
+    synchronized void store(Key key, double[][] matrix) {
+        misses++;
+        if (matrix == null || entries.containsKey(key)) {
+            return;
+        }
+        long size = sizeOf(matrix.length, (matrix.length == 0) ? 0 : matrix[0].length);
+        if (size > budgetBytes) {
+            return;
+        }
+        Iterator<Map.Entry<Key, double[][]>> eldest = entries.entrySet().iterator();
+        while (usedBytes + size > budgetBytes && eldest.hasNext()) {
+            double[][] evicted = eldest.next().getValue();
+            eldest.remove();
+            usedBytes -= sizeOf(evicted.length, (evicted.length == 0) ? 0 : evicted[0].length);
+            evictions++;
+        }
+        entries.put(key, matrix);
+        usedBytes += size;
+    }
+
+    private static long sizeOf(int rows, int cols) {
+        // values plus the array headers of every row and of the outer array
+        return 8L * rows * cols + 16L * rows + 16;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized String getReport() {
+        return String.format("Result cache: Hits = %d, Misses = %d, Evictions = %d, Entries = %d, Used = %d of %d bytes\n",
+                hits, misses, evictions, entries.size(), usedBytes, budgetBytes);
+    }
+}
@@ -0,0 +1,25 @@
+package spl.lae;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one task run by a TiredThread on behalf of an operator node.
+ */
+@Name("spl.lae.Task")
+@Label("Engine Task")
+@Category({"SPL", "Linear Algebra Engine"})
+@Description("A chunk of an operator node's work, run by one worker")
+class TaskEvent extends jdk.jfr.Event {
+
+    @Label("Node Id")
+    int nodeId;
+
+    @Label("Operator")
+    String operator;
+
+    @Label("Worker Id")
+    int workerId;
+}
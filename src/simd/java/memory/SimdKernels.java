@@ -0,0 +1,138 @@
+package memory;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * ArrayKernels on jdk.incubator.vector, using the widest species the CPU prefers.
+ * Only built by the simd profile (Java 17+); MatrixKernels loads it reflectively.
+ * Elementwise kernels and gemmTile do the same multiplications and additions in the same order
+ * as ScalarKernels (no fused multiply-add), so their results are bit-identical. dot keeps one
+ * partial sum per lane and uses fused multiply-add, so it may differ in the last bits.
+ */
+final class SimdKernels implements ArrayKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    /**
+     * Register-blocked: four rows of one LANES-wide column strip stay in vector accumulators
+     * while the TILE_DEPTH block of the shared dimension streams past them.
+     */
+    @Override
+    public void gemmTile(double[][] left, double[][] right, int rowFrom, int rowTo, int colFrom, int colTo, double[][] acc) {
+        int depth = right.length;
+        int width = colTo - colFrom;
+        int vectorWidth = SPECIES.loopBound(width);
+        for (int k0 = 0; k0 < depth; k0 += MatrixKernels.TILE_DEPTH) {
+            int k1 = Math.min(k0 + MatrixKernels.TILE_DEPTH, depth);
+            int i = rowFrom;
+            for (; i + 4 <= rowTo; i += 4) {
+                double[] a0 = left[i];
+                double[] a1 = left[i + 1];
+                double[] a2 = left[i + 2];
+                double[] a3 = left[i + 3];
+                double[] c0 = acc[i - rowFrom];
+                double[] c1 = acc[i + 1 - rowFrom];
+                double[] c2 = acc[i + 2 - rowFrom];
+                double[] c3 = acc[i + 3 - rowFrom];
+                for (int j = 0; j < vectorWidth; j += LANES) {
+                    DoubleVector s0 = DoubleVector.fromArray(SPECIES, c0, j);
+                    DoubleVector s1 = DoubleVector.fromArray(SPECIES, c1, j);
+                    DoubleVector s2 = DoubleVector.fromArray(SPECIES, c2, j);
+                    DoubleVector s3 = DoubleVector.fromArray(SPECIES, c3, j);
+                    for (int k = k0; k < k1; k++) {
+                        DoubleVector b = DoubleVector.fromArray(SPECIES, right[k], colFrom + j);
+                        s0 = b.mul(a0[k]).add(s0);
+                        s1 = b.mul(a1[k]).add(s1);
+                        s2 = b.mul(a2[k]).add(s2);
+                        s3 = b.mul(a3[k]).add(s3);
+                    }
+                    s0.intoArray(c0, j);
+                    s1.intoArray(c1, j);
+                    s2.intoArray(c2, j);
+                    s3.intoArray(c3, j);
+                }
+                for (int j = vectorWidth; j < width; j++) {
+                    for (int k = k0; k < k1; k++) {
+                        double b = right[k][colFrom + j];
+                        c0[j] += a0[k] * b;
+                        c1[j] += a1[k] * b;
+                        c2[j] += a2[k] * b;
+                        c3[j] += a3[k] * b;
+                    }
+                }
+            }
+            for (; i < rowTo; i++) {
+                double[] a = left[i];
+                double[] c = acc[i - rowFrom];
+                for (int k = k0; k < k1; k++) {
+                    axpy(a[k], right[k], colFrom, c, 0, width);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addInto(double[] dst, int dstOff, double[] src, int srcOff, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector d = DoubleVector.fromArray(SPECIES, dst, dstOff + i);
+            d.add(DoubleVector.fromArray(SPECIES, src, srcOff + i)).intoArray(dst, dstOff + i);
+        }
+        for (; i < length; i++) {
+            dst[dstOff + i] += src[srcOff + i];
+        }
+    }
+
+    @Override
+    public void subtractInto(double[] dst, int dstOff, double[] src, int srcOff, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector d = DoubleVector.fromArray(SPECIES, dst, dstOff + i);
+            d.sub(DoubleVector.fromArray(SPECIES, src, srcOff + i)).intoArray(dst, dstOff + i);
+        }
+        for (; i < length; i++) {
+            dst[dstOff + i] -= src[srcOff + i];
+        }
+    }
+
+    @Override
+    public void negateInPlace(double[] a, int off, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, off + i).neg().intoArray(a, off + i);
+        }
+        for (; i < length; i++) {
+            a[off + i] = -a[off + i];
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int length) {
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, a, aOff + i);
+            sum = x.fma(DoubleVector.fromArray(SPECIES, b, bOff + i), sum);
+        }
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, x, xOff + i);
+            v.mul(alpha).add(DoubleVector.fromArray(SPECIES, y, yOff + i)).intoArray(y, yOff + i);
+        }
+        for (; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package lae;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import parser.BinaryFormat;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import spl.lae.EngineClient;
+import spl.lae.EngineServer;
+import spl.lae.JobProtocol;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineServerTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private EngineServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new EngineServer(0, 2, 4);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private static byte[] addJob(double value) {
+        String json = "{\"operator\": \"+\", \"operands\": [[[" + value + ", 1.0]], [[1.0, 2.0]]]}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testConcurrentJsonJobs() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JsonNode>> answers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                double value = i;
+                answers.add(clients.submit(() -> {
+                    try (EngineClient client = new EngineClient(server.getPort())) {
+                        return mapper.readTree(client.run(addJob(value)));
+                    }
+                }));
+            }
+            for (int i = 0; i < answers.size(); i++) {
+                JsonNode result = answers.get(i).get().get("result");
+                assertEquals(i + 1.0, result.get(0).get(0).asDouble());
+                assertEquals(3.0, result.get(0).get(1).asDouble());
+            }
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(8, server.getJobsServed());
+    }
+
+    @Test
+    void testFailedJobDoesNotAffectConnection() throws IOException {
+        byte[] bad = "{\"operator\": \"+\", \"operands\": [[[1.0, 2.0]], [[1.0]]]}".getBytes(StandardCharsets.UTF_8);
+        try (EngineClient client = new EngineClient(server.getPort())) {
+            JsonNode error = mapper.readTree(client.run(bad, JobProtocol.INPUT_JSON, JobProtocol.OUTPUT_COMPACT));
+            assertTrue(error.has("error"));
+            JsonNode result = mapper.readTree(client.run(addJob(5.0)));
+            assertEquals(6.0, result.get("result").get(0).get(0).asDouble());
+        }
+    }
+
+    @Test
+    void testOversizedRequestIsAnsweredWithError() throws IOException {
+        server.setMaxPayload(64);
+        byte[] large = ("{\"operator\": \"+\", \"operands\": [[[1.0, 2.0, 3.0, 4.0, 5.0, 6.0]],"
+                + " [[1.0, 2.0, 3.0, 4.0, 5.0, 6.0]]]}").getBytes(StandardCharsets.UTF_8);
+        try (EngineClient client = new EngineClient(server.getPort())) {
+            JsonNode error = mapper.readTree(client.run(large, JobProtocol.INPUT_JSON, JobProtocol.OUTPUT_COMPACT));
+            assertTrue(error.get("error").asText().contains("exceeds the limit of 64 bytes"));
+            // the skipped payload leaves the connection usable
+            JsonNode result = mapper.readTree(client.run(addJob(5.0)));
+            assertEquals(6.0, result.get("result").get(0).get(0).asDouble());
+        }
+    }
+
+    @Test
+    void testBinaryJob() throws Exception {
+        Path dir = Files.createTempDirectory("lae-server-test");
+        Path input = dir.resolve("in.laeb");
+        Path output = dir.resolve("out.laeb");
+        try {
+            ComputationNode root = new ComputationNode(ComputationNodeType.TRANSPOSE,
+                    new ArrayList<>(List.of(new ComputationNode(new double[][]{{1, 2, 3}}))));
+            BinaryFormat.writeTree(root, input.toString());
+            byte[] answer;
+            try (EngineClient client = new EngineClient(server.getPort())) {
+                answer = client.run(Files.readAllBytes(input), JobProtocol.INPUT_BINARY, JobProtocol.OUTPUT_BINARY);
+            }
+            Files.write(output, answer);
+            assertArrayEquals(new double[][]{{1}, {2}, {3}}, BinaryFormat.readResult(output.toString()));
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    void testShutdownRequest() throws Exception {
+        try (EngineClient client = new EngineClient(server.getPort())) {
+            client.shutdownServer();
+        }
+        server.awaitShutdown();
+    }
+
+    @Test
+    void testCloseDoesNotWaitForIdleConnections() throws Exception {
+        try (EngineClient idle = new EngineClient(server.getPort())) {
+            Thread.sleep(200); // lets the server pick up the connection and block reading from it
+            long start = System.nanoTime();
+            server.close();
+            assertTrue(System.nanoTime() - start < 5_000_000_000L, "close waited for the idle connection");
+            assertThrows(IOException.class, () -> idle.run(addJob(2.0)));
+        }
+    }
+}
@@ -5,8 +5,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import parser.ComputationNode;
 import parser.ComputationNodeType;
+import memory.ScratchSpace;
+import memory.StorageMode;
+import org.junit.jupiter.api.io.TempDir;
+import scheduling.SchedulingMode;
+import spl.lae.ExecutionTracer;
 import spl.lae.LinearAlgebraEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -154,4 +164,629 @@ public class LAETest {
     void testRun_NullRoot() {
         assertThrows(IllegalArgumentException.class, () -> lae.run(null));
     }
+
+    @Test
+    void testContiguousStorageMultiplication() throws InterruptedException {
+        LinearAlgebraEngine contiguous = new LinearAlgebraEngine(NUM_THREADS, StorageMode.CONTIGUOUS);
+        try {
+            ComputationNode nodeA = new ComputationNode(new double[][]{{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}});
+            ComputationNode nodeB = new ComputationNode(new double[][]{{1.0, 0.0}, {0.0, 1.0}, {1.0, 1.0}});
+            ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(nodeA, nodeB));
+
+            double[][] result = contiguous.run(root).getMatrix();
+
+            assertArrayEquals(new double[]{4.0, 5.0}, result[0]);
+            assertArrayEquals(new double[]{10.0, 11.0}, result[1]);
+        } finally {
+            contiguous.shutdown();
+        }
+    }
+
+    @Test
+    void testMultiplicationSpanningSeveralTiles() {
+        int n = 70;
+        int m = 300;
+        double[][] dataA = new double[n][m];
+        double[][] dataB = new double[m][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                dataA[i][j] = i + j;
+                dataB[j][i] = (i == j) ? 1.0 : 0.0;
+            }
+        }
+
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY,
+                List.of(new ComputationNode(dataA), new ComputationNode(dataB)));
+        double[][] result = lae.run(root).getMatrix();
+
+        assertEquals(n, result.length);
+        assertEquals(n, result[0].length);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                assertEquals(i + j, result[i][j]);
+            }
+        }
+    }
+
+    @Test
+    void testIndependentSubtreesResolveTogether() {
+        // (A + B) * (-C): both operands of the multiply are ready at the same time
+        ComputationNode sum = new ComputationNode(ComputationNodeType.ADD, List.of(
+                new ComputationNode(new double[][]{{1.0, 2.0}, {3.0, 4.0}}),
+                new ComputationNode(new double[][]{{1.0, 0.0}, {0.0, 1.0}})));
+        ComputationNode negation = new ComputationNode(ComputationNodeType.NEGATE, List.of(
+                new ComputationNode(new double[][]{{1.0, 0.0}, {0.0, 2.0}})));
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(sum, negation));
+
+        double[][] result = lae.run(root).getMatrix();
+
+        assertArrayEquals(new double[]{-2.0, -4.0}, result[0]);
+        assertArrayEquals(new double[]{-3.0, -10.0}, result[1]);
+    }
+
+    @Test
+    void testRun_DimensionMismatchIsReported() {
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, List.of(
+                new ComputationNode(new double[][]{{1.0, 2.0}}),
+                new ComputationNode(new double[][]{{1.0}, {2.0}})));
+
+        assertThrows(IllegalArgumentException.class, () -> lae.run(root));
+    }
+
+    @Test
+    void testDeepChainIsEvaluated() {
+        // -(-(-(...A))) with an even number of negations
+        ComputationNode node = new ComputationNode(new double[][]{{1.0, -2.0}});
+        for (int i = 0; i < 2000; i++) {
+            node = new ComputationNode(ComputationNodeType.NEGATE, List.of(node));
+        }
+
+        double[][] result = lae.run(node).getMatrix();
+
+        assertArrayEquals(new double[]{1.0, -2.0}, result[0]);
+    }
+
+    @Test
+    void testThreeOperandMultiplication() {
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(
+                new ComputationNode(new double[][]{{1.0, 2.0}}),
+                new ComputationNode(new double[][]{{1.0, 0.0, 1.0}, {0.0, 1.0, 1.0}}),
+                new ComputationNode(new double[][]{{1.0}, {1.0}, {1.0}}))));
+
+        double[][] result = lae.run(root).getMatrix();
+
+        assertEquals(1, result.length);
+        assertArrayEquals(new double[]{6.0}, result[0]);
+    }
+
+    @Test
+    void testNegatedAddendIsSubtracted() {
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, List.of(
+                new ComputationNode(new double[][]{{5.0, 6.0}}),
+                new ComputationNode(ComputationNodeType.NEGATE, List.of(
+                        new ComputationNode(new double[][]{{1.0, 2.0}})))));
+
+        double[][] result = lae.run(root).getMatrix();
+
+        assertArrayEquals(new double[]{4.0, 4.0}, result[0]);
+        assertEquals(1, lae.getRewriteCount());
+    }
+
+    @Test
+    void testTransposedOperandsWithoutCopies() {
+        // A * T(B) and T(A) + T(C): both read the transposed views directly
+        double[][] dataA = {{1.0, 2.0}, {3.0, 4.0}};
+        double[][] dataB = {{1.0, 1.0}, {0.0, 1.0}};
+        ComputationNode product = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(
+                new ComputationNode(dataA),
+                new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(new ComputationNode(dataB)))));
+        double[][] result = lae.run(product).getMatrix();
+        assertArrayEquals(new double[]{3.0, 2.0}, result[0]);
+        assertArrayEquals(new double[]{7.0, 4.0}, result[1]);
+
+        ComputationNode sum = new ComputationNode(ComputationNodeType.ADD, List.of(
+                new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(new ComputationNode(new double[][]{{1.0, 2.0, 3.0}}))),
+                new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(new ComputationNode(new double[][]{{1.0, 1.0, 1.0}})))));
+        result = lae.run(sum).getMatrix();
+        assertEquals(3, result.length);
+        assertArrayEquals(new double[]{4.0}, result[2]);
+    }
+
+    @Test
+    void testResultStaysSharedMatrixUntilRead() {
+        // -(T(A)): the negation runs directly on the transposed view of A
+        ComputationNode root = new ComputationNode(ComputationNodeType.NEGATE, List.of(
+                new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(
+                        new ComputationNode(new double[][]{{1.0, 2.0, 3.0}})))));
+
+        ComputationNode resultNode = lae.run(root);
+
+        assertNotNull(resultNode.getSharedMatrix());
+        assertEquals(3, resultNode.getSharedMatrix().getRowCount());
+        assertEquals(1, resultNode.getSharedMatrix().getColumnCount());
+        double[][] result = resultNode.getMatrix();
+        assertArrayEquals(new double[]{-2.0}, result[1]);
+    }
+
+    @Test
+    void testWorkStealingEngine() throws InterruptedException {
+        LinearAlgebraEngine stealing = new LinearAlgebraEngine(NUM_THREADS, StorageMode.VECTORS, SchedulingMode.WORK_STEALING);
+        try {
+            ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(
+                    new ComputationNode(new double[][]{{1.0, 2.0}, {3.0, 4.0}}),
+                    new ComputationNode(new double[][]{{2.0, 0.0}, {1.0, 2.0}})));
+
+            double[][] result = stealing.run(root).getMatrix();
+
+            assertArrayEquals(new double[]{4.0, 4.0}, result[0]);
+            assertArrayEquals(new double[]{10.0, 8.0}, result[1]);
+        } finally {
+            stealing.shutdown();
+        }
+    }
+
+    @Test
+    void testOutOfCoreMatchesInMemory(@TempDir Path tempDir) throws IOException {
+        double[][] dataA = new double[300][270];
+        double[][] dataB = new double[270][300];
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 270; j++) {
+                dataA[i][j] = (i + 2 * j) % 7 - 3;
+                dataB[j][i] = (3 * i + j) % 5 - 2;
+            }
+        }
+        // -(T(A * B) + A * B), built twice because evaluation consumes the tree
+        List<ComputationNode> roots = new ArrayList<>();
+        for (int n = 0; n < 2; n++) {
+            ComputationNode product = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(
+                    new ComputationNode(dataA), new ComputationNode(dataB)));
+            ComputationNode transposed = new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(
+                    new ComputationNode(ComputationNodeType.MULTIPLY, List.of(
+                            new ComputationNode(dataA), new ComputationNode(dataB)))));
+            roots.add(new ComputationNode(ComputationNodeType.NEGATE, List.of(
+                    new ComputationNode(ComputationNodeType.ADD, List.of(transposed, product)))));
+        }
+
+        double[][] expected = lae.run(roots.get(0)).getMatrix();
+        try (ScratchSpace scratch = new ScratchSpace(tempDir)) {
+            ComputationNode resultNode = lae.runOutOfCore(roots.get(1), scratch);
+            assertNotNull(resultNode.getMappedMatrix());
+            assertArrayEquals(expected, resultNode.getMappedMatrix().toArray());
+        }
+    }
+
+    @Test
+    void testOutOfCoreDimensionMismatch(@TempDir Path tempDir) throws IOException {
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(
+                new ComputationNode(new double[][]{{1.0, 2.0}}),
+                new ComputationNode(new double[][]{{1.0, 2.0}})));
+        try (ScratchSpace scratch = new ScratchSpace(tempDir)) {
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> lae.runOutOfCore(root, scratch));
+            assertEquals("error: Illegal operation: dimensions mismatch", exception.getMessage());
+        }
+    }
+
+    @Test
+    void testTracingRecordsNodesAndTasks(@TempDir Path tempDir) throws IOException {
+        ExecutionTracer tracer = new ExecutionTracer();
+        lae.setTracer(tracer);
+        // (A * B) * T(C): three operator nodes that no rewrite fuses
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(
+                new ComputationNode(ComputationNodeType.MULTIPLY, List.of(
+                        new ComputationNode(new double[][]{{1.0, 2.0}, {3.0, 4.0}}),
+                        new ComputationNode(new double[][]{{1.0, 0.0}, {0.0, 1.0}}))),
+                new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(
+                        new ComputationNode(new double[][]{{1.0, 1.0}, {0.0, 0.0}})))));
+
+        double[][] result = lae.run(root).getMatrix();
+        assertArrayEquals(new double[]{3.0, 0.0}, result[0]);
+        assertEquals(3, tracer.getNodeSpanCount());
+        assertTrue(tracer.getTaskSpanCount() >= 3);
+
+        Path trace = tempDir.resolve("trace.json");
+        tracer.writeChromeTrace(trace.toString());
+        JsonNode events = new ObjectMapper().readTree(trace.toFile()).get("traceEvents");
+        int nodeBegins = 0;
+        int workerTasks = 0;
+        for (JsonNode event : events) {
+            if ("node".equals(event.path("cat").asText()) && "b".equals(event.get("ph").asText())
+                    && event.get("name").asText().contains("#")) {
+                nodeBegins++;
+                assertTrue(event.get("args").has("output"));
+            }
+            if ("task".equals(event.path("cat").asText())) {
+                assertTrue(event.get("tid").asInt() >= 1);
+                workerTasks++;
+            }
+        }
+        assertEquals(3, nodeBegins);
+        assertEquals(tracer.getTaskSpanCount(), workerTasks);
+    }
+
+    @Test
+    void testSharedSubexpressionsAreComputedOnce() {
+        // (A * B) + ((A * B) * T(A * B)) with separately built copies of A * B
+        java.util.function.Supplier<ComputationNode> product = () -> new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(
+                new ComputationNode(new double[][]{{1, 2}, {3, 4}}), new ComputationNode(new double[][]{{0, 1}, {1, 0}}))));
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, new ArrayList<>(List.of(product.get(),
+                new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(product.get(),
+                        new ComputationNode(ComputationNodeType.TRANSPOSE, new ArrayList<>(List.of(product.get())))))))));
+
+        double[][] result = lae.run(root).getMatrix();
+        assertTrue(lae.getMergeCount() > 0);
+        // P = [[2, 1], [4, 3]], P * T(P) = [[5, 11], [11, 25]]
+        assertArrayEquals(new double[][]{{7, 12}, {15, 28}}, result);
+    }
+
+    @Test
+    void testSharedOperandOfBothSides(@TempDir Path tempDir) throws IOException {
+        // -(A) + -(A): both operands are the same node once merged
+        double[][] a = {{1, 2}, {3, 4}};
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, new ArrayList<>(List.of(
+                new ComputationNode(ComputationNodeType.NEGATE, new ArrayList<>(List.of(new ComputationNode(a)))),
+                new ComputationNode(ComputationNodeType.NEGATE, new ArrayList<>(List.of(new ComputationNode(new double[][]{{1, 2}, {3, 4}})))))));
+        assertArrayEquals(new double[][]{{-2, -4}, {-6, -8}}, lae.run(root).getMatrix());
+
+        ComputationNode mapped = new ComputationNode(ComputationNodeType.ADD, new ArrayList<>(List.of(
+                new ComputationNode(ComputationNodeType.TRANSPOSE, new ArrayList<>(List.of(new ComputationNode(new double[][]{{1, 2}, {3, 4}})))),
+                new ComputationNode(ComputationNodeType.TRANSPOSE, new ArrayList<>(List.of(new ComputationNode(new double[][]{{1, 2}, {3, 4}})))))));
+        try (ScratchSpace scratch = new ScratchSpace(tempDir)) {
+            assertArrayEquals(new double[][]{{2, 6}, {4, 8}}, lae.runOutOfCore(mapped, scratch).getMatrix());
+        }
+    }
+
+    private static double[][] sparseValues(long seed, int rows, int cols, double density) {
+        java.util.Random random = new java.util.Random(seed);
+        double[][] matrix = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (random.nextDouble() < density) {
+                    matrix[i][j] = random.nextInt(7) - 3;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static ComputationNode op(ComputationNodeType type, ComputationNode... children) {
+        return new ComputationNode(type, new ArrayList<>(List.of(children)));
+    }
+
+    // (S1 * D) + (D * S2) - T(S1) ... built with S1, S2 either sparse or dense leaves
+    private static ComputationNode mixedTree(boolean sparse) {
+        double[][] s1 = sparseValues(1, 60, 60, 0.05);
+        double[][] s2 = sparseValues(2, 60, 60, 0.05);
+        double[][] d = sparseValues(3, 60, 60, 1.0);
+        java.util.function.Function<double[][], ComputationNode> leaf =
+                values -> sparse ? new ComputationNode(memory.SparseMatrix.fromDense(values)) : new ComputationNode(values);
+        ComputationNode products = op(ComputationNodeType.ADD,
+                op(ComputationNodeType.MULTIPLY, leaf.apply(s1), new ComputationNode(d)),
+                op(ComputationNodeType.MULTIPLY, new ComputationNode(sparseValues(3, 60, 60, 1.0)), leaf.apply(s2)));
+        ComputationNode sparseOnly = op(ComputationNodeType.ADD,
+                op(ComputationNodeType.MULTIPLY, op(ComputationNodeType.TRANSPOSE, leaf.apply(s1)), leaf.apply(s2)),
+                op(ComputationNodeType.NEGATE, leaf.apply(s2)));
+        return op(ComputationNodeType.MULTIPLY, op(ComputationNodeType.ADD, products, sparseOnly), leaf.apply(s1));
+    }
+
+    @Test
+    void testSparseOperandsMatchDense() {
+        double[][] expected = lae.run(mixedTree(false)).getMatrix();
+        double[][] actual = lae.run(mixedTree(true)).getMatrix();
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i]);
+        }
+    }
+
+    // one sparse kernel per tree, on operands where sparse and dense arithmetic could part ways:
+    // stored -0.0 entries, infinities next to implicit zeros (0 * Inf is NaN) and a negated
+    // sparse literal, whose implicit zeros become -0.0
+    private static ComputationNode signedZeroTree(int kernel, boolean sparse) {
+        double[][] s1 = sparseValues(21, 60, 60, 0.05);
+        double[][] s2 = sparseValues(22, 60, 60, 0.05);
+        s1[0][1] = -0.0;
+        s2[3][3] = -0.0;
+        double[][] zeros = sparseValues(23, 60, 60, 0.5);
+        zeros[4][4] = -0.0;
+        zeros[4][5] = -0.0;
+        double[][] infinite = sparseValues(24, 60, 60, 1.0);
+        infinite[5][7] = Double.POSITIVE_INFINITY;
+        infinite[9][2] = Double.NEGATIVE_INFINITY;
+        java.util.function.Function<double[][], ComputationNode> leaf =
+                values -> sparse ? new ComputationNode(memory.SparseMatrix.fromDense(values)) : new ComputationNode(values);
+        switch (kernel) {
+            case 0:
+                return op(ComputationNodeType.NEGATE, leaf.apply(s1));
+            case 1:
+                return op(ComputationNodeType.ADD, new ComputationNode(zeros), leaf.apply(s1));
+            case 2:
+                return op(ComputationNodeType.SUBTRACT, leaf.apply(s2), new ComputationNode(zeros));
+            case 3:
+                return op(ComputationNodeType.SUBTRACT, leaf.apply(s1), leaf.apply(s2));
+            case 4:
+                return op(ComputationNodeType.MULTIPLY, leaf.apply(s1), new ComputationNode(infinite));
+            default:
+                return op(ComputationNodeType.MULTIPLY, new ComputationNode(infinite), leaf.apply(s2));
+        }
+    }
+
+    @Test
+    void testSparseOperandsMatchDenseBitForBit() {
+        for (int kernel = 0; kernel < 6; kernel++) {
+            double[][] expected = lae.run(signedZeroTree(kernel, false)).getMatrix();
+            double[][] actual = lae.run(signedZeroTree(kernel, true)).getMatrix();
+            for (int i = 0; i < expected.length; i++) {
+                for (int j = 0; j < expected[i].length; j++) {
+                    assertEquals(Double.doubleToRawLongBits(expected[i][j]), Double.doubleToRawLongBits(actual[i][j]),
+                            "tree " + kernel + " at (" + i + ", " + j + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSparseResultStaysSparseUnlessFilledIn() {
+        ComputationNode a = new ComputationNode(memory.SparseMatrix.fromDense(sparseValues(4, 100, 100, 0.01)));
+        ComputationNode b = new ComputationNode(memory.SparseMatrix.fromDense(sparseValues(5, 100, 100, 0.01)));
+        ComputationNode sum = lae.run(op(ComputationNodeType.ADD, a, b));
+        assertNotNull(sum.getSparseMatrix());
+
+        // a full row times a full column fills the whole product in
+        double[][] column = new double[100][100];
+        double[][] row = new double[100][100];
+        for (int i = 0; i < 100; i++) {
+            column[i][0] = 1;
+            row[0][i] = 2;
+        }
+        ComputationNode product = lae.run(op(ComputationNodeType.MULTIPLY,
+                new ComputationNode(memory.SparseMatrix.fromDense(column)), new ComputationNode(memory.SparseMatrix.fromDense(row))));
+        assertNull(product.getSparseMatrix());
+        assertEquals(2.0, product.getMatrix()[99][99]);
+    }
+
+    @Test
+    void testSparseDimensionMismatch() {
+        ComputationNode a = new ComputationNode(memory.SparseMatrix.fromDense(new double[3][4]));
+        ComputationNode b = new ComputationNode(new double[3][3]);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> lae.run(op(ComputationNodeType.MULTIPLY, a, b)));
+        assertEquals("error: Illegal operation: dimensions mismatch", e.getMessage());
+    }
+
+    // every diagonal fast path, built with the diagonals as DiagonalMatrix or as dense leaves
+    private static ComputationNode diagonalTree(boolean structured) {
+        java.util.function.Function<double[], ComputationNode> diagonal = values -> {
+            if (structured) {
+                return new ComputationNode(new memory.DiagonalMatrix(values));
+            }
+            double[][] dense = new double[values.length][values.length];
+            for (int i = 0; i < values.length; i++) {
+                dense[i][i] = values[i];
+            }
+            return new ComputationNode(dense);
+        };
+        double[] d1 = new double[60];
+        double[] d2 = new double[60];
+        double[] ones = new double[60];
+        for (int i = 0; i < 60; i++) {
+            d1[i] = i % 5 - 2;
+            d2[i] = 0.5 * i;
+            ones[i] = 1;
+        }
+        ComputationNode dense = new ComputationNode(sparseValues(6, 60, 60, 1.0));
+        ComputationNode sparse = new ComputationNode(memory.SparseMatrix.fromDense(sparseValues(7, 60, 60, 0.05)));
+        ComputationNode scaled = op(ComputationNodeType.ADD,
+                op(ComputationNodeType.MULTIPLY, diagonal.apply(d1), dense),
+                op(ComputationNodeType.MULTIPLY, dense, diagonal.apply(d2)));
+        ComputationNode shifted = op(ComputationNodeType.SUBTRACT,
+                op(ComputationNodeType.SUBTRACT, diagonal.apply(d1), op(ComputationNodeType.MULTIPLY, diagonal.apply(ones), dense)),
+                op(ComputationNodeType.SUBTRACT, new ComputationNode(sparseValues(8, 60, 60, 1.0)), diagonal.apply(d2)));
+        ComputationNode diagonalOnly = op(ComputationNodeType.ADD,
+                op(ComputationNodeType.MULTIPLY, diagonal.apply(d1), op(ComputationNodeType.TRANSPOSE, diagonal.apply(d2))),
+                op(ComputationNodeType.NEGATE, diagonal.apply(d1)));
+        ComputationNode withSparse = op(ComputationNodeType.ADD,
+                op(ComputationNodeType.MULTIPLY, diagonal.apply(d2), sparse), diagonal.apply(d1));
+        return op(ComputationNodeType.ADD, op(ComputationNodeType.ADD, scaled, shifted),
+                op(ComputationNodeType.ADD, diagonalOnly, withSparse));
+    }
+
+    @Test
+    void testDiagonalOperandsMatchDense() {
+        double[][] expected = lae.run(diagonalTree(false)).getMatrix();
+        double[][] actual = lae.run(diagonalTree(true)).getMatrix();
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i]);
+        }
+    }
+
+    // like signedZeroTree, one diagonal kernel per tree: -0.0 in the dense operands, an infinity
+    // next to the zeros off the diagonal, the identity, and a negated diagonal literal
+    private static ComputationNode signedZeroDiagonalTree(int kernel, boolean structured) {
+        double[] values = new double[40];
+        double[] ones = new double[40];
+        for (int i = 0; i < 40; i++) {
+            values[i] = i % 3 - 1;
+            ones[i] = 1;
+        }
+        values[7] = -0.0;
+        java.util.function.Function<double[], ComputationNode> diagonal = d -> structured
+                ? new ComputationNode(new memory.DiagonalMatrix(d)) : new ComputationNode(new memory.DiagonalMatrix(d).toDense());
+        double[][] zeros = sparseValues(25, 40, 40, 0.5);
+        zeros[4][4] = -0.0;
+        zeros[4][5] = -0.0;
+        zeros[6][4] = -0.0;
+        double[][] infinite = sparseValues(26, 40, 40, 1.0);
+        infinite[5][7] = Double.POSITIVE_INFINITY;
+        switch (kernel) {
+            case 0:
+                return op(ComputationNodeType.NEGATE, diagonal.apply(values));
+            case 1:
+                return op(ComputationNodeType.MULTIPLY, diagonal.apply(values), new ComputationNode(zeros));
+            case 2:
+                return op(ComputationNodeType.MULTIPLY, new ComputationNode(zeros), diagonal.apply(ones));
+            case 3:
+                return op(ComputationNodeType.MULTIPLY, diagonal.apply(values), new ComputationNode(infinite));
+            case 4:
+                return op(ComputationNodeType.ADD, new ComputationNode(zeros), diagonal.apply(values));
+            case 5:
+                return op(ComputationNodeType.SUBTRACT, diagonal.apply(values), new ComputationNode(zeros));
+            default:
+                return op(ComputationNodeType.MULTIPLY, diagonal.apply(values), diagonal.apply(values));
+        }
+    }
+
+    @Test
+    void testDiagonalOperandsMatchDenseBitForBit() {
+        for (int kernel = 0; kernel < 7; kernel++) {
+            double[][] expected = lae.run(signedZeroDiagonalTree(kernel, false)).getMatrix();
+            double[][] actual = lae.run(signedZeroDiagonalTree(kernel, true)).getMatrix();
+            for (int i = 0; i < expected.length; i++) {
+                for (int j = 0; j < expected[i].length; j++) {
+                    assertEquals(Double.doubleToRawLongBits(expected[i][j]), Double.doubleToRawLongBits(actual[i][j]),
+                            "tree " + kernel + " at (" + i + ", " + j + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDiagonalResultStaysDiagonal() {
+        double[] values = new double[40];
+        java.util.Arrays.fill(values, 3);
+        ComputationNode d = new ComputationNode(new memory.DiagonalMatrix(values));
+        ComputationNode result = lae.run(op(ComputationNodeType.SUBTRACT, op(ComputationNodeType.MULTIPLY, d, d), d));
+        assertNotNull(result.getDiagonalMatrix());
+        assertEquals(6.0, result.getMatrix()[39][39]);
+        assertEquals(0.0, result.getMatrix()[39][38]);
+
+        // except for a negation, whose zeros off the diagonal are -0.0
+        ComputationNode negated = lae.run(op(ComputationNodeType.NEGATE, new ComputationNode(new memory.DiagonalMatrix(values))));
+        assertNull(negated.getDiagonalMatrix());
+        assertEquals(-3.0, negated.getMatrix()[39][39]);
+        assertEquals(-0.0, negated.getMatrix()[39][38]);
+
+        ComputationNode mismatch = op(ComputationNodeType.ADD, new ComputationNode(new memory.DiagonalMatrix(values)),
+                new ComputationNode(new double[40][39]));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> lae.run(mismatch));
+        assertEquals("Error: Illegal operation: dimension mismatch", e.getMessage());
+    }
+
+    @Test
+    void testSharedDiagonalLeafStaysDiagonal() {
+        double[] values = new double[40];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        double[][] s = sparseValues(15, 40, 40, 0.05);
+        double[][] a = sparseValues(16, 40, 40, 1.0);
+        // the same diagonal leaf next to a sparse operand and next to a dense one
+        ComputationNode d = new ComputationNode(new memory.DiagonalMatrix(values));
+        ComputationNode shared = op(ComputationNodeType.ADD,
+                op(ComputationNodeType.MULTIPLY, d, new ComputationNode(memory.SparseMatrix.fromDense(s))),
+                op(ComputationNodeType.MULTIPLY, d, new ComputationNode(copy(a))));
+        double[][] actual = lae.run(shared).getMatrix();
+        assertNotNull(d.getDiagonalMatrix(), "the sparse consumer must not rewrite the shared leaf");
+
+        double[][] dense = new memory.DiagonalMatrix(values).toDense();
+        double[][] expected = lae.run(op(ComputationNodeType.ADD,
+                op(ComputationNodeType.MULTIPLY, new ComputationNode(copy(dense)), new ComputationNode(copy(s))),
+                op(ComputationNodeType.MULTIPLY, new ComputationNode(copy(dense)), new ComputationNode(copy(a))))).getMatrix();
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], 1e-9);
+        }
+    }
+
+    @Test
+    void testFloatPrecisionStaysWithinErrorBound() throws InterruptedException {
+        int n = 120;
+        double[][] a = sparseValues(9, n, n, 1.0);
+        double[][] b = sparseValues(10, n, n, 1.0);
+        double[][] c = sparseValues(11, n, n, 1.0);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                a[i][j] += 0.1 * j;
+                b[i][j] /= 3.0;
+            }
+        }
+        // C - T(A) * B
+        java.util.function.Supplier<ComputationNode> tree = () -> op(ComputationNodeType.ADD, new ComputationNode(copy(c)),
+                op(ComputationNodeType.NEGATE, op(ComputationNodeType.MULTIPLY,
+                        op(ComputationNodeType.TRANSPOSE, new ComputationNode(copy(a))), new ComputationNode(copy(b)))));
+        double[][] expected = lae.run(tree.get()).getMatrix();
+        double u = Math.ulp(1.0f) / 2;
+        for (StorageMode mode : StorageMode.values()) {
+            LinearAlgebraEngine single = new LinearAlgebraEngine(NUM_THREADS, mode, SchedulingMode.HANDOFF, memory.Precision.FLOAT);
+            try {
+                double[][] actual = single.run(tree.get()).getMatrix();
+                boolean rounded = false;
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        double magnitude = Math.abs(c[i][j]);
+                        for (int k = 0; k < n; k++) {
+                            magnitude += Math.abs(a[k][i]) * Math.abs(b[k][j]);
+                        }
+                        // the product bound of memory.Precision, plus one rounding for the sum
+                        double bound = (n + 3) * u / (1 - (n + 3) * u) * magnitude;
+                        assertEquals(expected[i][j], actual[i][j], bound);
+                        rounded |= expected[i][j] != actual[i][j];
+                        assertEquals(actual[i][j], (double) (float) actual[i][j]);
+                    }
+                }
+                assertTrue(rounded);
+            } finally {
+                single.shutdown();
+            }
+        }
+    }
+
+    private static double[][] copy(double[][] matrix) {
+        double[][] copy = new double[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            copy[i] = matrix[i].clone();
+        }
+        return copy;
+    }
+
+    @Test
+    void testFusedMultiplyAddMatchesSeparatePasses() throws InterruptedException {
+        // wider than one product tile, with values that round
+        double[][] a = sparseValues(12, 70, 40, 1.0);
+        double[][] b = sparseValues(13, 40, 300, 1.0);
+        double[][] c = sparseValues(14, 70, 300, 1.0);
+        for (double[] row : b) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] /= 7.0;
+            }
+        }
+        for (memory.Precision precision : memory.Precision.values()) {
+            LinearAlgebraEngine engine = new LinearAlgebraEngine(NUM_THREADS, StorageMode.VECTORS, SchedulingMode.HANDOFF, precision);
+            try {
+                double[][] product = engine.run(op(ComputationNodeType.MULTIPLY, new ComputationNode(copy(a)), new ComputationNode(copy(b)))).getMatrix();
+                for (ComputationNodeType type : new ComputationNodeType[]{ComputationNodeType.ADD, ComputationNodeType.SUBTRACT}) {
+                    for (boolean productFirst : new boolean[]{true, false}) {
+                        ComputationNode fusedProduct = op(ComputationNodeType.MULTIPLY, new ComputationNode(copy(a)), new ComputationNode(copy(b)));
+                        ComputationNode fused = productFirst
+                                ? op(type, fusedProduct, new ComputationNode(copy(c)))
+                                : op(type, new ComputationNode(copy(c)), fusedProduct);
+                        double[][] actual = engine.run(fused).getMatrix();
+                        assertEquals(1, engine.getFusionCount());
+
+                        ComputationNode separate = productFirst
+                                ? op(type, new ComputationNode(copy(product)), new ComputationNode(copy(c)))
+                                : op(type, new ComputationNode(copy(c)), new ComputationNode(copy(product)));
+                        double[][] expected = engine.run(separate).getMatrix();
+                        for (int i = 0; i < expected.length; i++) {
+                            assertArrayEquals(expected[i], actual[i], 0.0);
+                        }
+                    }
+                }
+
+                ComputationNode mismatch = op(ComputationNodeType.MULTIPLY_ADD, new ComputationNode(copy(a)),
+                        new ComputationNode(copy(b)), new ComputationNode(new double[70][299]));
+                IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> engine.run(mismatch));
+                assertEquals("Error: Illegal operation: dimension mismatch", e.getMessage());
+            } finally {
+                engine.shutdown();
+            }
+        }
+    }
 }
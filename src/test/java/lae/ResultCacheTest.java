@@ -0,0 +1,117 @@
+package lae;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import spl.lae.LinearAlgebraEngine;
+import spl.lae.ResultCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private LinearAlgebraEngine lae;
+
+    @BeforeEach
+    void setUp() {
+        lae = new LinearAlgebraEngine(2);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        lae.shutdown();
+    }
+
+    private static ComputationNode node(ComputationNodeType type, ComputationNode... children) {
+        return new ComputationNode(type, new ArrayList<>(List.of(children)));
+    }
+
+    private static ComputationNode leaf(double... row) {
+        return new ComputationNode(new double[][]{row.clone(), row.clone()});
+    }
+
+    // (A * B) + T(C), built fresh every time so that no node is shared between runs
+    private static ComputationNode tree(double scale) {
+        ComputationNode a = new ComputationNode(new double[][]{{1, 2}, {3, 4}});
+        ComputationNode b = new ComputationNode(new double[][]{{scale, 0}, {0, scale}});
+        ComputationNode c = new ComputationNode(new double[][]{{1, 1}, {2, 2}});
+        return node(ComputationNodeType.ADD, node(ComputationNodeType.MULTIPLY, a, b), node(ComputationNodeType.TRANSPOSE, c));
+    }
+
+    @Test
+    void testRepeatedTreeIsServedFromCache() {
+        ResultCache cache = new ResultCache(1 << 20);
+        lae.setResultCache(cache);
+        double[][] first = lae.run(tree(2)).getMatrix();
+        assertEquals(0, cache.getHits());
+        long misses = cache.getMisses();
+        assertTrue(misses >= 2);
+
+        // the caller owns the returned matrix, changing it must not reach the cache
+        first[0][0] = 100;
+        double[][] second = lae.run(tree(2)).getMatrix();
+        assertEquals(1, cache.getHits()); // the root hits, nothing below it is looked up
+        assertEquals(misses, cache.getMisses());
+        assertArrayEquals(new double[][]{{3, 6}, {7, 10}}, second);
+    }
+
+    @Test
+    void testSharedSubexpressionAcrossTrees() {
+        ResultCache cache = new ResultCache(1 << 20);
+        lae.setResultCache(cache);
+        lae.run(tree(2));
+        // a different tree that contains the same product
+        ComputationNode a = new ComputationNode(new double[][]{{1, 2}, {3, 4}});
+        ComputationNode b = new ComputationNode(new double[][]{{2, 0}, {0, 2}});
+        ComputationNode root = node(ComputationNodeType.NEGATE, node(ComputationNodeType.MULTIPLY, a, b));
+        assertArrayEquals(new double[][]{{-2, -4}, {-6, -8}}, lae.run(root).getMatrix());
+        assertEquals(1, cache.getHits());
+
+        // a new B changes the product and the root, but T(C) is still the same
+        assertArrayEquals(new double[][]{{4, 8}, {10, 14}}, lae.run(tree(3)).getMatrix());
+        assertEquals(2, cache.getHits());
+        assertTrue(lae.getWorkerReport().contains("Result cache: Hits = 2"));
+    }
+
+    @Test
+    void testProductsAreNotFusedWhileCaching() {
+        lae.run(tree(2));
+        assertEquals(1, lae.getFusionCount());
+
+        // with a cache the product stays its own node, so it is stored and can be reused
+        ResultCache cache = new ResultCache(1 << 20);
+        lae.setResultCache(cache);
+        assertArrayEquals(new double[][]{{3, 6}, {7, 10}}, lae.run(tree(2)).getMatrix());
+        assertEquals(0, lae.getFusionCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testEvictionKeepsCacheWithinBudget() {
+        // room for about two 2x2 results
+        ResultCache cache = new ResultCache(200);
+        lae.setResultCache(cache);
+        for (int i = 0; i < 5; i++) {
+            ComputationNode root = node(ComputationNodeType.NEGATE, leaf(i, i + 1));
+            lae.run(root);
+        }
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.getUsedBytes() <= 200);
+        assertTrue(cache.size() < 5);
+    }
+
+    @Test
+    void testResultLargerThanBudgetIsNotStored() {
+        ResultCache cache = new ResultCache(64);
+        lae.setResultCache(cache);
+        lae.run(node(ComputationNodeType.NEGATE, leaf(1, 2, 3, 4)));
+        lae.run(node(ComputationNodeType.NEGATE, leaf(1, 2, 3, 4)));
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.size());
+    }
+}
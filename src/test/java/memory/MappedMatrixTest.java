@@ -0,0 +1,94 @@
+package memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedMatrixTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static double[][] sequence(int rows, int cols) {
+        double[][] matrix = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                matrix[i][j] = i * cols + j + 1;
+            }
+        }
+        return matrix;
+    }
+
+    @Test
+    void testRowsCrossSegmentBoundaries() throws IOException {
+        // 7-value segments, so most 5-value rows are split over two mappings
+        MappedMatrix matrix = MappedMatrix.map(tempDir.resolve("m.bin"), 0, 4, 5, true, true, 7);
+        double[][] data = sequence(4, 5);
+        for (int i = 0; i < 4; i++) {
+            matrix.writeRow(i, 0, data[i], 0, 5);
+        }
+        assertArrayEquals(data, matrix.toArray());
+        assertEquals(13.0, matrix.get(2, 2));
+        matrix.set(1, 4, -1.0);
+        assertEquals(-1.0, matrix.get(1, 4));
+    }
+
+    @Test
+    void testStoreSumNegationAndTranspose() throws IOException {
+        try (ScratchSpace scratch = new ScratchSpace(tempDir)) {
+            MappedMatrix a = scratch.copyOf(sequence(3, 4));
+            MappedMatrix b = scratch.copyOf(sequence(3, 4));
+
+            MappedMatrix difference = scratch.allocate(3, 4);
+            difference.storeSum(a, b, true, 0, 3);
+            assertArrayEquals(new double[4], difference.toArray()[2]);
+
+            MappedMatrix negated = scratch.allocate(3, 4);
+            negated.storeNegation(a, 1, 3);
+            assertArrayEquals(new double[]{0, 0, 0, 0}, negated.toArray()[0]);
+            assertArrayEquals(new double[]{-5, -6, -7, -8}, negated.toArray()[1]);
+
+            MappedMatrix transposed = scratch.allocate(4, 3);
+            transposed.storeTransposeTile(a, 0, 3, 0, 2);
+            transposed.storeTransposeTile(a, 0, 3, 2, 4);
+            assertArrayEquals(new double[]{4, 8, 12}, transposed.toArray()[3]);
+        }
+    }
+
+    @Test
+    void testStoreProductTile() throws IOException {
+        try (ScratchSpace scratch = new ScratchSpace(tempDir)) {
+            double[][] left = sequence(3, 300);
+            double[][] right = sequence(300, 2);
+            MappedMatrix product = scratch.allocate(3, 2);
+            product.storeProductTile(scratch.copyOf(left), scratch.copyOf(right), 0, 3, 0, 2);
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 2; j++) {
+                    double expected = 0;
+                    for (int k = 0; k < 300; k++) {
+                        expected += left[i][k] * right[k][j];
+                    }
+                    assertEquals(expected, product.get(i, j), 1e-6 * Math.abs(expected));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testScratchSpaceDeletesItsFiles() throws IOException {
+        ScratchSpace scratch = new ScratchSpace(tempDir);
+        MappedMatrix first = scratch.allocate(2, 2);
+        MappedMatrix second = scratch.allocate(2, 2);
+        scratch.release(first);
+        assertFalse(Files.exists(first.getFile()));
+        assertTrue(Files.exists(second.getFile()));
+        scratch.close();
+        assertFalse(Files.exists(second.getFile()));
+        assertFalse(Files.exists(scratch.getDirectory()));
+    }
+}
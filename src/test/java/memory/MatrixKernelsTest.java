@@ -0,0 +1,108 @@
+package memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the selected kernels (SIMD when the simd profile is active) against the plain loops,
+ * on lengths that exercise both the vector body and the scalar tail.
+ */
+class MatrixKernelsTest {
+
+    private static final ScalarKernels REFERENCE = new ScalarKernels();
+    private static final int[] LENGTHS = {0, 1, 3, 7, 8, 9, 31, 64, 257};
+
+    private static double[] random(Random random, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextDouble() * 2 - 1;
+        }
+        return values;
+    }
+
+    private static double[][] random(Random random, int rows, int cols) {
+        double[][] values = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            values[i] = random(random, cols);
+        }
+        return values;
+    }
+
+    @Test
+    void testElementwiseKernelsMatchExactly() {
+        Random random = new Random(21);
+        for (int length : LENGTHS) {
+            double[] src = random(random, length + 2);
+            double[] dst = random(random, length + 3);
+            double[] expected = dst.clone();
+            double[] actual = dst.clone();
+
+            REFERENCE.addInto(expected, 3, src, 2, length);
+            MatrixKernels.addInto(actual, 3, src, 2, length);
+            REFERENCE.subtractInto(expected, 1, src, 0, length);
+            MatrixKernels.subtractInto(actual, 1, src, 0, length);
+            REFERENCE.negateInPlace(expected, 2, length);
+            MatrixKernels.negateInPlace(actual, 2, length);
+            REFERENCE.axpy(0.37, src, 1, expected, 0, length);
+            MatrixKernels.axpy(0.37, src, 1, actual, 0, length);
+            assertArrayEquals(expected, actual, "length " + length);
+        }
+    }
+
+    @Test
+    void testDotMatchesWithinRounding() {
+        Random random = new Random(22);
+        for (int length : LENGTHS) {
+            double[] a = random(random, length + 1);
+            double[] b = random(random, length);
+            assertEquals(REFERENCE.dot(a, 1, b, 0, length), MatrixKernels.dot(a, 1, b, 0, length), 1e-12 * (length + 1));
+        }
+    }
+
+    @Test
+    void testGemmTileMatchesExactly() {
+        Random random = new Random(23);
+        // rows not a multiple of four, a column window with a tail, and depth across TILE_DEPTH blocks
+        double[][] left = random(random, 11, MatrixKernels.TILE_DEPTH + 5);
+        double[][] right = random(random, MatrixKernels.TILE_DEPTH + 5, 45);
+        double[][] expected = random(random, 9, 37);
+        double[][] actual = new double[9][];
+        for (int i = 0; i < 9; i++) {
+            actual[i] = expected[i].clone();
+        }
+        REFERENCE.gemmTile(left, right, 1, 10, 5, 42, expected);
+        MatrixKernels.gemmTile(left, right, 1, 10, 5, 42, actual);
+        for (int i = 0; i < 9; i++) {
+            assertArrayEquals(expected[i], actual[i]);
+        }
+    }
+
+    @Test
+    void testTransposedTileMatchesRowMajorTileExactly() {
+        Random random = new Random(24);
+        // an odd column window, so both the four-column body and the tail run
+        double[][] left = random(random, 11, MatrixKernels.TILE_DEPTH + 5);
+        double[][] right = random(random, MatrixKernels.TILE_DEPTH + 5, 45);
+        double[][] columns = new double[45][MatrixKernels.TILE_DEPTH + 5];
+        for (int k = 0; k < right.length; k++) {
+            for (int j = 0; j < 45; j++) {
+                columns[j][k] = right[k][j];
+            }
+        }
+        double[][] expected = random(random, 9, 37);
+        double[][] actual = new double[9][];
+        for (int i = 0; i < 9; i++) {
+            actual[i] = expected[i].clone();
+        }
+        MatrixKernels.gemmTile(left, right, 1, 10, 5, 42, expected);
+        MatrixKernels.gemmTileTransposed(left, columns, 1, 10, 5, 42, actual);
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 37; j++) {
+                assertEquals(Double.doubleToRawLongBits(expected[i][j]), Double.doubleToRawLongBits(actual[i][j]));
+            }
+        }
+    }
+}
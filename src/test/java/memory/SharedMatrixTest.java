@@ -2,6 +2,7 @@ package memory;
 
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class SharedMatrixTest {
 
@@ -123,4 +124,171 @@ class SharedMatrixTest {
         assertArrayEquals(data[0], result[0]);
         assertArrayEquals(data[1], result[1]);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testContiguousRowMajorRoundTrip() {
+        double[][] data = {
+            {1.0, 2.0, 3.0},
+            {4.0, 5.0, 6.0}
+        };
+
+        SharedMatrix matrix = new SharedMatrix(StorageMode.CONTIGUOUS);
+        matrix.loadRowMajor(data);
+
+        assertEquals(StorageMode.CONTIGUOUS, matrix.getStorageMode());
+        assertEquals(VectorOrientation.ROW_MAJOR, matrix.getOrientation());
+        assertEquals(2, matrix.length());
+        assertEquals(5.0, matrix.get(1).get(1));
+
+        double[][] result = matrix.readRowMajor();
+        assertArrayEquals(data[0], result[0]);
+        assertArrayEquals(data[1], result[1]);
+    }
+
+    @Test
+    void testContiguousColumnMajorRoundTrip() {
+        double[][] data = {
+            {1.0, 2.0, 3.0},
+            {4.0, 5.0, 6.0}
+        };
+
+        SharedMatrix matrix = new SharedMatrix(StorageMode.CONTIGUOUS);
+        matrix.loadColumnMajor(data);
+
+        assertEquals(VectorOrientation.COLUMN_MAJOR, matrix.getOrientation());
+        assertEquals(3, matrix.length());
+        assertEquals(2.0, matrix.get(1).get(0));
+        assertEquals(5.0, matrix.get(1).get(1));
+
+        double[][] result = matrix.readRowMajor();
+        assertArrayEquals(data[0], result[0]);
+        assertArrayEquals(data[1], result[1]);
+    }
+
+    @Test
+    void testContiguousViewsDoNotOverlap() {
+        SharedMatrix matrix = new SharedMatrix(StorageMode.CONTIGUOUS);
+        matrix.loadRowMajor(new double[][]{{1, 2}, {3, 4}});
+
+        matrix.get(0).negate();
+
+        double[][] result = matrix.readRowMajor();
+        assertArrayEquals(new double[]{-1, -2}, result[0]);
+        assertArrayEquals(new double[]{3, 4}, result[1]);
+    }
+
+    @Test
+    void testTallContiguousMatrixTakesEachStripeOnce() {
+        // more views per stripe than a ReentrantReadWriteLock can hold at once
+        int rows = SharedMatrix.MAX_LOCK_STRIPES * 65_536 + 1;
+        assumeTrue(rows <= 8_388_609, "too many lock stripes on this machine");
+        SharedMatrix matrix = new SharedMatrix(StorageMode.CONTIGUOUS);
+        matrix.allocateRowMajor(rows, 2);
+        matrix.get(rows - 1).setRange(0, new double[]{1.0, 2.0}, 2);
+
+        double[][] result = matrix.readRowMajor();
+        assertEquals(rows, result.length);
+        assertArrayEquals(new double[]{1.0, 2.0}, result[rows - 1]);
+        assertEquals(rows, matrix.readVectors().length);
+        matrix.readLockAll();
+        matrix.readUnlockAll();
+
+        matrix.transpose();
+        assertEquals(VectorOrientation.COLUMN_MAJOR, matrix.getOrientation());
+        assertEquals(2.0, matrix.readRowMajor()[1][rows - 1]);
+    }
+
+    @Test
+    void testStoreProductTile() {
+        double[][] left = {{1, 2}, {3, 4}, {5, 6}};
+        double[][] right = {{1, 0, 2}, {0, 1, 3}};
+
+        SharedMatrix product = new SharedMatrix();
+        product.loadRowMajor(new double[3][3]);
+        product.storeProductTile(left, right, VectorOrientation.ROW_MAJOR, 0, 2, 0, 3);
+        product.storeProductTile(left, right, VectorOrientation.ROW_MAJOR, 2, 3, 0, 1);
+        product.storeProductTile(left, right, VectorOrientation.ROW_MAJOR, 2, 3, 1, 3);
+
+        double[][] result = product.readRowMajor();
+        assertArrayEquals(new double[]{1, 2, 8}, result[0]);
+        assertArrayEquals(new double[]{3, 4, 18}, result[1]);
+        assertArrayEquals(new double[]{5, 6, 28}, result[2]);
+    }
+
+    @Test
+    void testTransposeIsAView() {
+        double[][] data = {{1, 2, 3}, {4, 5, 6}};
+        SharedMatrix matrix = new SharedMatrix(data);
+
+        matrix.transpose();
+
+        assertEquals(VectorOrientation.COLUMN_MAJOR, matrix.getOrientation());
+        double[][] result = matrix.readRowMajor();
+        assertEquals(3, result.length);
+        assertArrayEquals(new double[]{1, 4}, result[0]);
+        assertArrayEquals(new double[]{3, 6}, result[2]);
+        // the stored vectors are still the original rows
+        assertArrayEquals(data[1], matrix.readVectors()[1]);
+    }
+
+    @Test
+    void testStoreProductTileWithColumnMajorRight() {
+        double[][] left = {{1, 2}, {3, 4}};
+        double[][] rightColumns = {{1, 0}, {1, 1}, {0, 2}};
+
+        SharedMatrix product = new SharedMatrix();
+        product.loadRowMajor(new double[2][3]);
+        product.storeProductTile(left, rightColumns, VectorOrientation.COLUMN_MAJOR, 0, 2, 0, 3);
+
+        double[][] result = product.readRowMajor();
+        assertArrayEquals(new double[]{1, 3, 4}, result[0]);
+        assertArrayEquals(new double[]{3, 7, 8}, result[1]);
+    }
+
+    @Test
+    void testFloatPrecisionRoundsOnLoad() {
+        double[][] data = {{0.1, 2}, {3, 1e-3}, {5, 6}};
+        for (StorageMode mode : StorageMode.values()) {
+            SharedMatrix rows = new SharedMatrix(mode, Precision.FLOAT);
+            rows.loadRowMajor(data);
+            SharedMatrix columns = new SharedMatrix(mode, Precision.FLOAT);
+            columns.loadColumnMajor(data);
+
+            assertEquals(Precision.FLOAT, rows.get(0).getPrecision());
+            assertEquals((double) 0.1f, rows.readRowMajor()[0][0]);
+            assertEquals((double) 1e-3f, columns.readRowMajor()[1][1]);
+            assertEquals(VectorOrientation.COLUMN_MAJOR, columns.getOrientation());
+            assertArrayEquals(new float[]{0.1f, 2, 3, 1e-3f, 5, 6}, flatten(columns.readRowMajorFloats()));
+
+            rows.get(1).add(rows.get(2));
+            rows.get(0).negate();
+            assertArrayEquals(new double[]{8, (double) (1e-3f + 6f)}, rows.readRowMajor()[1]);
+            assertEquals(-(double) 0.1f, rows.readRowMajor()[0][0]);
+            assertThrows(IllegalArgumentException.class, () -> rows.get(0).add(new SharedVector(new double[2], VectorOrientation.ROW_MAJOR)));
+        }
+    }
+
+    @Test
+    void testFloatStoreProductTile() {
+        float[][] left = {{1, 2}, {3, 4}, {5, 6}};
+        float[][] right = {{1, 0, 2}, {0, 1, 3}};
+
+        SharedMatrix product = new SharedMatrix(StorageMode.CONTIGUOUS, Precision.FLOAT);
+        product.allocateRowMajor(3, 3);
+        product.storeProductTile(left, right, VectorOrientation.ROW_MAJOR, 0, 2, 0, 3);
+        product.storeProductTile(left, new float[][]{{1, 0}, {0, 1}, {2, 3}}, VectorOrientation.COLUMN_MAJOR, 2, 3, 0, 3);
+
+        double[][] result = product.readRowMajor();
+        assertArrayEquals(new double[]{1, 2, 8}, result[0]);
+        assertArrayEquals(new double[]{3, 4, 18}, result[1]);
+        assertArrayEquals(new double[]{5, 6, 28}, result[2]);
+    }
+
+    private static float[] flatten(float[][] rows) {
+        float[] flat = new float[rows.length * rows[0].length];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(rows[i], 0, flat, i * rows[0].length, rows[0].length);
+        }
+        return flat;
+    }
+}
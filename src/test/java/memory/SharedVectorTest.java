@@ -151,4 +151,28 @@ class SharedVectorTest {
         
         assertEquals("Index 5 is out of bounds for vector of length 1", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testVecMatMulColumnMajorMatrix() {
+        SharedVector v = new SharedVector(new double[]{1, 2}, VectorOrientation.ROW_MAJOR);
+        SharedMatrix m = new SharedMatrix();
+        m.loadColumnMajor(new double[][]{{3, 4, 1}, {5, 6, 1}});
+
+        v.vecMatMul(m);
+
+        assertEquals(3, v.length());
+        assertEquals(13.0, v.get(0));
+        assertEquals(16.0, v.get(1));
+        assertEquals(3.0, v.get(2));
+    }
+
+    @Test
+    void testCopyTo() {
+        SharedVector v = new SharedVector(new double[]{1, 2, 3}, VectorOrientation.ROW_MAJOR);
+        double[] dst = new double[5];
+
+        v.copyTo(dst, 1);
+
+        assertArrayEquals(new double[]{0, 1, 2, 3, 0}, dst);
+    }
+}
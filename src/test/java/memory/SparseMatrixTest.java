@@ -0,0 +1,156 @@
+package memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseMatrixTest {
+
+    private static double[][] randomSparse(Random random, int rows, int cols, double density) {
+        double[][] matrix = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (random.nextDouble() < density) {
+                    matrix[i][j] = random.nextInt(9) - 4;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static double[][] multiply(double[][] a, double[][] b) {
+        double[][] c = new double[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int k = 0; k < b.length; k++) {
+                for (int j = 0; j < b[0].length; j++) {
+                    c[i][j] += a[i][k] * b[k][j];
+                }
+            }
+        }
+        return c;
+    }
+
+    private static double[][] transpose(double[][] a) {
+        double[][] t = new double[a[0].length][a.length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < a[0].length; j++) {
+                t[j][i] = a[i][j];
+            }
+        }
+        return t;
+    }
+
+    private static void assertMatrixEquals(double[][] expected, double[][] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i], "row " + i);
+        }
+    }
+
+    @Test
+    void testRoundTripAndTransposeView() {
+        double[][] dense = randomSparse(new Random(1), 13, 7, 0.2);
+        SparseMatrix csr = SparseMatrix.fromDense(dense);
+        assertMatrixEquals(dense, csr.toDense());
+
+        SparseMatrix transposed = csr.transpose();
+        assertEquals(VectorOrientation.COLUMN_MAJOR, transposed.getOrientation());
+        assertEquals(7, transposed.getRowCount());
+        assertMatrixEquals(transpose(dense), transposed.toDense());
+        // converting the CSC view to CSR gives the same matrix, now with row access
+        SparseMatrix rows = transposed.withOrientation(VectorOrientation.ROW_MAJOR);
+        assertMatrixEquals(transpose(dense), rows.toDense());
+        double[] row = new double[13];
+        rows.readRow(3, row);
+        assertArrayEquals(transpose(dense)[3], row);
+    }
+
+    @Test
+    void testProductsMatchDense() {
+        Random random = new Random(2);
+        double[][] a = randomSparse(random, 17, 11, 0.15);
+        double[][] b = randomSparse(random, 11, 9, 0.3);
+        double[][] expected = multiply(a, b);
+        SparseMatrix sa = SparseMatrix.fromDense(a);
+        SparseMatrix sb = SparseMatrix.fromDense(b);
+
+        double[][] sparseDense = new double[17][9];
+        sa.multiplyDenseRows(b, SparseMatrix.nonFiniteRows(b), 0, 10, sparseDense);
+        sa.multiplyDenseRows(b, SparseMatrix.nonFiniteRows(b), 10, 17, sparseDense);
+        assertMatrixEquals(expected, sparseDense);
+
+        double[][] denseSparse = new double[17][9];
+        sb.multiplyFromDenseRows(a, 0, 17, denseSparse);
+        assertMatrixEquals(expected, denseSparse);
+
+        List<SparseMatrix.RowBlock> blocks = new ArrayList<>();
+        blocks.add(SparseMatrix.multiplyRows(sa, sb, 0, 5));
+        blocks.add(SparseMatrix.multiplyRows(sa, sb, 5, 17));
+        assertMatrixEquals(expected, SparseMatrix.assemble(17, 9, blocks).toDense());
+    }
+
+    @Test
+    void testSumsMatchDense() {
+        Random random = new Random(3);
+        double[][] a = randomSparse(random, 8, 12, 0.25);
+        double[][] b = randomSparse(random, 8, 12, 0.25);
+        SparseMatrix sa = SparseMatrix.fromDense(a);
+        SparseMatrix sb = SparseMatrix.fromDense(b);
+        double[][] difference = new double[8][12];
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 12; j++) {
+                difference[i][j] = a[i][j] - b[i][j];
+            }
+        }
+        List<SparseMatrix.RowBlock> blocks = List.of(SparseMatrix.sumRows(sa, sb, true, 0, 3), SparseMatrix.sumRows(sa, sb, true, 3, 8));
+        assertMatrixEquals(difference, SparseMatrix.assemble(8, 12, blocks).toDense());
+
+        double[][] scattered = new double[8][12];
+        sb.scatterRows(scattered, 0, 8, -1.0);
+        sa.scatterRows(scattered, 0, 8, 1.0);
+        assertMatrixEquals(difference, scattered);
+        assertMatrixEquals(a, sa.negate().negate().toDense());
+    }
+
+    @Test
+    void testKernelsKeepSignedZerosAndNaN() {
+        // -0.0 + 0.0 is +0.0, and 0 * Inf is NaN even where the sparse operand is implicitly zero
+        double[][] a = {{-0.0, 0, 2}, {0, 0, 0}};
+        double[][] b = {{1, 0}, {Double.POSITIVE_INFINITY, 3}, {-0.0, 1}};
+        SparseMatrix sa = SparseMatrix.fromDense(a);
+        double[][] product = new double[2][2];
+        sa.multiplyDenseRows(b, SparseMatrix.nonFiniteRows(b), 0, 2, product);
+        assertArrayEquals(multiply(a, b)[0], product[0]);
+        assertTrue(Double.isNaN(product[1][0]));
+
+        double[][] dense = {{-0.0, -0.0, 1}, {-0.0, 1, -0.0}};
+        double[][] sum = {dense[0].clone(), dense[1].clone()};
+        sa.scatterRows(sum, 0, 2, 1.0);
+        assertArrayEquals(new double[]{-0.0, 0.0, 3}, sum[0]);
+        assertArrayEquals(new double[]{0.0, 1, 0.0}, sum[1]);
+        double[][] difference = {dense[0].clone(), dense[1].clone()};
+        sa.subtractFromRows(difference, 0, 2);
+        assertArrayEquals(new double[]{0.0, 0.0, 1}, difference[0]);
+        assertArrayEquals(new double[]{0.0, -1, 0.0}, difference[1]);
+
+        SparseMatrix sb = SparseMatrix.fromDense(new double[][]{{0, 0}, {0, 1}, {0, 0}});
+        double[][] fromDense = new double[1][2];
+        sb.multiplyFromDenseRows(new double[][]{{0, Double.NEGATIVE_INFINITY, 0}}, 0, 1, fromDense);
+        assertTrue(Double.isNaN(fromDense[0][0]));
+        assertEquals(Double.NEGATIVE_INFINITY, fromDense[0][1]);
+    }
+
+    @Test
+    void testDensityThresholds() {
+        assertTrue(SparseMatrix.prefersSparse(10_000, 500));
+        assertFalse(SparseMatrix.prefersSparse(10_000, 2_000));
+        assertFalse(SparseMatrix.prefersSparse(100, 1));
+        // a full 100x100 result goes back to dense, a 1% one stays sparse
+        assertTrue(SparseMatrix.fromDense(randomSparse(new Random(4), 100, 100, 1.0)).prefersDense());
+        assertFalse(SparseMatrix.fromDense(randomSparse(new Random(5), 100, 100, 0.01)).prefersDense());
+    }
+}
@@ -0,0 +1,119 @@
+package parser;
+
+import memory.MappedMatrix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFormatTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTreeRoundTrip() throws Exception {
+        ComputationNode a = new ComputationNode(new double[][]{{1, 2.5}, {-3, 4}});
+        ComputationNode b = new ComputationNode(new double[][]{{0, 1}, {1, 0}});
+        ComputationNode transposed = new ComputationNode(ComputationNodeType.TRANSPOSE, List.of(b));
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, List.of(a, transposed));
+        Path file = tempDir.resolve("tree" + BinaryFormat.EXTENSION);
+
+        BinaryFormat.writeTree(root, file.toString());
+        ComputationNode read = BinaryFormat.readTree(file.toString());
+
+        assertEquals(ComputationNodeType.MULTIPLY, read.getNodeType());
+        assertEquals(2, read.getChildren().size());
+        assertArrayEquals(new double[]{1, 2.5}, read.getChildren().get(0).getMatrix()[0]);
+        assertArrayEquals(new double[]{-3, 4}, read.getChildren().get(0).getMatrix()[1]);
+        ComputationNode readTranspose = read.getChildren().get(1);
+        assertEquals(ComputationNodeType.TRANSPOSE, readTranspose.getNodeType());
+        assertArrayEquals(new double[]{0, 1}, readTranspose.getChildren().get(0).getMatrix()[0]);
+    }
+
+    @Test
+    void testMapTreeLeavesStayInTheFile() throws Exception {
+        // the odd operand count moves the second payload off the first one's alignment
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, List.of(
+                new ComputationNode(new double[][]{{1, 2, 3}}),
+                new ComputationNode(ComputationNodeType.NEGATE, List.of(new ComputationNode(new double[][]{{4}, {5}})))));
+        Path file = tempDir.resolve("tree" + BinaryFormat.EXTENSION);
+        BinaryFormat.writeTree(root, file.toString());
+
+        ComputationNode mapped = BinaryFormat.mapTree(file.toString());
+
+        MappedMatrix first = mapped.getChildren().get(0).getMappedMatrix();
+        assertNotNull(first);
+        assertEquals(3.0, first.get(0, 2));
+        MappedMatrix second = mapped.getChildren().get(1).getChildren().get(0).getMappedMatrix();
+        assertEquals(2, second.getRowCount());
+        assertEquals(5.0, second.get(1, 0));
+    }
+
+    @Test
+    void testResultAndErrorRoundTrip() throws Exception {
+        double[][] matrix = new double[3][5];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 5; j++) {
+                matrix[i][j] = i * 5 + j + 0.25;
+            }
+        }
+        Path resultFile = tempDir.resolve("result" + BinaryFormat.EXTENSION);
+        BinaryFormat.writeResult(matrix, resultFile.toString());
+        assertArrayEquals(matrix, BinaryFormat.readResult(resultFile.toString()));
+
+        Path errorFile = tempDir.resolve("error" + BinaryFormat.EXTENSION);
+        BinaryFormat.writeError("Illegal operation: dimensions mismatch", errorFile.toString());
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> BinaryFormat.readResult(errorFile.toString()));
+        assertEquals("Illegal operation: dimensions mismatch", exception.getMessage());
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path file = tempDir.resolve("input" + BinaryFormat.EXTENSION);
+        Files.writeString(file, "{\"operator\": \"+\"}");
+        assertThrows(ParseException.class, () -> BinaryFormat.readTree(file.toString()));
+    }
+
+    @Test
+    void testRejectsMatrixLargerThanTheInput() throws IOException {
+        // a header claiming 50,000,000 x 1000 doubles followed by no payload
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'L', 'A', 'E', 'B'}).putShort((short) BinaryFormat.VERSION).put(BinaryFormat.KIND_TREE)
+                .put((byte) 0).putInt(50_000_000).putInt(1000);
+        byte[] bytes = header.array();
+        Path file = tempDir.resolve("huge" + BinaryFormat.EXTENSION);
+        Files.write(file, bytes);
+
+        assertThrows(ParseException.class, () -> BinaryFormat.readTree(new ByteArrayInputStream(bytes), bytes.length));
+        assertThrows(ParseException.class, () -> BinaryFormat.readTree(file.toString()));
+        assertThrows(ParseException.class, () -> BinaryFormat.mapTree(file.toString()));
+    }
+
+    @Test
+    void testConverterRoundTripThroughJson() throws Exception {
+        Path json = tempDir.resolve("input.json");
+        Files.writeString(json, "{\"operator\": \"+\", \"operands\": [[[1, 2]], {\"operator\": \"-\", \"operands\": [[[3, 4]]]}]}");
+        Path binary = tempDir.resolve("input" + BinaryFormat.EXTENSION);
+        Path back = tempDir.resolve("back.json");
+
+        FormatConverter.convert(json.toString(), binary.toString());
+        FormatConverter.convert(binary.toString(), back.toString());
+        ComputationNode root = new InputParser().parse(back.toString());
+
+        assertEquals(ComputationNodeType.ADD, root.getNodeType());
+        assertArrayEquals(new double[]{1, 2}, root.getChildren().get(0).getMatrix()[0]);
+        assertEquals(ComputationNodeType.NEGATE, root.getChildren().get(1).getNodeType());
+        assertArrayEquals(new double[]{3, 4}, root.getChildren().get(1).getChildren().get(0).getMatrix()[0]);
+    }
+}
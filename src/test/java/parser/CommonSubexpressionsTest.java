@@ -0,0 +1,65 @@
+package parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommonSubexpressionsTest {
+
+    private static ComputationNode matrix(double... row) {
+        return new ComputationNode(new double[][]{row.clone()});
+    }
+
+    private static ComputationNode unary(ComputationNodeType type, ComputationNode child) {
+        return new ComputationNode(type, List.of(child));
+    }
+
+    private static ComputationNode binary(ComputationNodeType type, ComputationNode left, ComputationNode right) {
+        return new ComputationNode(type, List.of(left, right));
+    }
+
+    @Test
+    void testEqualLiteralsAreShared() {
+        ComputationNode root = binary(ComputationNodeType.ADD, matrix(1, 2), matrix(1, 2));
+
+        assertEquals(1, CommonSubexpressions.merge(root));
+        assertSame(root.getChildren().get(0), root.getChildren().get(1));
+    }
+
+    @Test
+    void testEqualSubtreesAreShared() {
+        // T(A) * B + T(A) * B, with every node built separately
+        ComputationNode left = binary(ComputationNodeType.MULTIPLY, unary(ComputationNodeType.TRANSPOSE, matrix(1, 2)), matrix(3, 4));
+        ComputationNode right = binary(ComputationNodeType.MULTIPLY, unary(ComputationNodeType.TRANSPOSE, matrix(1, 2)), matrix(3, 4));
+        ComputationNode root = binary(ComputationNodeType.ADD, left, right);
+
+        // two literals, the transpose and the product
+        assertEquals(4, CommonSubexpressions.merge(root));
+        assertSame(root.getChildren().get(0), root.getChildren().get(1));
+    }
+
+    @Test
+    void testDifferentValuesOrOperatorsStayApart() {
+        ComputationNode root = binary(ComputationNodeType.ADD,
+                unary(ComputationNodeType.NEGATE, matrix(1, 2)),
+                binary(ComputationNodeType.ADD, unary(ComputationNodeType.TRANSPOSE, matrix(1, 2)), matrix(0.0, 2)));
+        ComputationNode other = binary(ComputationNodeType.ADD, matrix(0.0, 1), matrix(-0.0, 1));
+
+        // only the two [1, 2] literals match
+        assertEquals(1, CommonSubexpressions.merge(root));
+        assertEquals(0, CommonSubexpressions.merge(other));
+        assertNotSame(other.getChildren().get(0), other.getChildren().get(1));
+    }
+
+    @Test
+    void testOperandOrderMatters() {
+        ComputationNode a = matrix(1, 2);
+        ComputationNode b = matrix(3, 4);
+        ComputationNode root = binary(ComputationNodeType.ADD,
+                binary(ComputationNodeType.SUBTRACT, a, b), binary(ComputationNodeType.SUBTRACT, b, a));
+
+        assertEquals(0, CommonSubexpressions.merge(root));
+    }
+}
@@ -0,0 +1,135 @@
+package parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ComputationNode parse(String json) throws IOException, ParseException {
+        Path input = tempDir.resolve("input.json");
+        Files.writeString(input, json);
+        return new InputParser().parse(input.toString());
+    }
+
+    private String parseError(String json) throws IOException {
+        Path input = tempDir.resolve("input.json");
+        Files.writeString(input, json);
+        ParseException exception = assertThrows(ParseException.class, () -> new InputParser().parse(input.toString()));
+        return exception.getMessage();
+    }
+
+    @Test
+    void testParseOperatorTree() throws Exception {
+        ComputationNode root = parse("{\"operator\": \"+\", \"operands\": ["
+                + "[[1, 2.5], [3, 4]],"
+                + "{\"operands\": [[[1, 0], [0, 1]]], \"operator\": \"T\"}]}");
+
+        assertEquals(ComputationNodeType.ADD, root.getNodeType());
+        assertEquals(2, root.getChildren().size());
+        double[][] left = root.getChildren().get(0).getMatrix();
+        assertArrayEquals(new double[]{1, 2.5}, left[0]);
+        assertArrayEquals(new double[]{3, 4}, left[1]);
+        ComputationNode transpose = root.getChildren().get(1);
+        assertEquals(ComputationNodeType.TRANSPOSE, transpose.getNodeType());
+        assertEquals(ComputationNodeType.MATRIX, transpose.getChildren().get(0).getNodeType());
+    }
+
+    @Test
+    void testParseWideFirstRow() throws Exception {
+        StringBuilder row = new StringBuilder("[");
+        for (int i = 0; i < 40; i++) {
+            row.append(i == 0 ? "" : ",").append(i);
+        }
+        row.append("]");
+
+        double[][] matrix = parse("[" + row + "," + row + "]").getMatrix();
+
+        assertEquals(2, matrix.length);
+        assertEquals(40, matrix[1].length);
+        assertEquals(39.0, matrix[1][39]);
+    }
+
+    @Test
+    void testInconsistentRowSizes() throws IOException {
+        assertEquals("Inconsistent row sizes in matrix.", parseError("[[1, 2], [3]]"));
+        assertEquals("Inconsistent row sizes in matrix.", parseError("[[1, 2], [3, 4, 5]]"));
+    }
+
+    @Test
+    void testVectorIsRejected() throws IOException {
+        assertEquals("Vectors (1D arrays) are not supported as standalone nodes.", parseError("[1, 2, 3]"));
+    }
+
+    @Test
+    void testEmptyArrayIsRejected() throws IOException {
+        assertEquals("Empty array cannot be parsed as DataNode.",
+                parseError("{\"operator\": \"-\", \"operands\": [[]]}"));
+    }
+
+    private static String identityJson(int n, int extraPerRow) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            json.append(i == 0 ? "[" : ",[");
+            for (int j = 0; j < n; j++) {
+                boolean filled = (j == i) || (j > i && j <= i + extraPerRow);
+                json.append(j == 0 ? "" : ",").append(filled ? "1.5" : "0");
+            }
+            json.append("]");
+        }
+        return json.append("]").toString();
+    }
+
+    @Test
+    void testMostlyZeroMatrixIsParsedSparse() throws Exception {
+        ComputationNode leaf = parse(identityJson(100, 1));
+        assertNotNull(leaf.getSparseMatrix());
+        assertEquals(199, leaf.getSparseMatrix().getNonZeroCount());
+        double[][] matrix = leaf.getMatrix();
+        assertEquals(1.5, matrix[7][8]);
+        assertEquals(0.0, matrix[7][9]);
+    }
+
+    @Test
+    void testDiagonalAndSymmetricLiteralsAreDetected() throws Exception {
+        // the 100x100 one goes through the sparse builder, the 40x40 one stays dense while it is read
+        ComputationNode identity = parse(identityJson(100, 0));
+        assertNull(identity.getSparseMatrix());
+        assertNotNull(identity.getDiagonalMatrix());
+        assertTrue(identity.getDiagonalMatrix().isScalar());
+        assertEquals(1.5, identity.getMatrix()[7][7]);
+        assertEquals(0.0, identity.getMatrix()[7][8]);
+        assertNotNull(parse(identityJson(40, 0)).getDiagonalMatrix());
+        assertNull(parse(identityJson(10, 0)).getDiagonalMatrix());
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 40; i++) {
+            json.append(i == 0 ? "[" : ",[");
+            for (int j = 0; j < 40; j++) {
+                json.append(j == 0 ? "" : ",").append(i + j);
+            }
+            json.append("]");
+        }
+        ComputationNode symmetric = parse(json.append("]").toString());
+        assertNull(symmetric.getDiagonalMatrix());
+        assertTrue(symmetric.isSymmetric());
+        assertFalse(parse(identityJson(40, 1)).isSymmetric());
+    }
+
+    @Test
+    void testDenseOrSmallMatrixStaysDense() throws Exception {
+        // 30% filled, and a sparse matrix below the size threshold
+        assertNull(parse(identityJson(100, 29)).getSparseMatrix());
+        assertNull(parse(identityJson(10, 0)).getSparseMatrix());
+        assertEquals(1.5, parse(identityJson(100, 29)).getMatrix()[0][29]);
+    }
+}
@@ -0,0 +1,66 @@
+package parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiplyAddFusionTest {
+
+    private static ComputationNode matrix(int rows, int cols) {
+        return new ComputationNode(new double[rows][cols]);
+    }
+
+    private static ComputationNode binary(ComputationNodeType type, ComputationNode left, ComputationNode right) {
+        return new ComputationNode(type, List.of(left, right));
+    }
+
+    @Test
+    void testProductIsFusedIntoEitherAddend() {
+        ComputationNode a = matrix(2, 3);
+        ComputationNode b = matrix(3, 4);
+        ComputationNode c = matrix(2, 4);
+        ComputationNode root = binary(ComputationNodeType.ADD, c, binary(ComputationNodeType.MULTIPLY, a, b));
+
+        assertEquals(1, MultiplyAddFusion.fuse(root));
+        assertEquals(ComputationNodeType.MULTIPLY_ADD, root.getNodeType());
+        assertEquals(List.of(a, b, c), root.getChildren());
+    }
+
+    @Test
+    void testSubtractionNegatesTheOtherSide() {
+        ComputationNode a = matrix(2, 2);
+        ComputationNode b = matrix(2, 2);
+        ComputationNode c = matrix(2, 2);
+        ComputationNode minuend = binary(ComputationNodeType.SUBTRACT, binary(ComputationNodeType.MULTIPLY, a, b), c);
+        ComputationNode subtrahend = binary(ComputationNodeType.SUBTRACT, c, binary(ComputationNodeType.MULTIPLY, a, b));
+
+        assertEquals(1, MultiplyAddFusion.fuse(minuend));
+        ComputationNode negatedAddend = minuend.getChildren().get(2);
+        assertEquals(ComputationNodeType.NEGATE, negatedAddend.getNodeType());
+        assertSame(c, negatedAddend.getChildren().get(0));
+
+        assertEquals(1, MultiplyAddFusion.fuse(subtrahend));
+        ComputationNode negatedLeft = subtrahend.getChildren().get(0);
+        assertEquals(ComputationNodeType.NEGATE, negatedLeft.getNodeType());
+        assertSame(a, negatedLeft.getChildren().get(0));
+        assertSame(c, subtrahend.getChildren().get(2));
+    }
+
+    @Test
+    void testSharedSparseOrMismatchedProductsAreLeftAlone() {
+        // a product with a second consumer is computed on its own anyway
+        ComputationNode product = binary(ComputationNodeType.MULTIPLY, matrix(2, 2), matrix(2, 2));
+        ComputationNode shared = binary(ComputationNodeType.MULTIPLY, binary(ComputationNodeType.ADD, product, matrix(2, 2)), product);
+        assertEquals(0, MultiplyAddFusion.fuse(shared));
+
+        ComputationNode sparse = new ComputationNode(memory.SparseMatrix.fromDense(new double[2][2]));
+        ComputationNode withSparse = binary(ComputationNodeType.ADD, binary(ComputationNodeType.MULTIPLY, sparse, matrix(2, 2)), matrix(2, 2));
+        assertEquals(0, MultiplyAddFusion.fuse(withSparse));
+
+        ComputationNode mismatched = binary(ComputationNodeType.ADD, binary(ComputationNodeType.MULTIPLY, matrix(2, 3), matrix(3, 2)), matrix(3, 3));
+        assertEquals(0, MultiplyAddFusion.fuse(mismatched));
+        assertEquals(ComputationNodeType.ADD, mismatched.getNodeType());
+    }
+}
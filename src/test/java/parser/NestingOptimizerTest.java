@@ -0,0 +1,76 @@
+package parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NestingOptimizerTest {
+
+    private static ComputationNode matrix(int rows, int cols) {
+        return new ComputationNode(new double[rows][cols]);
+    }
+
+    @Test
+    void testMultiplyChainPicksCheapestOrder() {
+        // (A*B)*C costs 75000 multiplications, A*(B*C) only 7500
+        ComputationNode a = matrix(50, 5);
+        ComputationNode b = matrix(5, 100);
+        ComputationNode c = matrix(100, 10);
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(a, b, c)));
+
+        NestingOptimizer.optimize(root);
+
+        assertEquals(2, root.getChildren().size());
+        assertSame(a, root.getChildren().get(0));
+        ComputationNode inner = root.getChildren().get(1);
+        assertEquals(ComputationNodeType.MULTIPLY, inner.getNodeType());
+        assertSame(b, inner.getChildren().get(0));
+        assertSame(c, inner.getChildren().get(1));
+    }
+
+    @Test
+    void testAddChainIsBalanced() {
+        List<ComputationNode> operands = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            operands.add(matrix(2, 2));
+        }
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, operands);
+
+        NestingOptimizer.optimize(root);
+
+        assertEquals(ComputationNodeType.ADD, root.getChildren().get(0).getNodeType());
+        assertEquals(ComputationNodeType.ADD, root.getChildren().get(1).getNodeType());
+    }
+
+    @Test
+    void testMismatchedChainFallsBackToLeftNesting() {
+        ComputationNode a = matrix(2, 3);
+        ComputationNode b = matrix(4, 5);
+        ComputationNode c = matrix(5, 6);
+        ComputationNode root = new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(a, b, c)));
+
+        NestingOptimizer.optimize(root);
+
+        assertSame(c, root.getChildren().get(1));
+        assertEquals(ComputationNodeType.MULTIPLY, root.getChildren().get(0).getNodeType());
+    }
+
+    @Test
+    void testShapeOfEveryStorageKind() {
+        memory.SharedMatrix shared = new memory.SharedMatrix();
+        shared.loadColumnMajor(new double[3][4]);
+        ComputationNode resolved = new ComputationNode(ComputationNodeType.NEGATE, new ArrayList<>());
+        resolved.resolve(shared);
+        ComputationNode sparse = new ComputationNode(memory.SparseMatrix.fromDense(new double[5][2]));
+        ComputationNode diagonal = new ComputationNode(new memory.DiagonalMatrix(new double[6]));
+
+        assertArrayEquals(new int[]{2, 7}, NestingOptimizer.shapeOf(matrix(2, 7), null));
+        assertArrayEquals(new int[]{3, 4}, NestingOptimizer.shapeOf(resolved, null));
+        assertArrayEquals(new int[]{5, 2}, NestingOptimizer.shapeOf(sparse, null));
+        assertArrayEquals(new int[]{6, 6}, NestingOptimizer.shapeOf(diagonal, null));
+        assertNull(NestingOptimizer.shapeOf(matrix(0, 0), null));
+    }
+}
@@ -0,0 +1,73 @@
+package parser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import memory.MappedMatrix;
+import memory.ScratchSpace;
+import memory.SharedMatrix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private void assertSameJson(Path expected, Path actual) throws Exception {
+        assertEquals(mapper.readTree(expected.toFile()), mapper.readTree(actual.toFile()));
+    }
+
+    @Test
+    void testCompactMatchesPrettySchema() throws Exception {
+        double[][] matrix = {{1.0, -2.5, 0.1}, {1e-300, 3.0E10, -0.0}};
+        Path pretty = tempDir.resolve("pretty.json");
+        Path compact = tempDir.resolve("compact.json");
+
+        OutputWriter.write(matrix, pretty.toString());
+        OutputWriter.writeCompact(matrix, compact.toString());
+
+        assertSameJson(pretty, compact);
+        assertFalse(Files.readString(compact).contains(" "));
+        assertTrue(Files.readString(compact).startsWith("{\"result\":[[1.0,-2.5,0.1],"));
+    }
+
+    @Test
+    void testCompactStreamsSharedAndMappedMatrices() throws Exception {
+        double[][] matrix = new double[130][3];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = new double[]{i, i * 0.5, -i};
+        }
+        Path pretty = tempDir.resolve("pretty.json");
+        OutputWriter.write(matrix, pretty.toString());
+
+        // column-major, so the rows have to be gathered across vectors
+        SharedMatrix columns = new SharedMatrix();
+        columns.loadColumnMajor(matrix);
+        Path shared = tempDir.resolve("shared.json");
+        OutputWriter.writeCompact(columns, shared.toString());
+        assertSameJson(pretty, shared);
+
+        try (ScratchSpace scratch = new ScratchSpace(tempDir)) {
+            MappedMatrix mapped = scratch.copyOf(matrix);
+            Path fromFile = tempDir.resolve("mapped.json");
+            OutputWriter.writeCompact(mapped, fromFile.toString());
+            assertSameJson(pretty, fromFile);
+        }
+    }
+
+    @Test
+    void testCompactError() throws Exception {
+        Path pretty = tempDir.resolve("pretty.json");
+        Path compact = tempDir.resolve("compact.json");
+        OutputWriter.write("Illegal \"operation\"", pretty.toString());
+        OutputWriter.writeCompact("Illegal \"operation\"", compact.toString());
+        assertSameJson(pretty, compact);
+    }
+}
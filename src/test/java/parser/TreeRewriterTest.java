@@ -0,0 +1,105 @@
+package parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeRewriterTest {
+
+    private static ComputationNode matrix(int rows, int cols) {
+        return new ComputationNode(new double[rows][cols]);
+    }
+
+    private static ComputationNode unary(ComputationNodeType type, ComputationNode child) {
+        return new ComputationNode(type, List.of(child));
+    }
+
+    private static ComputationNode binary(ComputationNodeType type, ComputationNode left, ComputationNode right) {
+        return new ComputationNode(type, List.of(left, right));
+    }
+
+    @Test
+    void testDoubleTransposeCancels() {
+        ComputationNode a = matrix(2, 3);
+        ComputationNode root = unary(ComputationNodeType.TRANSPOSE, unary(ComputationNodeType.TRANSPOSE, a));
+
+        assertEquals(1, TreeRewriter.rewrite(root));
+        assertEquals(ComputationNodeType.MATRIX, root.getNodeType());
+        assertSame(a.getMatrix(), root.getMatrix());
+    }
+
+    @Test
+    void testTransposeOfSymmetricLiteralIsDropped() {
+        double[][] values = new double[2][2];
+        ComputationNode symmetric = new ComputationNode(values, true);
+        ComputationNode root = binary(ComputationNodeType.MULTIPLY,
+                unary(ComputationNodeType.TRANSPOSE, symmetric), unary(ComputationNodeType.TRANSPOSE, matrix(2, 2)));
+
+        assertEquals(1, TreeRewriter.rewrite(root));
+        assertSame(values, root.getChildren().get(0).getMatrix());
+        assertEquals(ComputationNodeType.TRANSPOSE, root.getChildren().get(1).getNodeType());
+    }
+
+    @Test
+    void testDoubleNegationCancelsInsideTree() {
+        ComputationNode a = matrix(2, 2);
+        ComputationNode b = matrix(2, 2);
+        ComputationNode root = binary(ComputationNodeType.MULTIPLY,
+                unary(ComputationNodeType.NEGATE, unary(ComputationNodeType.NEGATE, a)), b);
+
+        assertEquals(1, TreeRewriter.rewrite(root));
+        assertEquals(ComputationNodeType.MATRIX, root.getChildren().get(0).getNodeType());
+    }
+
+    @Test
+    void testNegatedAddendBecomesSubtract() {
+        ComputationNode a = matrix(2, 2);
+        ComputationNode b = matrix(2, 2);
+        ComputationNode root = binary(ComputationNodeType.ADD, unary(ComputationNodeType.NEGATE, b), a);
+
+        assertEquals(1, TreeRewriter.rewrite(root));
+        assertEquals(ComputationNodeType.SUBTRACT, root.getNodeType());
+        assertSame(a, root.getChildren().get(0));
+        assertSame(b, root.getChildren().get(1));
+    }
+
+    @Test
+    void testTransposeOfProductWithTransposedOperands() {
+        // T(T(X) * T(Y)) == Y * X, no transpose left at all
+        ComputationNode x = matrix(3, 2);
+        ComputationNode y = matrix(4, 3);
+        ComputationNode root = unary(ComputationNodeType.TRANSPOSE, binary(ComputationNodeType.MULTIPLY,
+                unary(ComputationNodeType.TRANSPOSE, x), unary(ComputationNodeType.TRANSPOSE, y)));
+
+        assertEquals(3, TreeRewriter.rewrite(root));
+        assertEquals(ComputationNodeType.MULTIPLY, root.getNodeType());
+        assertSame(y.getMatrix(), root.getChildren().get(0).getMatrix());
+        assertSame(x.getMatrix(), root.getChildren().get(1).getMatrix());
+    }
+
+    @Test
+    void testTransposeOfSmallProductIsKept() {
+        // the 1x1 product is cheaper to transpose than both 1x50 operands
+        ComputationNode root = unary(ComputationNodeType.TRANSPOSE,
+                binary(ComputationNodeType.MULTIPLY, matrix(1, 50), matrix(50, 1)));
+
+        assertEquals(0, TreeRewriter.rewrite(root));
+        assertEquals(ComputationNodeType.TRANSPOSE, root.getNodeType());
+    }
+
+    @Test
+    void testTransposedLeftOperandMovesToTheRight() {
+        // T(T(X) * B) == T(B) * X: the 50x50 X no longer has to be read by rows from its columns
+        ComputationNode x = matrix(50, 50);
+        ComputationNode b = matrix(50, 1);
+        ComputationNode root = unary(ComputationNodeType.TRANSPOSE,
+                binary(ComputationNodeType.MULTIPLY, unary(ComputationNodeType.TRANSPOSE, x), b));
+
+        assertEquals(2, TreeRewriter.rewrite(root));
+        assertEquals(ComputationNodeType.MULTIPLY, root.getNodeType());
+        assertEquals(ComputationNodeType.TRANSPOSE, root.getChildren().get(0).getNodeType());
+        assertSame(x.getMatrix(), root.getChildren().get(1).getMatrix());
+    }
+}
@@ -103,4 +103,65 @@ void testBlockingWhenNoWorkersAvailable() throws InterruptedException {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWorkStealingRunsAllTasks() throws InterruptedException {
+        TiredExecutor stealing = new TiredExecutor(numThreads, SchedulingMode.WORK_STEALING);
+        try {
+            int numTasks = 200;
+            CountDownLatch latch = new CountDownLatch(numTasks);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < numTasks; i++) {
+                tasks.add(latch::countDown);
+            }
+
+            stealing.submitAll(tasks);
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "All tasks should complete");
+            String report = stealing.getWorkerReport();
+            for (int i = 0; i < numThreads; i++) {
+                assertTrue(report.contains("Worker " + i), "Report should contain info for all workers");
+            }
+        } finally {
+            stealing.shutdown();
+        }
+    }
+
+    @Test
+    void testWorkStealingSubmitDoesNotBlock() throws InterruptedException {
+        TiredExecutor stealing = new TiredExecutor(numThreads, SchedulingMode.WORK_STEALING);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CountDownLatch done = new CountDownLatch(numThreads * 3);
+            for (int i = 0; i < numThreads * 3; i++) {
+                stealing.submit(() -> {
+                    try { release.await(); } catch (InterruptedException e) {}
+                    done.countDown();
+                });
+            }
+            // every worker is stuck, yet all submits above returned
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS), "Queued tasks should run once workers are free");
+        } finally {
+            release.countDown();
+            stealing.shutdown();
+        }
+    }
+
+    @Test
+    void testWorkStealingShutdownRunsQueuedTasks() throws InterruptedException {
+        TiredExecutor stealing = new TiredExecutor(numThreads, SchedulingMode.WORK_STEALING);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numThreads * 3);
+        for (int i = 0; i < numThreads * 3; i++) {
+            stealing.submit(() -> {
+                try { release.await(); } catch (InterruptedException e) {}
+                done.countDown();
+            });
+        }
+        // shut down while most tasks are still waiting in the deques
+        stealing.shutdown();
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Tasks queued before shutdown should still run");
+    }
+}
@@ -81,4 +81,28 @@ class TiredThreadTest {
         assertThrows(IllegalStateException.class, () -> worker.newTask(() -> {}), 
             "Should not accept tasks after shutdown");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIdleStealingWorkerParksUntilWoken() throws InterruptedException {
+        TiredThread[] peers = new TiredThread[1];
+        TiredThread stealer = new TiredThread(0, fatigueFactor, peers);
+        peers[0] = stealer;
+        stealer.start();
+        try {
+            // an idle worker waits without a timeout instead of polling for work
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (stealer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Thread.State.WAITING, stealer.getState());
+
+            CountDownLatch ran = new CountDownLatch(1);
+            stealer.enqueue(ran::countDown);
+            assertTrue(ran.await(1, TimeUnit.SECONDS), "Enqueue should wake the parked worker");
+        } finally {
+            stealer.shutdown();
+        }
+        stealer.join(1000);
+        assertFalse(stealer.isAlive(), "Worker thread should exit after shutdown");
+    }
+}